@@ -0,0 +1,349 @@
+/**
+ * The BidirectionalSearch class that grows one search from the start village and one from the end
+ * village until they meet. Every step settles one village on the side with the smaller frontier,
+ * so the two searches stay about the same size and together look at far fewer villages than one
+ * search growing all the way from the start village.
+ *
+ * The search is either unweighted, where every route counts as one step and the frontiers are
+ * first in first out queues like the breadthFirstSearch, or weighted, where the frontiers are
+ * heaps ordered by distance like the dijkstraSearch. Whenever a route joins a village of one search
+ * to a village the other search has reached, the path through it is remembered if it is the
+ * shortest so far. The search is finished once the nearest villages left in the two frontiers are
+ * together no closer than that path, since every path not seen yet would have to pass through both.
+ *
+ * Routes in a village map go both ways, so the search from the end village follows the same routes
+ * as the one from the start village. The arrays of a search are stamped with the number of the
+ * search, so it can be restarted between two other villages without clearing them.
+ */
+public class BidirectionalSearch {
+
+    private final VillageGraph graph;
+    private final Side forward;
+    private final Side backward;
+    private double best;
+    private int meetingForward;
+    private int meetingBackward;
+    private boolean finished;
+    private long relaxed;
+    private SearchTrace trace;
+
+    /**
+     * The BidirectionalSearch constructor that puts the start and end villages in their frontiers
+     * @param graph - The graph to search
+     * @param start - The id of the start village
+     * @param end - The id of the end village
+     * @param weighted - True to follow the route distances, false to count every route as one step
+     */
+    public BidirectionalSearch(VillageGraph graph, int start, int end, boolean weighted) {
+        this.graph = graph;
+        forward = new Side(graph.size(), weighted);
+        backward = new Side(graph.size(), weighted);
+        restart(start, end);
+    }
+
+    /**
+     * The method for starting the search again between two other villages
+     * @param start - The id of the start village
+     * @param end - The id of the end village
+     */
+    public void restart(int start, int end) {
+        best = Double.POSITIVE_INFINITY;
+        meetingForward = -1;
+        meetingBackward = -1;
+        finished = false;
+        relaxed = 0;
+
+        forward.restart();
+        backward.restart();
+        forward.reach(start, -1, 0);
+        backward.reach(end, -1, 0);
+    }
+
+    /**
+     * The method for setting the trace every step tells the villages it takes out of a frontier,
+     * expands and puts in a frontier
+     * @param t - The trace, or null for none
+     */
+    public void setTrace(SearchTrace t) {
+        trace = t;
+    }
+
+    /**
+     * The method for checking if the search follows the route distances
+     * @return - Return true if it is weighted, false if every route counts as one step
+     */
+    public boolean isWeighted() {
+        return forward.weighted;
+    }
+
+    /**
+     * The method for taking one step of the search. It settles the nearest village of the side
+     * with the smaller frontier and then checks if the search is finished
+     * @return - Return the id of the village that was settled, or -1 if the search was already
+     * finished or the other side had settled the village before
+     */
+    public int step() {
+        if (finished) {
+            return -1;
+        }
+
+        // Grow the side with the smaller frontier, or the one that still has a frontier
+        boolean forwardTurn = backward.isEmpty() || (!forward.isEmpty() && forward.size() <= backward.size());
+        Side side = forwardTurn ? forward : backward;
+        Side other = forwardTurn ? backward : forward;
+        int settled = -1;
+
+        if (!side.isEmpty()) {
+            int current = side.poll();
+            boolean newVillage = !other.isSettled(current);
+            if (trace != null) {
+                trace.record(SearchTrace.DEQUEUE, current, side.parent[current]);
+                trace.record(SearchTrace.EXPAND, current, side.parent[current]);
+            }
+
+            relaxed += graph.lastEdge(current) - graph.firstEdge(current);
+
+            // If the other side has reached this village the two searches meet in it
+            meet(forwardTurn, current, current, side.distanceTo(current) + other.distanceTo(current));
+
+            // Reach the children and look for routes over to the other search
+            for (int edge = graph.firstEdge(current); edge < graph.lastEdge(current); edge++) {
+                int child = graph.getTarget(edge);
+                double length = side.weighted ? graph.getWeight(edge) : 1;
+                double childDistance = side.distanceTo(current) + length;
+
+                if (!side.isSettled(child) && childDistance < side.distanceTo(child)) {
+                    side.reach(child, current, childDistance);
+                    if (trace != null) {
+                        trace.record(SearchTrace.ENQUEUE, child, current);
+                    }
+                }
+                if (other.distanceTo(child) != Double.POSITIVE_INFINITY) {
+                    meet(forwardTurn, current, child, childDistance + other.distanceTo(child));
+                }
+            }
+
+            settled = newVillage ? current : -1;
+        }
+
+        // Stop once no path through the villages left in the frontiers can be shorter
+        if (forward.isEmpty() || backward.isEmpty() || forward.nearest() + backward.nearest() >= best) {
+            finished = true;
+            forward.clear();
+            backward.clear();
+        }
+
+        return settled;
+    }
+
+    /**
+     * The method for remembering the path through a route between the two searches if it is the
+     * shortest one so far
+     */
+    private void meet(boolean forwardTurn, int current, int other, double length) {
+        if (length < best) {
+            best = length;
+            meetingForward = forwardTurn ? current : other;
+            meetingBackward = forwardTurn ? other : current;
+        }
+    }
+
+    /**
+     * The method for checking if the search is finished
+     * @return - Return true once the shortest path is known or there is none
+     */
+    public boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * The method for retrieving how many routes the two searches followed since they were started
+     * @return - Return the number of routes
+     */
+    public long getRelaxed() {
+        return relaxed;
+    }
+
+    /**
+     * The method for checking if the two searches have met
+     * @return - Return true if a path between the villages was found
+     */
+    public boolean found() {
+        return meetingForward >= 0;
+    }
+
+    /**
+     * The method for retrieving the length of the shortest path found so far
+     * @return - Return the distance, or the number of routes for an unweighted search
+     */
+    public double getDistance() {
+        return best;
+    }
+
+    /**
+     * The method for stitching the two halves of the path together where the searches met
+     * @return - Return the ids of the villages from the start village to the end village
+     */
+    public int[] getPath() {
+        // The meeting point is only on the start village's half if both searches settled it
+        int first = meetingBackward == meetingForward ? backward.parent[meetingBackward] : meetingBackward;
+
+        // Count the villages on the two halves
+        int forwardLength = 0;
+        for (int current = meetingForward; current >= 0; current = forward.parent[current]) {
+            forwardLength += 1;
+        }
+        int length = forwardLength;
+        for (int current = first; current >= 0; current = backward.parent[current]) {
+            length += 1;
+        }
+
+        // Fill in the start village's half backwards and the end village's half forwards
+        int[] path = new int[length];
+        int index = forwardLength - 1;
+        for (int current = meetingForward; current >= 0; current = forward.parent[current]) {
+            path[index] = current;
+            index -= 1;
+        }
+        index = forwardLength;
+        for (int current = first; current >= 0; current = backward.parent[current]) {
+            path[index] = current;
+            index += 1;
+        }
+
+        return path;
+    }
+
+    /**
+     * The method for retrieving the number of villages in the two frontiers
+     * @return - Return the size of the frontiers
+     */
+    public int frontierSize() {
+        return forward.size() + backward.size();
+    }
+
+    /**
+     * The method for retrieving a village of the frontiers, the start village's frontier first
+     * @param index - The position in the frontiers
+     * @return - Return the id of the village
+     */
+    public int frontierVillage(int index) {
+        return index < forward.size() ? forward.get(index) : backward.get(index - forward.size());
+    }
+
+    /**
+     * The Side class that holds the distances, parents and frontier of the search from one end
+     */
+    private static class Side {
+
+        private final boolean weighted;
+        private final double[] distance;
+        private final int[] parent;
+        private final int[] reached;
+        private final int[] settled;
+        private final IndexedMinHeap heap;
+        private final int[] queue;
+        private int head;
+        private int tail;
+        private int generation;
+
+        /**
+         * The Side constructor that makes room for every village
+         */
+        Side(int size, boolean weighted) {
+            this.weighted = weighted;
+            distance = new double[size];
+            parent = new int[size];
+            reached = new int[size];
+            settled = new int[size];
+
+            // A weighted search needs a heap, an unweighted one only a queue
+            heap = weighted ? new IndexedMinHeap(size) : null;
+            queue = weighted ? null : new int[size];
+        }
+
+        /**
+         * The method for forgetting the last search, which only moves on the stamp
+         */
+        void restart() {
+            clear();
+            generation += 1;
+            head = 0;
+            tail = 0;
+        }
+
+        /**
+         * The method for retrieving the distance a village has been reached at
+         */
+        double distanceTo(int village) {
+            return reached[village] == generation ? distance[village] : Double.POSITIVE_INFINITY;
+        }
+
+        boolean isSettled(int village) {
+            return settled[village] == generation;
+        }
+
+        /**
+         * The method for reaching a village at a distance, adding it to the frontier
+         */
+        void reach(int village, int from, double d) {
+            reached[village] = generation;
+            distance[village] = d;
+            parent[village] = from;
+
+            if (weighted) {
+                heap.insertOrDecrease(village, d);
+            } else {
+                queue[tail] = village;
+                tail += 1;
+            }
+        }
+
+        /**
+         * The method for removing the nearest village from the frontier and settling it
+         */
+        int poll() {
+            int village;
+            if (weighted) {
+                village = heap.poll();
+            } else {
+                village = queue[head];
+                head += 1;
+            }
+
+            settled[village] = generation;
+            return village;
+        }
+
+        /**
+         * The method for retrieving the distance of the nearest village in the frontier. A
+         * queue is always in order of distance, since every route counts the same
+         */
+        double nearest() {
+            return weighted ? heap.getKey(heap.peek()) : distance[queue[head]];
+        }
+
+        boolean isEmpty() {
+            return size() == 0;
+        }
+
+        int size() {
+            return weighted ? heap.size() : tail - head;
+        }
+
+        int get(int index) {
+            return weighted ? heap.get(index) : queue[head + index];
+        }
+
+        /**
+         * The method for emptying the frontier once the search is finished
+         */
+        void clear() {
+            if (weighted) {
+                heap.clear();
+            } else {
+                head = tail;
+            }
+        }
+    }
+}
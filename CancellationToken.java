@@ -0,0 +1,65 @@
+/**
+ * The CancellationToken class that tells a search running on another thread when to stop. The
+ * search checks it between its steps, so a search is never stopped halfway through a step and the
+ * RouteFinder is always left in a state that can be shown. A token can be cancelled from any
+ * thread, and it can also be given a time budget, after which it counts as expired.
+ */
+public class CancellationToken {
+
+    private final boolean budgeted;
+    private final long deadline;
+    private volatile boolean cancelled;
+
+    /**
+     * The CancellationToken constructor for a token without a time budget
+     */
+    public CancellationToken() {
+        budgeted = false;
+        deadline = 0;
+    }
+
+    /**
+     * The CancellationToken constructor for a token that expires a given time after it is made
+     * @param budgetMillis - The number of milliseconds the search may run for
+     */
+    public CancellationToken(long budgetMillis) {
+        if (budgetMillis < 0) {
+            throw new IllegalArgumentException("A time budget cannot be negative.");
+        }
+
+        // A budget of centuries is the same as no budget, and keeps the clock from wrapping around
+        budgeted = budgetMillis < Long.MAX_VALUE / 2_000_000;
+        deadline = System.nanoTime() + (budgeted ? budgetMillis * 1_000_000 : 0);
+    }
+
+    /**
+     * The method for asking the search to stop before its next step
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * The method for checking if the token was cancelled
+     * @return - Return true if cancel was called
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * The method for checking if the time budget of the token has run out
+     * @return - Return true if the token has a budget and it is used up
+     */
+    public boolean isExpired() {
+        return budgeted && System.nanoTime() - deadline >= 0;
+    }
+
+    /**
+     * The method for checking if the search should stop for either reason
+     * @return - Return true if the token was cancelled or has expired
+     */
+    public boolean shouldStop() {
+        return cancelled || isExpired();
+    }
+}
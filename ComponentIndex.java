@@ -0,0 +1,187 @@
+import java.util.Arrays;
+
+/**
+ * The ComponentIndex class that holds which connected part of the map every village is in. It is
+ * built with one breadth first sweep over the graph, after which two villages can be checked for
+ * a path between them by comparing two ints, so a search between villages in different parts of
+ * the map can stop before it explores anything instead of exploring the whole part it started in.
+ *
+ * Like the graph, an index is never changed once it is built. Joining two parts with a new route
+ * gives a copy with the smaller part moved into the larger one, while taking a route away can
+ * split a part and needs a new sweep.
+ */
+public class ComponentIndex {
+
+    private final int[] componentId;
+    private final int[] componentSize;
+    private final int componentCount;
+    private final int largest;
+    private final int isolated;
+
+    /**
+     * The ComponentIndex constructor that keeps the arrays of a sweep or a join
+     */
+    private ComponentIndex(int[] componentId, int[] componentSize, int componentCount) {
+        this.componentId = componentId;
+        this.componentSize = componentSize;
+        this.componentCount = componentCount;
+
+        // Count the largest part and the villages with no routes
+        int most = 0;
+        int alone = 0;
+        for (int size : componentSize) {
+            most = Math.max(most, size);
+            alone += size == 1 ? 1 : 0;
+        }
+        largest = most;
+        isolated = alone;
+    }
+
+    /**
+     * The method for building the index of a graph. Every village not reached yet starts a new
+     * part, and the sweep from it numbers every village it reaches with that part
+     * @param graph - The graph to index
+     * @return - Return the new index
+     */
+    public static ComponentIndex build(VillageGraph graph) {
+        int n = graph.size();
+        int[] componentId = new int[n];
+        int[] componentSize = new int[Math.max(1, n)];
+        int[] queue = new int[n];
+        int count = 0;
+        Arrays.fill(componentId, -1);
+
+        for (int start = 0; start < n; start++) {
+            // If the village is already in a part
+            if (componentId[start] >= 0) {
+                continue;
+            }
+
+            // Sweep out from the village, using the queue from the front
+            int head = 0;
+            int tail = 0;
+            queue[tail++] = start;
+            componentId[start] = count;
+            while (head < tail) {
+                int current = queue[head++];
+                for (int edge = graph.firstEdge(current); edge < graph.lastEdge(current); edge++) {
+                    int child = graph.getTarget(edge);
+                    if (componentId[child] < 0) {
+                        componentId[child] = count;
+                        queue[tail++] = child;
+                    }
+                }
+            }
+
+            componentSize[count] = tail;
+            count += 1;
+        }
+
+        return new ComponentIndex(componentId, Arrays.copyOf(componentSize, count), count);
+    }
+
+    /**
+     * The method for checking if there is a path between two villages
+     * @param first - The id of the first village
+     * @param second - The id of the second village
+     * @return - Return true if they are in the same part of the map
+     */
+    public boolean connected(int first, int second) {
+        return componentId[first] == componentId[second];
+    }
+
+    /**
+     * The method for retrieving the part of the map a village is in
+     * @param village - The id of the village
+     * @return - Return the number of the part
+     */
+    public int getComponent(int village) {
+        return componentId[village];
+    }
+
+    /**
+     * The method for retrieving the number of villages in a part of the map
+     * @param component - The number of the part
+     * @return - Return the number of villages, 0 for a part that was joined into another
+     */
+    public int getComponentSize(int component) {
+        return componentSize[component];
+    }
+
+    /**
+     * The method for retrieving the number of connected parts of the map
+     * @return - Return the number of parts
+     */
+    public int getComponentCount() {
+        return componentCount;
+    }
+
+    /**
+     * The method for retrieving the number of villages in the largest part of the map
+     * @return - Return the number of villages
+     */
+    public int getLargestComponentSize() {
+        return largest;
+    }
+
+    /**
+     * The method for retrieving the number of villages with no route to any other village
+     * @return - Return the number of villages
+     */
+    public int getIsolatedCount() {
+        return isolated;
+    }
+
+    /**
+     * The method for creating the index of the graph after a route between two villages was set.
+     * If they were in different parts, the villages of the smaller part move into the larger one
+     * and the number of the smaller part is left empty
+     * @param first - The id of the first village
+     * @param second - The id of the second village
+     * @return - Return the new index, or this index if the villages were already connected
+     */
+    public ComponentIndex withRoute(int first, int second) {
+        if (connected(first, second)) {
+            return this;
+        }
+
+        int keep = componentId[first];
+        int move = componentId[second];
+        if (componentSize[keep] < componentSize[move]) {
+            keep = componentId[second];
+            move = componentId[first];
+        }
+
+        int[] newId = componentId.clone();
+        for (int v = 0; v < newId.length; v++) {
+            if (newId[v] == move) {
+                newId[v] = keep;
+            }
+        }
+        int[] newSize = componentSize.clone();
+        newSize[keep] += newSize[move];
+        newSize[move] = 0;
+
+        return new ComponentIndex(newId, newSize, componentCount - 1);
+    }
+
+    /**
+     * The method for creating the index of the graph after a village without routes was added
+     * as the last id
+     * @return - Return the new index, with the village in a part of its own
+     */
+    public ComponentIndex withVillage() {
+        int[] newId = Arrays.copyOf(componentId, componentId.length + 1);
+        int[] newSize = Arrays.copyOf(componentSize, componentSize.length + 1);
+        newId[componentId.length] = componentSize.length;
+        newSize[componentSize.length] = 1;
+
+        return new ComponentIndex(newId, newSize, componentCount + 1);
+    }
+
+    @Override
+    public String toString() {
+        return componentCount + (componentCount == 1 ? " connected part" : " connected parts")
+                + ", the largest with " + largest + " villages, " + isolated + " villages without routes";
+    }
+}
@@ -0,0 +1,777 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32;
+
+/**
+ * The ContractionHierarchy class that preprocesses a village map so shortest paths between two
+ * villages can be found by looking at only a tiny part of it. The villages are contracted one at a
+ * time in order of importance: when a village is taken out, a shortcut is added between every pair
+ * of its remaining neighbours whose shortest route ran through it. Every village then only needs to
+ * keep the routes and shortcuts leading up to more important villages, and a query searches upward
+ * from both ends until the two searches meet. Each shortcut remembers the village it skips so the
+ * path can be unpacked back into real routes.
+ *
+ * Villages are contracted in rounds. In every round the villages that are less important than all
+ * of their neighbours are contracted together, which lets the witness searches of a round run on
+ * all cores. The hierarchy can be saved next to the map and loaded again as long as the map has not
+ * changed.
+ */
+public class ContractionHierarchy {
+
+    public static final String EXTENSION = ".ch";
+
+    private static final int MAGIC = 0x52464348;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int WITNESS_SETTLE_LIMIT = 500;
+    private static final int PRIORITY_SETTLE_LIMIT = 50;
+
+    private final int[] rank;
+    private final int[] upOffsets;
+    private final int[] upTargets;
+    private final double[] upWeights;
+    private final int[] upMiddles;
+
+    /**
+     * The ContractionHierarchy constructor that takes the finished upward graph
+     */
+    private ContractionHierarchy(int[] rank, int[] upOffsets, int[] upTargets, double[] upWeights, int[] upMiddles) {
+        this.rank = rank;
+        this.upOffsets = upOffsets;
+        this.upTargets = upTargets;
+        this.upWeights = upWeights;
+        this.upMiddles = upMiddles;
+    }
+
+    /**
+     * The method for preprocessing a graph into a hierarchy
+     * @param graph - The loaded graph
+     * @return - Return the hierarchy
+     */
+    public static ContractionHierarchy build(VillageGraph graph) {
+        return new Contraction(graph).contract();
+    }
+
+    /**
+     * The method for retrieving the hierarchy file that belongs to a map file
+     * @param map - The text map
+     * @return - Return the hierarchy file next to it
+     */
+    public static File hierarchyFile(File map) {
+        return new File(map.getPath() + EXTENSION);
+    }
+
+    /**
+     * The method for retrieving the number of villages in the hierarchy
+     * @return - Return the number of villages
+     */
+    public int size() {
+        return rank.length;
+    }
+
+    /**
+     * The method for retrieving the number of upward routes and shortcuts in the hierarchy
+     * @return - Return the number of upward edges
+     */
+    public int getEdgeCount() {
+        return upTargets.length;
+    }
+
+    /**
+     * The method for retrieving how important a village is, 0 being the first one contracted
+     * @param village - The id of the village
+     * @return - Return the rank of the village
+     */
+    public int getRank(int village) {
+        return rank[village];
+    }
+
+    /**
+     * The method for creating the scratch state of a query. A query can be run many times, but
+     * only by one thread at a time
+     * @return - Return the new query
+     */
+    public Query newQuery() {
+        return new Query();
+    }
+
+    /**
+     * The method for writing the hierarchy next to the map it was built from
+     * @param map - The text map
+     * @param graph - The graph the hierarchy was built from
+     * @throws IOException - If the file cannot be written
+     */
+    public void save(File map, VillageGraph graph) throws IOException {
+        Path target = hierarchyFile(map).toPath();
+        Path temporary = Files.createTempFile(target.toAbsolutePath().getParent(), map.getName(), ".tmp");
+
+        try {
+            try (FileChannel out = FileChannel.open(temporary, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                MapSnapshot.Writer writer = new MapSnapshot.Writer(out);
+
+                // Write every section after the header
+                writer.position(HEADER_SIZE);
+                writer.putInts(rank);
+                writer.putInts(upOffsets);
+                writer.putInts(upTargets);
+                writer.putInts(upMiddles);
+                writer.align();
+                writer.putDoubles(upWeights);
+                writer.flush();
+
+                // Write the header last, now that the checksum is known
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+                header.putInt(MAGIC);
+                header.putInt(VERSION);
+                header.putLong(map.length());
+                header.putLong(map.lastModified());
+                header.putInt(rank.length);
+                header.putInt(upTargets.length);
+                header.putInt(graph.getEdgeCount());
+                header.putInt(0);
+                header.putLong(writer.checksum());
+                header.flip();
+                out.write(header, 0);
+            }
+
+            Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * The method for loading the hierarchy of a map
+     * @param map - The text map
+     * @param graph - The graph loaded from the map
+     * @return - Return the hierarchy, or null if there is none or it does not match the map
+     */
+    public static ContractionHierarchy load(File map, VillageGraph graph) {
+        File file = hierarchyFile(map);
+
+        // If the map has never been preprocessed
+        if (!file.isFile()) {
+            return null;
+        }
+
+        try (FileChannel in = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            // If the file is too small to even hold the header
+            if (in.size() < HEADER_SIZE) {
+                return null;
+            }
+
+            MappedByteBuffer buffer = in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+            // Check the header against the format, the map and the graph
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION
+                    || buffer.getLong() != map.length() || buffer.getLong() != map.lastModified()) {
+                return null;
+            }
+            int villages = buffer.getInt();
+            int edges = buffer.getInt();
+            if (villages != graph.size() || buffer.getInt() != graph.getEdgeCount()) {
+                return null;
+            }
+            buffer.getInt();
+            long checksum = buffer.getLong();
+
+            // If the sections are not all there or were changed since they were written
+            long expected = HEADER_SIZE + MapSnapshot.aligned(4L * (villages + villages + 1 + edges + edges)) + 8L * edges;
+            if (in.size() != expected) {
+                return null;
+            }
+            CRC32 crc = new CRC32();
+            crc.update(buffer.duplicate().position(HEADER_SIZE));
+            if (crc.getValue() != checksum) {
+                return null;
+            }
+
+            // Read the upward graph
+            buffer.position(HEADER_SIZE);
+            int[] rank = MapSnapshot.readInts(buffer, villages);
+            int[] upOffsets = MapSnapshot.readInts(buffer, villages + 1);
+            int[] upTargets = MapSnapshot.readInts(buffer, edges);
+            int[] upMiddles = MapSnapshot.readInts(buffer, edges);
+            MapSnapshot.align(buffer);
+            double[] upWeights = MapSnapshot.readDoubles(buffer, edges);
+
+            return new ContractionHierarchy(rank, upOffsets, upTargets, upWeights, upMiddles);
+            // If the file cannot be read the hierarchy is simply built again
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * The method for finding the upward edge between two villages
+     * @return - Return the position of the edge in the less important village's list
+     */
+    private int findUpEdge(int first, int second) {
+        int lower = rank[first] < rank[second] ? first : second;
+        int higher = lower == first ? second : first;
+
+        for (int edge = upOffsets[lower]; edge < upOffsets[lower + 1]; edge++) {
+            if (upTargets[edge] == higher) {
+                return edge;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * The Query class that holds the scratch arrays of a bidirectional upward search so they can be
+     * reused from one query to the next
+     */
+    public class Query {
+
+        private final double[] forwardDistance = new double[rank.length];
+        private final double[] backwardDistance = new double[rank.length];
+        private final int[] forwardParent = new int[rank.length];
+        private final int[] backwardParent = new int[rank.length];
+        private final int[] forwardStamp = new int[rank.length];
+        private final int[] backwardStamp = new int[rank.length];
+        private final int[] pathPlace = new int[rank.length];
+        private final IndexedMinHeap forwardHeap = new IndexedMinHeap(rank.length);
+        private final IndexedMinHeap backwardHeap = new IndexedMinHeap(rank.length);
+        private int[] settled = new int[16];
+        private int settledCount;
+        private long relaxed;
+        private int peakFrontier;
+        private int generation;
+        private double best;
+        private int meeting;
+        private int start;
+        private int end;
+
+        /**
+         * The method for finding the shortest path between two villages
+         * @param s - The id of the start village
+         * @param e - The id of the end village
+         * @return - Return true if the villages are connected
+         */
+        public boolean run(int s, int e) {
+            start = s;
+            end = e;
+            best = Double.POSITIVE_INFINITY;
+            meeting = -1;
+            settledCount = 0;
+            relaxed = 0;
+            peakFrontier = 0;
+            generation += 1;
+
+            // Start the two searches from the two ends
+            reach(forwardDistance, forwardParent, forwardStamp, forwardHeap, s, -1, 0);
+            reach(backwardDistance, backwardParent, backwardStamp, backwardHeap, e, -1, 0);
+
+            // Take turns growing the searches until neither can improve on the best meeting
+            boolean forward = true;
+            while (true) {
+                boolean forwardOpen = !forwardHeap.isEmpty() && forwardHeap.getKey(forwardHeap.peek()) < best;
+                boolean backwardOpen = !backwardHeap.isEmpty() && backwardHeap.getKey(backwardHeap.peek()) < best;
+                if (!forwardOpen && !backwardOpen) {
+                    break;
+                }
+
+                if (forward ? forwardOpen : !backwardOpen) {
+                    settle(forwardDistance, forwardParent, forwardStamp, forwardHeap, backwardDistance, backwardStamp);
+                } else {
+                    settle(backwardDistance, backwardParent, backwardStamp, backwardHeap, forwardDistance, forwardStamp);
+                }
+                forward = !forward;
+            }
+
+            forwardHeap.clear();
+            backwardHeap.clear();
+
+            return meeting >= 0;
+        }
+
+        /**
+         * The method for retrieving the length of the shortest path of the last query
+         * @return - Return the distance, infinite if the villages are not connected
+         */
+        public double getDistance() {
+            return best;
+        }
+
+        /**
+         * The method for retrieving the villages both searches settled in the last query, in the
+         * order they were settled
+         * @return - Return the ids of the villages
+         */
+        public int[] getSettled() {
+            return Arrays.copyOf(settled, settledCount);
+        }
+
+        /**
+         * The method for retrieving how many upward routes the last query followed
+         * @return - Return the number of routes
+         */
+        public long getRelaxed() {
+            return relaxed;
+        }
+
+        /**
+         * The method for retrieving the most villages the two heaps of the last query held at once
+         * @return - Return the largest frontier
+         */
+        public int getPeakFrontier() {
+            return peakFrontier;
+        }
+
+        /**
+         * The method for unpacking the path of the last query into the real villages along it.
+         * With routes of distance 0 the two chains, or the shortcuts along them, can pass through
+         * the same village twice at no cost, so the path is cut back to the first time a village
+         * comes up whenever it comes up again, which never makes it longer
+         * @return - Return the ids of the villages from the start village to the end village, or an
+         * empty array if they are not connected
+         */
+        public int[] getPath() {
+            // If the searches never met there is no path
+            if (meeting < 0) {
+                return new int[0];
+            }
+
+            // Collect the upward chain from the start village to the meeting village, then the
+            // downward chain from there to the end village
+            int[] chain = new int[16];
+            int length = 0;
+            for (int v = meeting; v >= 0; v = forwardParent[v]) {
+                chain = grow(chain, length);
+                chain[length++] = v;
+            }
+            reverse(chain, length);
+            for (int v = backwardParent[meeting]; v >= 0; v = backwardParent[v]) {
+                chain = grow(chain, length);
+                chain[length++] = v;
+            }
+
+            // Unpack every edge of the chain, expanding shortcuts into the villages they skip
+            int[] path = new int[Math.max(16, length)];
+            int size = 0;
+            path[size++] = chain[0];
+            pathPlace[chain[0]] = 0;
+            int[] stack = new int[32];
+            for (int i = 0; i + 1 < length; i++) {
+                int top = 0;
+                stack[top++] = chain[i];
+                stack[top++] = chain[i + 1];
+
+                while (top > 0) {
+                    int second = stack[--top];
+                    int first = stack[--top];
+                    int middle = upMiddles[findUpEdge(first, second)];
+
+                    // If the edge is a real route the second village is the next one on the path,
+                    // unless the path was at it before and went round a loop of distance 0
+                    if (middle < 0) {
+                        int place = pathPlace[second];
+                        if (place < size && path[place] == second) {
+                            size = place + 1;
+                        } else {
+                            path = grow(path, size);
+                            pathPlace[second] = size;
+                            path[size++] = second;
+                        }
+                    } else {
+                        // Otherwise unpack the half to the middle village first, then the rest
+                        stack = grow(stack, top + 3);
+                        stack[top++] = middle;
+                        stack[top++] = second;
+                        stack[top++] = first;
+                        stack[top++] = middle;
+                    }
+                }
+            }
+
+            return Arrays.copyOf(path, size);
+        }
+
+        /**
+         * The method for settling the closest village of one side of the search
+         */
+        private void settle(double[] distance, int[] parent, int[] stamp, IndexedMinHeap heap,
+                            double[] otherDistance, int[] otherStamp) {
+            int v = heap.poll();
+            settled = grow(settled, settledCount);
+            settled[settledCount++] = v;
+
+            // If the other side has reached this village the two searches meet here
+            if (otherStamp[v] == generation && distance[v] + otherDistance[v] < best) {
+                best = distance[v] + otherDistance[v];
+                meeting = v;
+            }
+
+            // Relax the edges leading up to more important villages
+            for (int edge = upOffsets[v]; edge < upOffsets[v + 1]; edge++) {
+                reach(distance, parent, stamp, heap, upTargets[edge], v, distance[v] + upWeights[edge]);
+            }
+            relaxed += upOffsets[v + 1] - upOffsets[v];
+            peakFrontier = Math.max(peakFrontier, forwardHeap.size() + backwardHeap.size());
+        }
+
+        /**
+         * The method for reaching a village at a distance if that is closer than before
+         */
+        private void reach(double[] distance, int[] parent, int[] stamp, IndexedMinHeap heap, int v, int from, double d) {
+            if (stamp[v] != generation || d < distance[v]) {
+                stamp[v] = generation;
+                distance[v] = d;
+                parent[v] = from;
+                heap.insertOrDecrease(v, d);
+            }
+        }
+    }
+
+    /**
+     * The method for making sure there is room for one more value at the given position
+     */
+    private static int[] grow(int[] array, int size) {
+        return size < array.length ? array : Arrays.copyOf(array, Math.max(size + 1, array.length * 2));
+    }
+
+    /**
+     * The method for reversing the first values of an array
+     */
+    private static void reverse(int[] array, int length) {
+        for (int i = 0, j = length - 1; i < j; i++, j--) {
+            int swap = array[i];
+            array[i] = array[j];
+            array[j] = swap;
+        }
+    }
+
+    /**
+     * The Contraction class that holds the shrinking graph while the villages are contracted
+     */
+    private static class Contraction {
+
+        private final int n;
+        private final int[][] neighbour;
+        private final double[][] weight;
+        private final int[][] middle;
+        private final int[] degree;
+        private final int[] rank;
+        private final int[] priority;
+        private final int[] deletedNeighbours;
+        private final boolean[] dirty;
+        private final boolean[] contracting;
+        private final int[][] upTarget;
+        private final double[][] upWeight;
+        private final int[][] upMiddle;
+        private final ThreadLocal<Witness> witness;
+
+        /**
+         * The Contraction constructor that copies the routes of the graph into growable lists
+         */
+        Contraction(VillageGraph graph) {
+            n = graph.size();
+            neighbour = new int[n][];
+            weight = new double[n][];
+            middle = new int[n][];
+            degree = new int[n];
+            rank = new int[n];
+            priority = new int[n];
+            deletedNeighbours = new int[n];
+            dirty = new boolean[n];
+            contracting = new boolean[n];
+            upTarget = new int[n][];
+            upWeight = new double[n][];
+            upMiddle = new int[n][];
+            witness = ThreadLocal.withInitial(() -> new Witness(n));
+
+            for (int v = 0; v < n; v++) {
+                int size = graph.lastEdge(v) - graph.firstEdge(v);
+                neighbour[v] = new int[Math.max(4, size)];
+                weight[v] = new double[Math.max(4, size)];
+                middle[v] = new int[Math.max(4, size)];
+                for (int edge = graph.firstEdge(v); edge < graph.lastEdge(v); edge++) {
+                    // A route from a village to itself is never part of a shortest path
+                    if (graph.getTarget(edge) != v) {
+                        addEdge(v, graph.getTarget(edge), graph.getWeight(edge), -1);
+                    }
+                }
+            }
+        }
+
+        /**
+         * The method for contracting every village and packing the upward edges into arrays
+         * @return - Return the finished hierarchy
+         */
+        ContractionHierarchy contract() {
+            int[] remaining = IntStream.range(0, n).toArray();
+            int remainingCount = n;
+            int nextRank = 0;
+            Arrays.fill(dirty, true);
+
+            while (remainingCount > 0) {
+                final int[] round = Arrays.copyOf(remaining, remainingCount);
+
+                // Work out the priority of every village whose neighbourhood changed
+                Arrays.stream(round).parallel().filter(v -> dirty[v]).forEach(v -> {
+                    priority[v] = witness.get().shortcuts(v, null, PRIORITY_SETTLE_LIMIT) - degree[v] + deletedNeighbours[v];
+                    dirty[v] = false;
+                });
+
+                // Pick the villages that are less important than all of their neighbours
+                int[] chosen = Arrays.stream(round).parallel().filter(this::isLocalMinimum).toArray();
+
+                // Work out the shortcuts of the chosen villages on all cores. The witness searches
+                // must not pass through any of the chosen villages, since they all leave together
+                for (int v : chosen) {
+                    contracting[v] = true;
+                }
+                Shortcuts[] shortcuts = new Shortcuts[chosen.length];
+                IntStream.range(0, chosen.length).parallel().forEach(i -> {
+                    Shortcuts found = new Shortcuts();
+                    witness.get().shortcuts(chosen[i], found, WITNESS_SETTLE_LIMIT);
+                    shortcuts[i] = found;
+                });
+
+                // Take the chosen villages out of the graph one after another
+                for (int i = 0; i < chosen.length; i++) {
+                    int v = chosen[i];
+                    rank[v] = nextRank++;
+                    upTarget[v] = Arrays.copyOf(neighbour[v], degree[v]);
+                    upWeight[v] = Arrays.copyOf(weight[v], degree[v]);
+                    upMiddle[v] = Arrays.copyOf(middle[v], degree[v]);
+
+                    for (int k = 0; k < degree[v]; k++) {
+                        int u = neighbour[v][k];
+                        removeEdge(u, v);
+                        deletedNeighbours[u] += 1;
+                        dirty[u] = true;
+                    }
+                    degree[v] = -1;
+                    contracting[v] = false;
+
+                    Shortcuts found = shortcuts[i];
+                    for (int k = 0; k < found.size; k++) {
+                        addEdge(found.first[k], found.second[k], found.weight[k], v);
+                        addEdge(found.second[k], found.first[k], found.weight[k], v);
+                    }
+                }
+
+                // Keep only the villages that are still in the graph
+                int kept = 0;
+                for (int i = 0; i < remainingCount; i++) {
+                    if (degree[remaining[i]] >= 0) {
+                        remaining[kept++] = remaining[i];
+                    }
+                }
+                remainingCount = kept;
+            }
+
+            // Pack the upward edges of every village into compressed sparse row arrays
+            int[] upOffsets = new int[n + 1];
+            for (int v = 0; v < n; v++) {
+                upOffsets[v + 1] = upOffsets[v] + upTarget[v].length;
+            }
+            int[] targets = new int[upOffsets[n]];
+            double[] weights = new double[upOffsets[n]];
+            int[] middles = new int[upOffsets[n]];
+            for (int v = 0; v < n; v++) {
+                System.arraycopy(upTarget[v], 0, targets, upOffsets[v], upTarget[v].length);
+                System.arraycopy(upWeight[v], 0, weights, upOffsets[v], upWeight[v].length);
+                System.arraycopy(upMiddle[v], 0, middles, upOffsets[v], upMiddle[v].length);
+            }
+
+            return new ContractionHierarchy(rank, upOffsets, targets, weights, middles);
+        }
+
+        /**
+         * The method for checking if a village comes before all of its neighbours
+         */
+        private boolean isLocalMinimum(int v) {
+            for (int k = 0; k < degree[v]; k++) {
+                int u = neighbour[v][k];
+                if (priority[u] < priority[v] || (priority[u] == priority[v] && u < v)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * The method for adding an edge to a village's list, or shortening it if it is already there
+         */
+        private void addEdge(int v, int u, double w, int via) {
+            for (int k = 0; k < degree[v]; k++) {
+                if (neighbour[v][k] == u) {
+                    if (w < weight[v][k]) {
+                        weight[v][k] = w;
+                        middle[v][k] = via;
+                    }
+                    return;
+                }
+            }
+
+            // If the lists are full double their size
+            if (degree[v] == neighbour[v].length) {
+                neighbour[v] = Arrays.copyOf(neighbour[v], degree[v] * 2);
+                weight[v] = Arrays.copyOf(weight[v], degree[v] * 2);
+                middle[v] = Arrays.copyOf(middle[v], degree[v] * 2);
+            }
+
+            neighbour[v][degree[v]] = u;
+            weight[v][degree[v]] = w;
+            middle[v][degree[v]] = via;
+            degree[v] += 1;
+        }
+
+        /**
+         * The method for removing an edge from a village's list by moving the last edge into its place
+         */
+        private void removeEdge(int v, int u) {
+            for (int k = 0; k < degree[v]; k++) {
+                if (neighbour[v][k] == u) {
+                    int last = degree[v] - 1;
+                    neighbour[v][k] = neighbour[v][last];
+                    weight[v][k] = weight[v][last];
+                    middle[v][k] = middle[v][last];
+                    degree[v] = last;
+                    return;
+                }
+            }
+        }
+
+        /**
+         * The Witness class that holds the scratch arrays one thread uses to look for paths that
+         * make a shortcut unnecessary
+         */
+        private class Witness {
+
+            private final double[] distance;
+            private final int[] stamp;
+            private final int[] wanted;
+            private final IndexedMinHeap heap;
+            private int generation;
+
+            Witness(int size) {
+                distance = new double[size];
+                stamp = new int[size];
+                wanted = new int[size];
+                heap = new IndexedMinHeap(size);
+            }
+
+            /**
+             * The method for working out the shortcuts contracting a village would need
+             * @param v - The id of the village
+             * @param found - The list to add the shortcuts to, or null to only count them
+             * @param settleLimit - The most villages a witness search may settle
+             * @return - Return the number of shortcuts
+             */
+            int shortcuts(int v, Shortcuts found, int settleLimit) {
+                int count = 0;
+                double longest = 0;
+                for (int k = 0; k < degree[v]; k++) {
+                    longest = Math.max(longest, weight[v][k]);
+                }
+
+                for (int i = 0; i < degree[v]; i++) {
+                    int u = neighbour[v][i];
+                    if (i + 1 == degree[v]) {
+                        break;
+                    }
+
+                    // Mark the later neighbours so the search can stop once it has settled them all
+                    generation += 1;
+                    for (int j = i + 1; j < degree[v]; j++) {
+                        wanted[neighbour[v][j]] = generation;
+                    }
+                    search(u, v, weight[v][i] + longest, settleLimit, degree[v] - i - 1);
+
+                    // A shortcut is needed for every later neighbour the search did not reach
+                    // more cheaply than through the village
+                    for (int j = i + 1; j < degree[v]; j++) {
+                        int w = neighbour[v][j];
+                        double through = weight[v][i] + weight[v][j];
+                        if (stamp[w] != generation || distance[w] > through) {
+                            count += 1;
+                            if (found != null) {
+                                found.add(u, w, through);
+                            }
+                        }
+                    }
+                }
+
+                return count;
+            }
+
+            /**
+             * The method for running a Dijkstra search that avoids the village being contracted
+             * and gives up past a distance, after settling a set number of villages, or once it
+             * has settled every neighbour it is looking for
+             */
+            private void search(int source, int avoid, double limit, int settleLimit, int targets) {
+                stamp[source] = generation;
+                distance[source] = 0;
+                heap.insertOrDecrease(source, 0);
+                int settledVillages = 0;
+
+                while (!heap.isEmpty() && settledVillages < settleLimit) {
+                    int current = heap.poll();
+                    settledVillages += 1;
+                    if (distance[current] > limit) {
+                        break;
+                    }
+                    if (wanted[current] == generation) {
+                        targets -= 1;
+                        if (targets == 0) {
+                            break;
+                        }
+                    }
+
+                    for (int k = 0; k < degree[current]; k++) {
+                        int next = neighbour[current][k];
+                        double d = distance[current] + weight[current][k];
+                        if (next != avoid && !contracting[next] && (stamp[next] != generation || d < distance[next])) {
+                            stamp[next] = generation;
+                            distance[next] = d;
+                            heap.insertOrDecrease(next, d);
+                        }
+                    }
+                }
+
+                heap.clear();
+            }
+        }
+    }
+
+    /**
+     * The Shortcuts class that collects the shortcuts of one contracted village
+     */
+    private static class Shortcuts {
+
+        private int[] first = new int[4];
+        private int[] second = new int[4];
+        private double[] weight = new double[4];
+        private int size;
+
+        void add(int u, int w, double through) {
+            if (size == first.length) {
+                first = Arrays.copyOf(first, size * 2);
+                second = Arrays.copyOf(second, size * 2);
+                weight = Arrays.copyOf(weight, size * 2);
+            }
+            first[size] = u;
+            second[size] = w;
+            weight[size] = through;
+            size += 1;
+        }
+    }
+}
@@ -0,0 +1,377 @@
+import java.util.Arrays;
+
+/**
+ * The DeepeningSearch class that runs depth first searches which remember the path they are on
+ * rather than every village they reached. The path is kept on a stack of ints, with the route each
+ * village will follow next and the distance from the start village next to it. Next to the stack
+ * every village has a flag for being on the path, so checking a route takes the same time however
+ * deep the search is, and the least depth, or distance for IDA*, it was reached at in the current
+ * iteration. A village reached again no closer to the start village than before is not explored a
+ * second time, as everything past it was already searched from nearer. Without that a village
+ * could be reached again down every other path, and on a map with cycles the number of paths, and
+ * so the time a search takes, grows exponentially with its depth.
+ *
+ * A search runs in one of three modes. A depth limited search goes no deeper than its depth limit.
+ * An iterative deepening search runs depth limited searches with a limit of 0, 1, 2 and so on, so
+ * the first path it finds has the fewest routes. An IDA* search limits the distance from the start
+ * village plus the heuristic's estimate of the distance left, and raises that limit to the
+ * smallest one that went over it, so the first path it finds is the shortest. The depth limit
+ * bounds the stack of every mode, at BYTES_PER_LEVEL bytes for every level, and the arrays of the
+ * villages take BYTES_PER_VILLAGE bytes for every village. The automatic depth limit is one less
+ * than the number of villages, which no path that never visits a village twice can go past.
+ */
+public class DeepeningSearch {
+
+    public static final int AUTO_DEPTH_LIMIT = -1;
+    public static final int BYTES_PER_LEVEL = 16;
+    public static final int BYTES_PER_VILLAGE = 13;
+
+    private final VillageGraph graph;
+    private final Mode mode;
+    private final Heuristic heuristic;
+    private final int depthLimit;
+    private int[] stack = new int[16];
+    private int[] next = new int[16];
+    private double[] cost = new double[16];
+    private final boolean[] onPath;
+    private final double[] best;
+    private final int[] bestPass;
+    private int pass;
+    private int top = -1;
+    private int start;
+    private int end;
+    private double bound;
+    private double nextBound;
+    private boolean cutOff;
+    private boolean limitReached;
+    private boolean finished;
+    private boolean found;
+    private long expanded;
+    private long relaxed;
+    private int iterations;
+    private SearchTrace trace;
+
+    /**
+     * The DeepeningSearch constructor that puts the start village on the stack
+     * @param graph - The graph to search
+     * @param start - The id of the start village
+     * @param end - The id of the end village
+     * @param mode - How the search limits its depth
+     * @param heuristic - The heuristic of an IDA* search, or null for the other modes
+     * @param depthLimit - The most routes a path may have, or AUTO_DEPTH_LIMIT for one less than the
+     * number of villages
+     */
+    public DeepeningSearch(VillageGraph graph, int start, int end, Mode mode, Heuristic heuristic, int depthLimit) {
+        if (depthLimit < 0 && depthLimit != AUTO_DEPTH_LIMIT) {
+            throw new IllegalArgumentException("The depth limit cannot be negative.");
+        }
+        if (mode == Mode.IDA_STAR && heuristic == null) {
+            throw new IllegalArgumentException("An IDA* search needs a heuristic.");
+        }
+
+        this.graph = graph;
+        this.mode = mode;
+        this.heuristic = heuristic;
+        this.depthLimit = depthLimit == AUTO_DEPTH_LIMIT ? Math.max(0, graph.size() - 1) : depthLimit;
+        onPath = new boolean[graph.size()];
+        best = new double[graph.size()];
+        bestPass = new int[graph.size()];
+        restart(start, end);
+    }
+
+    /**
+     * The method for starting the search again between two other villages
+     * @param s - The id of the start village
+     * @param e - The id of the end village
+     */
+    public void restart(int s, int e) {
+        start = s;
+        end = e;
+        finished = false;
+        found = false;
+        limitReached = false;
+        expanded = 0;
+        relaxed = 0;
+        iterations = 0;
+
+        // The first limit is the whole depth, no routes at all, or the estimate from the start
+        if (mode == Mode.DEPTH_LIMITED) {
+            bound = depthLimit;
+        } else if (mode == Mode.ITERATIVE_DEEPENING) {
+            bound = 0;
+        } else {
+            bound = heuristic.estimate(start, end);
+        }
+        beginIteration();
+    }
+
+    /**
+     * The method for setting the trace every step tells the villages it takes off the stack,
+     * expands and puts on the stack
+     * @param t - The trace, or null for none
+     */
+    public void setTrace(SearchTrace t) {
+        trace = t;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * The method for taking one step of the search. It expands the village on top of the stack,
+     * unless that village goes over the limit, and then puts the next village to explore on the
+     * stack. When the stack runs empty the next iteration starts with a higher limit, so the stack
+     * is only empty once the search is finished
+     * @return - Return the id of the village that was expanded, or -1 if the search was already
+     * finished
+     */
+    public int step() {
+        if (finished) {
+            return -1;
+        }
+
+        int current = stack[top];
+        int from = top > 0 ? stack[top - 1] : -1;
+        expanded += 1;
+        if (trace != null) {
+            trace.record(SearchTrace.DEQUEUE, current, from);
+        }
+
+        // If the end village is on top of the stack the stack holds its path, unless an IDA*
+        // search reached it by a route longer than its limit, as a shorter one may still be found
+        if (current == end && (mode != Mode.IDA_STAR || cost[top] <= bound)) {
+            found = true;
+            finished = true;
+            return current;
+        }
+
+        // Follow the routes of the village unless it is as deep as the search may go
+        if (overLimit(current)) {
+            next[top] = graph.lastEdge(current);
+        } else {
+            next[top] = graph.firstEdge(current);
+            if (trace != null) {
+                trace.record(SearchTrace.EXPAND, current, from);
+            }
+        }
+
+        advance();
+        return current;
+    }
+
+    /**
+     * The method for checking if the search may not follow the routes of the village on top of
+     * the stack, and remembering why, so the next iteration knows how far to raise the limit
+     */
+    private boolean overLimit(int current) {
+        if (mode == Mode.IDA_STAR) {
+            double estimate = cost[top] + heuristic.estimate(current, end);
+
+            // The smallest estimate over the limit is the limit of the next iteration
+            if (estimate > bound) {
+                nextBound = Math.min(nextBound, estimate);
+                return true;
+            }
+        } else if (top >= bound && hasOpenRoute(current)) {
+            cutOff = true;
+            return true;
+        }
+
+        // No mode may grow the stack past the depth limit
+        if (top >= depthLimit && hasOpenRoute(current)) {
+            limitReached = true;
+            return true;
+        }
+
+        return mode != Mode.IDA_STAR && top >= bound;
+    }
+
+    /**
+     * The method for putting the next village on the stack. The village on top follows its next
+     * route to a village that is not already on the path, and a village with no routes left is
+     * taken off the stack. Once the stack is empty the iteration is over
+     */
+    private void advance() {
+        while (top >= 0) {
+            int current = stack[top];
+
+            while (next[top] < graph.lastEdge(current)) {
+                int edge = next[top]++;
+                int child = graph.getTarget(edge);
+                double childCost = cost[top] + (mode == Mode.IDA_STAR ? graph.getWeight(edge) : 1);
+                relaxed += 1;
+
+                // Skip the villages on the path and the ones already reached as near to the start
+                if (!onPath[child] && (bestPass[child] != pass || childCost < best[child])) {
+                    push(child, childCost);
+                    if (trace != null) {
+                        trace.record(SearchTrace.ENQUEUE, child, current);
+                    }
+                    return;
+                }
+            }
+
+            onPath[current] = false;
+            top -= 1;
+        }
+
+        // If nothing was cut off, every path from the start village was explored
+        if (mode == Mode.DEPTH_LIMITED) {
+            finished = true;
+            limitReached = cutOff;
+        } else if (mode == Mode.ITERATIVE_DEEPENING) {
+            if (!cutOff || bound >= depthLimit) {
+                finished = true;
+                limitReached = cutOff;
+            } else {
+                bound += 1;
+                beginIteration();
+            }
+        } else {
+            if (nextBound == Double.POSITIVE_INFINITY) {
+                finished = true;
+            } else {
+                bound = nextBound;
+                limitReached = false;
+                beginIteration();
+            }
+        }
+    }
+
+    /**
+     * The method for starting an iteration with only the start village on the stack
+     */
+    private void beginIteration() {
+        iterations += 1;
+        pass += 1;
+        cutOff = false;
+        nextBound = Double.POSITIVE_INFINITY;
+
+        // Take what is left of the last path off the stack
+        for (int i = 0; i <= top; i++) {
+            onPath[stack[i]] = false;
+        }
+        top = -1;
+        push(start, 0);
+        if (trace != null) {
+            trace.record(SearchTrace.ENQUEUE, start, -1);
+        }
+    }
+
+    /**
+     * The method for putting a village on the stack, growing the stack as the search goes deeper
+     */
+    private void push(int village, double distance) {
+        top += 1;
+        if (top == stack.length) {
+            int length = Math.min(stack.length * 2, depthLimit + 1);
+            stack = Arrays.copyOf(stack, length);
+            next = Arrays.copyOf(next, length);
+            cost = Arrays.copyOf(cost, length);
+        }
+
+        stack[top] = village;
+        next[top] = -1;
+        cost[top] = distance;
+        onPath[village] = true;
+        best[village] = distance;
+        bestPass[village] = pass;
+    }
+
+    /**
+     * The method for checking if a village has a route to a village that is not on the path
+     */
+    private boolean hasOpenRoute(int village) {
+        for (int edge = graph.firstEdge(village); edge < graph.lastEdge(village); edge++) {
+            if (!onPath[graph.getTarget(edge)]) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * The method for checking if the search is finished
+     * @return - Return true once the end village was found or there is nothing left within the limit
+     */
+    public boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * The method for checking if the end village was found
+     * @return - Return true if a path was found
+     */
+    public boolean found() {
+        return found;
+    }
+
+    /**
+     * The method for checking if the search left paths unexplored because of the depth limit, so a
+     * search that found no path cannot tell that there is none
+     * @return - Return true if the depth limit cut a path off
+     */
+    public boolean isLimitReached() {
+        return limitReached;
+    }
+
+    /**
+     * The method for retrieving the path that was found
+     * @return - Return the ids of the villages from the start village to the end village, or an
+     * empty array if none was found
+     */
+    public int[] getPath() {
+        return found ? Arrays.copyOf(stack, top + 1) : new int[0];
+    }
+
+    /**
+     * The method for retrieving the number of villages on the stack
+     * @return - Return the number of villages, 0 once the search finished without a path
+     */
+    public int stackSize() {
+        return finished && !found ? 0 : top + 1;
+    }
+
+    /**
+     * The method for retrieving a village on the stack
+     * @param index - The place on the stack, 0 for the start village
+     * @return - Return the id of the village
+     */
+    public int stackVillage(int index) {
+        return stack[index];
+    }
+
+    /**
+     * The method for retrieving how many villages were expanded, counting a village again every
+     * time it is reached
+     * @return - Return the number of villages
+     */
+    public long getExpanded() {
+        return expanded;
+    }
+
+    /**
+     * The method for retrieving how many routes the search followed
+     * @return - Return the number of routes
+     */
+    public long getRelaxed() {
+        return relaxed;
+    }
+
+    /**
+     * The method for retrieving how many times the search started again from the start village
+     * @return - Return the number of iterations
+     */
+    public int getIterations() {
+        return iterations;
+    }
+
+    /**
+     * The Mode enum that tells how a search limits its depth
+     */
+    public enum Mode {
+        DEPTH_LIMITED, ITERATIVE_DEEPENING, IDA_STAR
+    }
+}
@@ -0,0 +1,460 @@
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * The DeltaStepping class that holds the shortest distance from one village to every other
+ * village, and the village each one is reached from, worked out with the delta stepping algorithm
+ * on a fork join pool.
+ *
+ * The villages waiting to be expanded are kept in buckets of width delta by their distance, and the
+ * whole of the first bucket is expanded at once across the threads of the pool. Routes no longer
+ * than delta are followed until the bucket stays empty, since they can put villages back in it, and
+ * then the longer routes of every village taken out of the bucket are followed once. A delta close
+ * to the longest route divided by the average number of routes of a village keeps the buckets full
+ * enough to share out without expanding many villages before their distance is final.
+ *
+ * Every round of expanding is done in three passes over the distances it offers: the distances are
+ * lowered, then the villages whose distance went down pick the lowest id that offered it as their
+ * parent, then those villages are put in their buckets. So the distances and parents come out the
+ * same however many threads run, and following the parents back from a village gives a shortest
+ * path from the start village.
+ */
+public class DeltaStepping {
+
+    public static final double AUTO_DELTA = 0;
+
+    // The villages a thread expands at once
+    private static final int CHUNK = 256;
+
+    private final VillageGraph graph;
+    private final int source;
+    private final double delta;
+    private final double[] distance;
+    private final int[] parent;
+    private final int rounds;
+    private final int buckets;
+
+    /**
+     * The DeltaStepping constructor that takes the finished distances and parents
+     */
+    private DeltaStepping(VillageGraph graph, int source, double delta, double[] distance, int[] parent,
+                          int rounds, int buckets) {
+        this.graph = graph;
+        this.source = source;
+        this.delta = delta;
+        this.distance = distance;
+        this.parent = parent;
+        this.rounds = rounds;
+        this.buckets = buckets;
+    }
+
+    /**
+     * The method for working out the distances from a village on the common fork join pool, with
+     * a delta picked from the routes of the graph
+     * @param graph - The loaded graph
+     * @param source - The id of the village to measure from
+     * @return - Return the distances and parents
+     */
+    public static DeltaStepping compute(VillageGraph graph, int source) {
+        return compute(graph, source, AUTO_DELTA, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * The method for working out the distances from a village on a given fork join pool
+     * @param graph - The loaded graph
+     * @param source - The id of the village to measure from
+     * @param delta - The width of a bucket, or AUTO_DELTA to pick one from the routes of the graph
+     * @param pool - The pool to work on
+     * @return - Return the distances and parents
+     */
+    public static DeltaStepping compute(VillageGraph graph, int source, double delta, ForkJoinPool pool) {
+        if (source < 0 || source >= graph.size()) {
+            throw new IllegalArgumentException("There is no village " + source + " in the map.");
+        }
+        if (!(delta >= 0) || delta == Double.POSITIVE_INFINITY) {
+            throw new IllegalArgumentException("The delta must be a positive number.");
+        }
+        if (pool.submit(() -> IntStream.range(0, graph.getEdgeCount()).parallel()
+                .anyMatch(edge -> graph.getWeight(edge) < 0)).join()) {
+            throw new IllegalArgumentException("Delta stepping cannot follow routes with negative distances.");
+        }
+
+        if (delta == AUTO_DELTA) {
+            delta = autoDelta(graph);
+        }
+        return new Stepper(graph, source, delta, pool).run();
+    }
+
+    /**
+     * The method for picking the delta of a graph: the longest route divided by the average number
+     * of routes of a village, so a bucket holds about one route's worth of villages
+     * @param graph - The loaded graph
+     * @return - Return the delta, 1 if the graph has no route longer than 0
+     */
+    public static double autoDelta(VillageGraph graph) {
+        double longest = 0;
+        for (int edge = 0; edge < graph.getEdgeCount(); edge++) {
+            longest = Math.max(longest, graph.getWeight(edge));
+        }
+        if (longest == 0) {
+            return 1;
+        }
+
+        double degree = Math.max(1, (double) graph.getEdgeCount() / Math.max(1, graph.size()));
+        return longest / degree;
+    }
+
+    /**
+     * The method for retrieving the village the distances were measured from
+     * @return - Return the id of the village
+     */
+    public int getSource() {
+        return source;
+    }
+
+    /**
+     * The method for retrieving the width of the buckets that was used
+     * @return - Return the delta
+     */
+    public double getDelta() {
+        return delta;
+    }
+
+    /**
+     * The method for retrieving the distance from the start village to every village. The array is
+     * not copied, so it must not be changed
+     * @return - Return the distances by village id, infinite for villages that cannot be reached
+     */
+    public double[] getDistances() {
+        return distance;
+    }
+
+    /**
+     * The method for retrieving the village every village is reached from. The array is not
+     * copied, so it must not be changed
+     * @return - Return the parents by village id, -1 for the start village and villages that
+     * cannot be reached
+     */
+    public int[] getParents() {
+        return parent;
+    }
+
+    /**
+     * The method for retrieving the distance from the start village to a village
+     * @param village - The id of the village
+     * @return - Return the distance, infinite if it cannot be reached
+     */
+    public double getDistance(int village) {
+        return distance[village];
+    }
+
+    /**
+     * The method for retrieving the shortest path from the start village to a village, in the
+     * same form as the path of a search
+     * @param target - The name of the village the path goes to
+     * @return - Return the names of the villages from the start village to the target, or an empty
+     * list if it cannot be reached
+     */
+    public LinkedList<String> getPath(String target) {
+        int end = graph.getId(target);
+        if (end < 0) {
+            throw new IllegalArgumentException("The map has no village called " + target);
+        }
+
+        LinkedList<String> path = new LinkedList<>();
+        if (distance[end] == Double.POSITIVE_INFINITY) {
+            return path;
+        }
+
+        // Walk back from the target to the start village
+        for (int current = end; current >= 0; current = parent[current]) {
+            path.addFirst(graph.getName(current));
+        }
+        return path;
+    }
+
+    /**
+     * The method for retrieving the number of rounds of expanding that were run
+     * @return - Return the number of rounds
+     */
+    public int getRounds() {
+        return rounds;
+    }
+
+    /**
+     * The method for retrieving the number of buckets that were emptied
+     * @return - Return the number of buckets
+     */
+    public int getBuckets() {
+        return buckets;
+    }
+
+    /**
+     * The Stepper class that holds the state of one run of the algorithm. The distances are kept
+     * as the bits of their doubles in atomic longs, which for distances that are not negative
+     * order the same way as the doubles, so they can be lowered with a compare and set
+     */
+    private static class Stepper {
+
+        private final VillageGraph graph;
+        private final int source;
+        private final double delta;
+        private final ForkJoinPool pool;
+        private final AtomicLongArray distance;
+        private final AtomicIntegerArray claim;
+        private final int[] parent;
+        private final int[] lowered;
+        private final int[] taken;
+        private final int[] removed;
+        private final TreeMap<Long, IntList> buckets = new TreeMap<>();
+        private int round;
+        private int takes;
+        private int emptied;
+
+        /**
+         * The Stepper constructor that puts the start village in the first bucket
+         */
+        private Stepper(VillageGraph graph, int source, double delta, ForkJoinPool pool) {
+            int n = graph.size();
+            this.graph = graph;
+            this.source = source;
+            this.delta = delta;
+            this.pool = pool;
+            distance = new AtomicLongArray(n);
+            claim = new AtomicIntegerArray(n);
+            parent = new int[n];
+            lowered = new int[n];
+            taken = new int[n];
+            removed = new int[n];
+            long infinity = Double.doubleToLongBits(Double.POSITIVE_INFINITY);
+            for (int v = 0; v < n; v++) {
+                distance.set(v, infinity);
+                claim.set(v, Integer.MAX_VALUE);
+            }
+            Arrays.fill(parent, -1);
+
+            distance.set(source, Double.doubleToLongBits(0));
+            bucket(0).add(source);
+        }
+
+        /**
+         * The method for emptying the buckets in order until none are left
+         */
+        private DeltaStepping run() {
+            while (!buckets.isEmpty()) {
+                long index = buckets.firstKey();
+                emptied += 1;
+                IntList settled = new IntList();
+
+                // Follow the short routes until no village is put back in the bucket
+                while (buckets.containsKey(index)) {
+                    int[] frontier = take(index);
+                    for (int village : frontier) {
+                        if (removed[village] != emptied) {
+                            removed[village] = emptied;
+                            settled.add(village);
+                        }
+                    }
+                    relax(frontier, true);
+                }
+
+                // Follow the long routes of every village that was taken out of the bucket once
+                relax(settled.toArray(), false);
+            }
+
+            double[] result = new double[graph.size()];
+            for (int v = 0; v < result.length; v++) {
+                result[v] = Double.longBitsToDouble(distance.get(v));
+            }
+            return new DeltaStepping(graph, source, delta, result, parent, round, emptied);
+        }
+
+        /**
+         * The method for taking a bucket out, keeping only the villages whose distance is still in
+         * it and every village only once
+         */
+        private int[] take(long index) {
+            IntList list = buckets.remove(index);
+            takes += 1;
+
+            IntList frontier = new IntList();
+            for (int i = 0; i < list.size; i++) {
+                int village = list.values[i];
+                if (taken[village] != takes && bucketOf(distanceOf(village)) == index) {
+                    taken[village] = takes;
+                    frontier.add(village);
+                }
+            }
+            return frontier.toArray();
+        }
+
+        /**
+         * The method for following the short or the long routes of a frontier in one round, and
+         * putting every village whose distance went down in its bucket
+         */
+        private void relax(int[] frontier, boolean light) {
+            if (frontier.length == 0) {
+                return;
+            }
+            round += 1;
+            int stamp = round;
+            int chunks = (frontier.length + CHUNK - 1) / CHUNK;
+            Requests[] requests = new Requests[chunks];
+
+            // Read the distances of the frontier first, as they may go down while it is expanded
+            double[] from = new double[frontier.length];
+            for (int i = 0; i < frontier.length; i++) {
+                from[i] = distanceOf(frontier[i]);
+            }
+
+            // Offer every village a distance through the frontier, lowering it if it is shorter
+            forEach(chunks, chunk -> {
+                Requests offers = new Requests();
+                for (int i = chunk * CHUNK; i < Math.min(frontier.length, (chunk + 1) * CHUNK); i++) {
+                    int current = frontier[i];
+                    for (int edge = graph.firstEdge(current); edge < graph.lastEdge(current); edge++) {
+                        double weight = graph.getWeight(edge);
+                        if ((weight <= delta) != light) {
+                            continue;
+                        }
+
+                        int child = graph.getTarget(edge);
+                        double offered = from[i] + weight;
+                        if (offered <= distanceOf(child)) {
+                            offers.add(child, current, offered);
+                            lower(child, offered, stamp);
+                        }
+                    }
+                }
+                requests[chunk] = offers;
+            });
+
+            // Every village whose distance went down takes the lowest id that offered it
+            forEach(chunks, chunk -> {
+                Requests offers = requests[chunk];
+                for (int i = 0; i < offers.size; i++) {
+                    int child = offers.to[i];
+                    if (lowered[child] == stamp && offers.distance[i] == distanceOf(child)
+                            && claim.get(child) > offers.from[i]) {
+                        claim.accumulateAndGet(child, offers.from[i], Math::min);
+                    }
+                }
+            });
+
+            // The offer that was taken sets the parent and lets go of the claim
+            forEach(chunks, chunk -> {
+                Requests offers = requests[chunk];
+                IntList reached = new IntList();
+                for (int i = 0; i < offers.size; i++) {
+                    int child = offers.to[i];
+                    if (lowered[child] == stamp && offers.distance[i] == distanceOf(child)
+                            && claim.get(child) == offers.from[i]) {
+                        claim.set(child, Integer.MAX_VALUE);
+                        parent[child] = offers.from[i];
+                        reached.add(child);
+                    }
+                }
+                offers.reached = reached;
+            });
+
+            // Put the villages in their buckets in the order of the frontier
+            for (Requests offers : requests) {
+                for (int i = 0; i < offers.reached.size; i++) {
+                    int village = offers.reached.values[i];
+                    bucket(bucketOf(distanceOf(village))).add(village);
+                }
+            }
+        }
+
+        /**
+         * The method for lowering the distance of a village, marking it as lowered in this round
+         */
+        private void lower(int village, double offered, int stamp) {
+            long bits = Double.doubleToLongBits(offered);
+            long current = distance.get(village);
+            while (bits < current) {
+                if (distance.compareAndSet(village, current, bits)) {
+                    lowered[village] = stamp;
+                    return;
+                }
+                current = distance.get(village);
+            }
+        }
+
+        /**
+         * The method for running a task for every chunk, on the pool if there is more than one
+         */
+        private void forEach(int chunks, IntConsumer task) {
+            if (chunks > 1 && pool.getParallelism() > 1) {
+                pool.submit(() -> IntStream.range(0, chunks).parallel().forEach(task)).join();
+            } else {
+                for (int chunk = 0; chunk < chunks; chunk++) {
+                    task.accept(chunk);
+                }
+            }
+        }
+
+        private double distanceOf(int village) {
+            return Double.longBitsToDouble(distance.get(village));
+        }
+
+        private long bucketOf(double d) {
+            return (long) Math.floor(d / delta);
+        }
+
+        private IntList bucket(long index) {
+            return buckets.computeIfAbsent(index, i -> new IntList());
+        }
+    }
+
+    /**
+     * The Requests class that holds the distances a chunk of the frontier offered
+     */
+    private static class Requests {
+
+        private int[] to = new int[16];
+        private int[] from = new int[16];
+        private double[] distance = new double[16];
+        private int size;
+        private IntList reached;
+
+        private void add(int child, int current, double offered) {
+            if (size == to.length) {
+                to = Arrays.copyOf(to, size * 2);
+                from = Arrays.copyOf(from, size * 2);
+                distance = Arrays.copyOf(distance, size * 2);
+            }
+
+            to[size] = child;
+            from[size] = current;
+            distance[size] = offered;
+            size += 1;
+        }
+    }
+
+    /**
+     * The IntList class that is a growing array of ids
+     */
+    private static class IntList {
+
+        private int[] values = new int[16];
+        private int size;
+
+        private void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        private int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
@@ -0,0 +1,359 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * The DistanceMatrix class that holds the shortest distance between every pair of villages in one
+ * flat double array, a row for every village. It is worked out on a fork join pool in one of two
+ * ways, picked by the size and density of the map:
+ *
+ * For dense maps the Floyd-Warshall algorithm is run in blocks of 64 by 64 villages, so the three
+ * blocks a step works on fit in the cache. For every block of middle villages the block on the
+ * diagonal is done first, then the blocks in its row and column in parallel, then all the others
+ * in parallel. For sparse maps a Dijkstra search is run from every village instead, the searches
+ * spread over the pool with a heap for every thread, each writing straight into its own row.
+ *
+ * Villages that cannot reach each other are an infinite distance apart.
+ */
+public class DistanceMatrix {
+
+    private static final int BLOCK = 64;
+    private static final double DENSITY_FACTOR = 4;
+
+    private final int size;
+    private final double[] distances;
+    private final boolean floydWarshall;
+
+    /**
+     * The DistanceMatrix constructor that takes the finished distances
+     */
+    private DistanceMatrix(int size, double[] distances, boolean floydWarshall) {
+        this.size = size;
+        this.distances = distances;
+        this.floydWarshall = floydWarshall;
+    }
+
+    /**
+     * The method for working out the distances of a graph on the common fork join pool
+     * @param graph - The loaded graph
+     * @return - Return the matrix
+     */
+    public static DistanceMatrix compute(VillageGraph graph) {
+        return compute(graph, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * The method for working out the distances of a graph on a given fork join pool
+     * @param graph - The loaded graph
+     * @param pool - The pool to work on
+     * @return - Return the matrix
+     */
+    public static DistanceMatrix compute(VillageGraph graph, ForkJoinPool pool) {
+        // If the matrix would not even fit in an array
+        if (!fits(graph)) {
+            throw new IllegalArgumentException("A map of " + graph.size() + " villages is too large for a distance matrix.");
+        }
+
+        int n = graph.size();
+        double[] distances = new double[n * n];
+
+        if (prefersFloydWarshall(graph)) {
+            pool.submit(() -> floydWarshall(graph, distances)).join();
+            return new DistanceMatrix(n, distances, true);
+        }
+
+        // Every thread gets its own heap, which each search leaves empty again
+        ThreadLocal<IndexedMinHeap> heaps = ThreadLocal.withInitial(() -> new IndexedMinHeap(n));
+        pool.submit(() -> IntStream.range(0, n).parallel()
+                .forEach(source -> dijkstra(graph, source, distances, heaps.get()))).join();
+        return new DistanceMatrix(n, distances, false);
+    }
+
+    /**
+     * The method for checking if the matrix of a graph can be held in memory
+     * @param graph - The loaded graph
+     * @return - Return true if it fits in an array and in half of the memory the program may use
+     */
+    public static boolean fits(VillageGraph graph) {
+        long cells = (long) graph.size() * graph.size();
+        return cells < Integer.MAX_VALUE && cells * 8 < Runtime.getRuntime().maxMemory() / 2;
+    }
+
+    /**
+     * The method for picking the algorithm. Floyd-Warshall takes time in proportion to the cube of
+     * the number of villages, the searches to the number of villages times the routes and the log of
+     * the heap size, and the blocked loops are a few times cheaper per step than a heap
+     */
+    static boolean prefersFloydWarshall(VillageGraph graph) {
+        double n = graph.size();
+        double log = Math.max(1, Math.log(n) / Math.log(2));
+        return n * n <= DENSITY_FACTOR * (graph.getEdgeCount() + n) * log;
+    }
+
+    /**
+     * The method for running the blocked Floyd-Warshall algorithm
+     */
+    private static void floydWarshall(VillageGraph graph, double[] d) {
+        int n = graph.size();
+
+        // Start with the routes themselves, and nothing between villages without a route
+        Arrays.fill(d, Double.POSITIVE_INFINITY);
+        for (int v = 0; v < n; v++) {
+            d[v * n + v] = 0;
+            for (int edge = graph.firstEdge(v); edge < graph.lastEdge(v); edge++) {
+                int target = graph.getTarget(edge);
+                d[v * n + target] = Math.min(d[v * n + target], graph.getWeight(edge));
+            }
+        }
+
+        int blocks = (n + BLOCK - 1) / BLOCK;
+        for (int k = 0; k < blocks; k++) {
+            int middle = k;
+
+            // The block on the diagonal only depends on itself
+            relax(d, n, k, k, k);
+
+            // The blocks in its row and column only depend on themselves and the diagonal
+            IntStream.range(0, blocks).parallel().filter(b -> b != middle).forEach(b -> {
+                relax(d, n, middle, b, middle);
+                relax(d, n, b, middle, middle);
+            });
+
+            // Every other block depends on the finished row and column
+            IntStream.range(0, blocks * blocks).parallel().forEach(b -> {
+                int i = b / blocks;
+                int j = b % blocks;
+                if (i != middle && j != middle) {
+                    relax(d, n, i, j, middle);
+                }
+            });
+        }
+    }
+
+    /**
+     * The method for lowering the distances of the block at row block i and column block j
+     * through the villages of middle block k
+     */
+    private static void relax(double[] d, int n, int i, int j, int k) {
+        int iEnd = Math.min(n, (i + 1) * BLOCK);
+        int jStart = j * BLOCK;
+        int jEnd = Math.min(n, jStart + BLOCK);
+        int kEnd = Math.min(n, (k + 1) * BLOCK);
+
+        for (int middle = k * BLOCK; middle < kEnd; middle++) {
+            int middleRow = middle * n;
+            for (int from = i * BLOCK; from < iEnd; from++) {
+                int fromRow = from * n;
+                double toMiddle = d[fromRow + middle];
+
+                // Nothing can be lowered through a village that cannot be reached
+                if (toMiddle == Double.POSITIVE_INFINITY) {
+                    continue;
+                }
+
+                for (int to = jStart; to < jEnd; to++) {
+                    double through = toMiddle + d[middleRow + to];
+                    if (through < d[fromRow + to]) {
+                        d[fromRow + to] = through;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * The method for running a Dijkstra search from one village, writing the distances into its
+     * row of the matrix
+     */
+    private static void dijkstra(VillageGraph graph, int source, double[] d, IndexedMinHeap heap) {
+        int n = graph.size();
+        int row = source * n;
+        Arrays.fill(d, row, row + n, Double.POSITIVE_INFINITY);
+        d[row + source] = 0;
+        heap.insertOrDecrease(source, 0);
+
+        // Settle the closest village and lower the distances of its neighbours until none are left
+        while (!heap.isEmpty()) {
+            int current = heap.poll();
+            for (int edge = graph.firstEdge(current); edge < graph.lastEdge(current); edge++) {
+                int child = graph.getTarget(edge);
+                double childDistance = d[row + current] + graph.getWeight(edge);
+                if (childDistance < d[row + child]) {
+                    d[row + child] = childDistance;
+                    heap.insertOrDecrease(child, childDistance);
+                }
+            }
+        }
+    }
+
+    /**
+     * The method for bringing the matrix up to date after the distance of one route changed, on
+     * the common fork join pool
+     * @param graph - The graph with the changed route
+     * @param first - The id of the first village of the route
+     * @param second - The id of the second village of the route
+     * @param oldDistance - The distance the route had, or infinity if it is new
+     * @param newDistance - The distance the route has now, or infinity if it was removed
+     * @return - Return the new matrix, or this one if nothing changed
+     */
+    public DistanceMatrix routeChanged(VillageGraph graph, int first, int second, double oldDistance, double newDistance) {
+        return routeChanged(graph, first, second, oldDistance, newDistance, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * The method for bringing the matrix up to date after the distance of one route changed. A
+     * shorter route can only help the paths that now go over it, so every distance is lowered to
+     * the path through the route if that is shorter, which takes one pass over the matrix. A
+     * longer route can only hurt the villages whose shortest paths used it, so a Dijkstra search
+     * is run again only from the villages the route was on a shortest path from
+     * @param graph - The graph with the changed route
+     * @param first - The id of the first village of the route
+     * @param second - The id of the second village of the route
+     * @param oldDistance - The distance the route had, or infinity if it is new
+     * @param newDistance - The distance the route has now, or infinity if it was removed
+     * @param pool - The pool to work on
+     * @return - Return the new matrix, or this one if nothing changed
+     */
+    public DistanceMatrix routeChanged(VillageGraph graph, int first, int second, double oldDistance,
+                                       double newDistance, ForkJoinPool pool) {
+        if (newDistance == oldDistance) {
+            return this;
+        }
+
+        int n = size;
+        double[] d = distances.clone();
+        int firstRow = first * n;
+        int secondRow = second * n;
+
+        if (newDistance < oldDistance) {
+            // Every path that gets shorter crosses the route once, in one direction or the other
+            pool.submit(() -> IntStream.range(0, n).parallel().forEach(from -> {
+                int row = from * n;
+                double toFirst = distances[row + first] + newDistance;
+                double toSecond = distances[row + second] + newDistance;
+                for (int to = 0; to < n; to++) {
+                    double through = Math.min(toFirst + distances[secondRow + to], toSecond + distances[firstRow + to]);
+                    if (through < d[row + to]) {
+                        d[row + to] = through;
+                    }
+                }
+            })).join();
+        } else {
+            // Search again from the villages that reached one end of the route over the other
+            int[] rows = IntStream.range(0, n)
+                    .filter(from -> tight(distances[from * n + first], oldDistance, distances[from * n + second])
+                            || tight(distances[from * n + second], oldDistance, distances[from * n + first]))
+                    .toArray();
+            ThreadLocal<IndexedMinHeap> heaps = ThreadLocal.withInitial(() -> new IndexedMinHeap(n));
+            pool.submit(() -> Arrays.stream(rows).parallel()
+                    .forEach(source -> dijkstra(graph, source, d, heaps.get()))).join();
+        }
+
+        return new DistanceMatrix(n, d, floydWarshall);
+    }
+
+    /**
+     * The method for checking if going to one end of a route and over it is a shortest way to the
+     * other end. The sums were added up in different orders, so they only need to be close
+     */
+    private static boolean tight(double toNear, double route, double toFar) {
+        double over = toNear + route;
+        return over != Double.POSITIVE_INFINITY && over <= toFar + Math.ulp(toFar) * 64;
+    }
+
+    /**
+     * The method for making a matrix with room for one more village, which has no routes yet
+     * @return - Return the new matrix
+     */
+    public DistanceMatrix withVillage() {
+        int n = size + 1;
+        double[] d = new double[n * n];
+        Arrays.fill(d, Double.POSITIVE_INFINITY);
+
+        for (int from = 0; from < size; from++) {
+            System.arraycopy(distances, from * size, d, from * n, size);
+        }
+        d[n * n - 1] = 0;
+
+        return new DistanceMatrix(n, d, floydWarshall);
+    }
+
+    /**
+     * The method for making a matrix without a village and its routes, on the common fork join pool
+     * @param graph - The graph the village was removed from
+     * @param village - The id the village had
+     * @return - Return the new matrix
+     */
+    public DistanceMatrix withoutVillage(VillageGraph graph, int village) {
+        return withoutVillage(graph, village, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * The method for making a matrix without a village and its routes, moving the villages after
+     * it down one id the same way the graph does. Taking a village away can only hurt the paths
+     * that went through it, so a Dijkstra search is run again only from the villages that had a
+     * shortest path through it to some other village
+     * @param graph - The graph the village was removed from
+     * @param village - The id the village had
+     * @param pool - The pool to work on
+     * @return - Return the new matrix
+     */
+    public DistanceMatrix withoutVillage(VillageGraph graph, int village, ForkJoinPool pool) {
+        int n = size - 1;
+        double[] d = new double[n * n];
+        int villageRow = village * size;
+
+        // Find the villages a shortest path went from through the village, by their old ids
+        int[] rows = pool.submit(() -> IntStream.range(0, size).parallel().filter(from -> {
+            int row = from * size;
+            for (int to = 0; to < size; to++) {
+                if (to != village && to != from && tight(distances[row + village], distances[villageRow + to], distances[row + to])) {
+                    return true;
+                }
+            }
+            return false;
+        }).filter(from -> from != village).map(from -> from < village ? from : from - 1).toArray()).join();
+
+        for (int from = 0; from < size; from++) {
+            if (from == village) {
+                continue;
+            }
+            int row = (from < village ? from : from - 1) * n;
+            System.arraycopy(distances, from * size, d, row, village);
+            System.arraycopy(distances, from * size + village + 1, d, row + village, size - village - 1);
+        }
+
+        // Search again from those villages on the graph without the village
+        ThreadLocal<IndexedMinHeap> heaps = ThreadLocal.withInitial(() -> new IndexedMinHeap(n));
+        pool.submit(() -> Arrays.stream(rows).parallel()
+                .forEach(source -> dijkstra(graph, source, d, heaps.get()))).join();
+
+        return new DistanceMatrix(n, d, floydWarshall);
+    }
+
+    /**
+     * The method for retrieving the number of villages
+     * @return - Return the size
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * The method for retrieving the shortest distance between two villages
+     * @param from - The id of the first village
+     * @param to - The id of the second village
+     * @return - Return the distance, or infinity if there is no path
+     */
+    public double getDistance(int from, int to) {
+        return distances[from * size + to];
+    }
+
+    /**
+     * The method for checking which algorithm worked out the matrix
+     * @return - Return true for Floyd-Warshall, false for a Dijkstra search from every village
+     */
+    public boolean usedFloydWarshall() {
+        return floydWarshall;
+    }
+}
@@ -0,0 +1,35 @@
+/**
+ * The Heuristic interface that the A* search uses to estimate how far a village still is from the
+ * end village. The estimate must never be more than the real shortest distance, and must not drop
+ * by more than the distance of a route when the route is travelled, or the path found may not be
+ * the shortest one.
+ */
+public interface Heuristic {
+
+    /**
+     * The heuristic that always estimates 0, which makes the A* search a plain Dijkstra search
+     */
+    Heuristic ZERO = (village, target) -> 0;
+
+    /**
+     * The method for estimating the distance between two villages
+     * @param village - The id of the village the search has reached
+     * @param target - The id of the end village
+     * @return - Return the estimated distance
+     */
+    double estimate(int village, int target);
+
+    /**
+     * The method for bringing the heuristic up to date after the distance of one route changed.
+     * By default the heuristic is thrown away and a new one is worked out when it is next needed
+     * @param graph - The graph with the changed route
+     * @param first - The id of the first village of the route
+     * @param second - The id of the second village of the route
+     * @param oldDistance - The distance the route had, or infinity if it is new
+     * @param newDistance - The distance the route has now, or infinity if it was removed
+     * @return - Return a heuristic that is still right for the graph, or null if there is none
+     */
+    default Heuristic routeChanged(VillageGraph graph, int first, int second, double oldDistance, double newDistance) {
+        return null;
+    }
+}
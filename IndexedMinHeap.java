@@ -0,0 +1,176 @@
+import java.util.Arrays;
+
+/**
+ * The IndexedMinHeap class that is the priority queue of the weighted searches. It is a binary
+ * heap of village ids ordered by a double key, with the position of every id kept in an array so
+ * a key can be lowered in place instead of inserting the village a second time. Nothing is boxed.
+ */
+public class IndexedMinHeap {
+
+    private int[] heap;
+    private double[] keys;
+    private int[] position;
+    private int size;
+
+    /**
+     * The IndexedMinHeap constructor that makes room for the ids 0 to capacity - 1
+     * @param capacity - The number of villages
+     */
+    public IndexedMinHeap(int capacity) {
+        heap = new int[capacity];
+        keys = new double[capacity];
+        position = new int[capacity];
+        Arrays.fill(position, -1);
+    }
+
+    /**
+     * The method for retrieving the number of villages in the heap
+     * @return - Return the size
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * The method for checking if the heap is empty
+     * @return - Return true if there is nothing in the heap
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * The method for checking if a village is in the heap
+     * @param id - The id of the village
+     * @return - Return true if it is in the heap
+     */
+    public boolean contains(int id) {
+        return position[id] >= 0;
+    }
+
+    /**
+     * The method for retrieving the village at a position of the heap array
+     * @param index - The position in the heap
+     * @return - Return the id of the village
+     */
+    public int get(int index) {
+        return heap[index];
+    }
+
+    /**
+     * The method for retrieving the key of a village in the heap
+     * @param id - The id of the village
+     * @return - Return its key
+     */
+    public double getKey(int id) {
+        return keys[id];
+    }
+
+    /**
+     * The method for retrieving the village with the smallest key without removing it
+     * @return - Return the id of the village
+     */
+    public int peek() {
+        return heap[0];
+    }
+
+    /**
+     * The method for adding a village, or for lowering its key if it is already in the heap. A
+     * larger key than the one already in the heap is ignored
+     * @param id - The id of the village
+     * @param key - The new key
+     * @return - Return true if the village was added or its key lowered
+     */
+    public boolean insertOrDecrease(int id, double key) {
+        int index = position[id];
+
+        // If the village is new put it at the bottom of the heap
+        if (index < 0) {
+            index = size;
+            size += 1;
+            heap[index] = id;
+            position[id] = index;
+        } else if (key >= keys[id]) {
+            return false;
+        }
+
+        keys[id] = key;
+        siftUp(index);
+        return true;
+    }
+
+    /**
+     * The method for removing the village with the smallest key
+     * @return - Return the id of the village
+     */
+    public int poll() {
+        int first = heap[0];
+        size -= 1;
+
+        // Move the last village to the top and let it sink to its place
+        if (size > 0) {
+            heap[0] = heap[size];
+            position[heap[0]] = 0;
+            siftDown(0);
+        }
+        position[first] = -1;
+
+        return first;
+    }
+
+    /**
+     * The method for emptying the heap, only touching the villages that are still in it
+     */
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            position[heap[i]] = -1;
+        }
+        size = 0;
+    }
+
+    /**
+     * The method for moving the village at a position up until its parent has a smaller key
+     */
+    private void siftUp(int index) {
+        int id = heap[index];
+        double key = keys[id];
+
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (keys[heap[parent]] <= key) {
+                break;
+            }
+            heap[index] = heap[parent];
+            position[heap[index]] = index;
+            index = parent;
+        }
+
+        heap[index] = id;
+        position[id] = index;
+    }
+
+    /**
+     * The method for moving the village at a position down until its children have larger keys
+     */
+    private void siftDown(int index) {
+        int id = heap[index];
+        double key = keys[id];
+        int half = size >>> 1;
+
+        while (index < half) {
+            int child = 2 * index + 1;
+            if (child + 1 < size && keys[heap[child + 1]] < keys[heap[child]]) {
+                child += 1;
+            }
+            if (key <= keys[heap[child]]) {
+                break;
+            }
+            heap[index] = heap[child];
+            position[heap[index]] = index;
+            index = child;
+        }
+
+        heap[index] = id;
+        position[id] = index;
+    }
+}
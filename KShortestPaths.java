@@ -0,0 +1,385 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * The KShortestPaths class that finds the k shortest paths between two villages that never visit
+ * a village twice, with Yen's algorithm. Every path after the first leaves a path found before at
+ * one of its villages, the spur village, and follows the shortest way to the end village that
+ * does not go back through the villages before the spur village or leave it by a route an earlier
+ * path with the same start already took. The shortest of these found so far is the next path.
+ *
+ * The spur searches are not run from scratch. One Dijkstra search is grown from the end village
+ * until it settles the start village, which also gives the first path, and its tree is kept for the
+ * whole query. A spur search is an A* search that uses the tree's distances to the end village as
+ * its estimate, or the radius of the tree for villages outside it, and it stops at the first
+ * village whose way down the tree is still open, since from there the tree's path is the shortest.
+ * Usually that is the spur village itself or one of the first villages it reaches. A spur search
+ * that has to leave the tree grows it until the village it left to is settled, so the estimates
+ * only get better as the query goes on. Only the spur villages from where a path left its parent
+ * path on are tried, as the ones before it were tried for the parent path already.
+ *
+ * Routes in a village map go both ways, so the tree grown from the end village holds the distances
+ * to it. The arrays of the searches are stamped with the number of the search, so they are made
+ * once for the graph and never cleared.
+ */
+public class KShortestPaths {
+
+    private final VillageGraph graph;
+    private final IndexedMinHeap heap;
+    private final IndexedMinHeap treeHeap;
+    private final double[] toEnd;
+    private final int[] next;
+    private final int[] inTree;
+    private final int[] treeReached;
+    private final double[] distance;
+    private final int[] parent;
+    private final int[] reached;
+    private final int[] settled;
+    private final int[] blocked;
+    private final int[] open;
+    private final boolean[] openValue;
+    private final int[] blockedRoute;
+    private int[] walk = new int[16];
+    private int query;
+    private int search;
+    private int explored;
+
+    /**
+     * The KShortestPaths constructor that makes the arrays of the searches for a graph
+     * @param graph - The graph to search
+     */
+    public KShortestPaths(VillageGraph graph) {
+        int n = graph.size();
+        this.graph = graph;
+        heap = new IndexedMinHeap(n);
+        treeHeap = new IndexedMinHeap(n);
+        toEnd = new double[n];
+        next = new int[n];
+        inTree = new int[n];
+        treeReached = new int[n];
+        distance = new double[n];
+        parent = new int[n];
+        reached = new int[n];
+        settled = new int[n];
+        blocked = new int[n];
+        open = new int[n];
+        openValue = new boolean[n];
+        blockedRoute = new int[graph.getEdgeCount()];
+    }
+
+    /**
+     * The method for finding the k shortest paths between two villages that never visit a village
+     * twice, shortest first. Paths of the same cost are ordered by their number of villages and
+     * then by the ids of their villages
+     * @param start - The id of the start village
+     * @param end - The id of the end village
+     * @param k - The most paths to find
+     * @return - Return the routes, fewer than k if there are not that many paths, with the cost of
+     * each one added up along its path like calculatePath and the villages settled so far
+     */
+    public List<RouteBatch.Route> find(int start, int end, int k) {
+        if (k < 1) {
+            throw new IllegalArgumentException("At least one path must be asked for.");
+        }
+
+        List<RouteBatch.Route> routes = new ArrayList<>();
+        query += 1;
+        explored = 0;
+        treeHeap.clear();
+        toEnd[end] = 0;
+        next[end] = -1;
+        treeReached[end] = query;
+        treeHeap.insertOrDecrease(end, 0);
+        growTree(start);
+        if (inTree[start] != query) {
+            return routes;
+        }
+
+        // The first path goes straight down the tree
+        List<Candidate> accepted = new ArrayList<>();
+        PriorityQueue<Candidate> candidates = new PriorityQueue<>();
+        Set<List<Integer>> known = new HashSet<>();
+        Candidate first = new Candidate(treePath(new int[0], start, end), 0, explored);
+        accepted.add(first);
+        known.add(first.key());
+
+        while (accepted.size() < k) {
+            Candidate last = accepted.get(accepted.size() - 1);
+            int[] path = last.path;
+
+            // The accepted paths that start the same way as the last one, up to the spur village
+            List<int[]> sharing = new ArrayList<>();
+            for (Candidate c : accepted) {
+                if (c.path.length > last.deviation + 1
+                        && Arrays.equals(c.path, 0, last.deviation, path, 0, last.deviation)) {
+                    sharing.add(c.path);
+                }
+            }
+
+            for (int i = last.deviation; i < path.length - 1; i++) {
+                int spur = path[i];
+                search += 1;
+
+                // Keep the search away from the villages before the spur village and from the
+                // routes the paths sharing them leave it by
+                for (int j = 0; j <= i; j++) {
+                    blocked[path[j]] = search;
+                }
+                List<int[]> stillSharing = new ArrayList<>();
+                for (int[] other : sharing) {
+                    if (other[i] == spur && other.length > i + 1) {
+                        blockedRoute[graph.findEdge(spur, other[i + 1])] = search;
+                        stillSharing.add(other);
+                    }
+                }
+                sharing = stillSharing;
+
+                int[] spurPath = spurSearch(Arrays.copyOf(path, i), spur, end);
+                if (spurPath != null) {
+                    Candidate candidate = new Candidate(spurPath, i, explored);
+                    if (known.add(candidate.key())) {
+                        candidates.add(candidate);
+                    }
+                }
+            }
+
+            // If every path was found
+            if (candidates.isEmpty()) {
+                break;
+            }
+            accepted.add(candidates.poll());
+        }
+
+        for (Candidate c : accepted) {
+            List<String> names = new ArrayList<>(c.path.length);
+            for (int village : c.path) {
+                names.add(graph.getName(village));
+            }
+            routes.add(new RouteBatch.Route(graph.getName(start), graph.getName(end), names, c.cost, c.explored));
+        }
+        return routes;
+    }
+
+    /**
+     * The method for growing the Dijkstra search from the end village until it settles a village.
+     * Every village it settles gets its distance to the end village and the next village on the
+     * way there, and the nearest village it has not settled is the radius of the tree
+     * @param village - The id of the village to settle
+     */
+    private void growTree(int village) {
+        while (inTree[village] != query && !treeHeap.isEmpty()) {
+            int current = treeHeap.poll();
+            inTree[current] = query;
+            explored += 1;
+
+            for (int edge = graph.firstEdge(current); edge < graph.lastEdge(current); edge++) {
+                int child = graph.getTarget(edge);
+                double childDistance = toEnd[current] + graph.getWeight(edge);
+                if (inTree[child] != query && (treeReached[child] != query || childDistance < toEnd[child])) {
+                    treeReached[child] = query;
+                    toEnd[child] = childDistance;
+                    next[child] = current;
+                    treeHeap.insertOrDecrease(child, childDistance);
+                }
+            }
+        }
+    }
+
+    /**
+     * The method for finding the shortest path from the spur village to the end village that keeps
+     * away from the blocked villages and routes, with the tree as the estimate
+     * @return - Return the whole path with the root in front, or null if there is none
+     */
+    private int[] spurSearch(int[] root, int spur, int end) {
+        // If the tree's path from the spur village is still open it is the shortest
+        if (inTree[spur] == query && spur != end) {
+            int step = next[spur];
+            if (blockedRoute[graph.findEdge(spur, step)] != search && (step == end || (blocked[step] != search && isOpen(step)))) {
+                return treePath(root, spur, end);
+            }
+        }
+
+        heap.clear();
+        distance[spur] = 0;
+        parent[spur] = -1;
+        reached[spur] = search;
+        heap.insertOrDecrease(spur, estimate(spur));
+
+        while (!heap.isEmpty()) {
+            int current = heap.peek();
+            double key = heap.getKey(current);
+            heap.poll();
+
+            // If the tree grew since the village was put in the heap its estimate went up, and
+            // if the village is outside the tree the tree grows until it is not
+            if (inTree[current] != query) {
+                growTree(current);
+            }
+            double f = distance[current] + estimate(current);
+            if (f > key) {
+                if (f != Double.POSITIVE_INFINITY) {
+                    heap.insertOrDecrease(current, f);
+                }
+                continue;
+            }
+            settled[current] = search;
+            explored += 1;
+
+            // From the first village with an open way down the tree, the tree's path is the rest
+            if (current != spur && isOpen(current)) {
+                heap.clear();
+                int length = 0;
+                for (int v = current; v >= 0; v = parent[v]) {
+                    length += 1;
+                }
+                int[] front = Arrays.copyOf(root, root.length + length - 1);
+                int place = front.length;
+                for (int v = parent[current]; v >= 0; v = parent[v]) {
+                    front[--place] = v;
+                }
+                return treePath(front, current, end);
+            }
+
+            for (int edge = graph.firstEdge(current); edge < graph.lastEdge(current); edge++) {
+                int child = graph.getTarget(edge);
+                if (blocked[child] == search || settled[child] == search
+                        || (current == spur && blockedRoute[edge] == search)) {
+                    continue;
+                }
+
+                double childDistance = distance[current] + graph.getWeight(edge);
+                if ((reached[child] != search || childDistance < distance[child])
+                        && estimate(child) != Double.POSITIVE_INFINITY) {
+                    reached[child] = search;
+                    distance[child] = childDistance;
+                    parent[child] = current;
+                    heap.insertOrDecrease(child, childDistance + estimate(child));
+                }
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * The method for estimating the distance to the end village. Every village outside the tree
+     * is at least the radius of the tree away, which keeps the estimate consistent, and a village
+     * the finished tree never reached cannot reach the end village at all
+     */
+    private double estimate(int village) {
+        if (inTree[village] == query) {
+            return toEnd[village];
+        }
+
+        return treeHeap.isEmpty() ? Double.POSITIVE_INFINITY : treeHeap.getKey(treeHeap.peek());
+    }
+
+    /**
+     * The method for checking if the way down the tree from a village of the tree that is not
+     * blocked stays clear of the blocked villages. What is worked out for the villages on the way
+     * is kept for the rest of the search
+     */
+    private boolean isOpen(int village) {
+        int count = 0;
+        int current = village;
+        boolean result;
+
+        // Walk down the tree until the end village, a blocked village or a village already known
+        while (true) {
+            if (next[current] < 0) {
+                result = true;
+                break;
+            }
+            if (open[current] == search) {
+                result = openValue[current];
+                break;
+            }
+            if (count == walk.length) {
+                walk = Arrays.copyOf(walk, count * 2);
+            }
+            walk[count++] = current;
+            current = next[current];
+            if (blocked[current] == search) {
+                result = false;
+                break;
+            }
+        }
+
+        for (int i = 0; i < count; i++) {
+            open[walk[i]] = search;
+            openValue[walk[i]] = result;
+        }
+        return result;
+    }
+
+    /**
+     * The method for putting a path together from the villages in front and the tree's path
+     */
+    private int[] treePath(int[] front, int from, int end) {
+        int length = 0;
+        for (int v = from; v != end; v = next[v]) {
+            length += 1;
+        }
+
+        int[] path = Arrays.copyOf(front, front.length + length + 1);
+        int place = front.length;
+        for (int v = from; v != end; v = next[v]) {
+            path[place++] = v;
+        }
+        path[place] = end;
+        return path;
+    }
+
+    /**
+     * The method for adding up the cost of a path from its start, the same way calculatePath does
+     */
+    private double cost(int[] path) {
+        double pathCost = 0.00;
+        for (int i = 1; i < path.length; i++) {
+            pathCost += graph.getWeight(graph.findEdge(path[i - 1], path[i]));
+        }
+        return pathCost;
+    }
+
+    /**
+     * The Candidate class that is a path found by a spur search, with the place of its spur
+     * village
+     */
+    private class Candidate implements Comparable<Candidate> {
+
+        private final int[] path;
+        private final int deviation;
+        private final double cost;
+        private final int explored;
+
+        private Candidate(int[] path, int deviation, int explored) {
+            this.path = path;
+            this.deviation = deviation;
+            this.cost = cost(path);
+            this.explored = explored;
+        }
+
+        private List<Integer> key() {
+            List<Integer> key = new ArrayList<>(path.length);
+            for (int village : path) {
+                key.add(village);
+            }
+            return key;
+        }
+
+        @Override
+        public int compareTo(Candidate other) {
+            if (cost != other.cost) {
+                return Double.compare(cost, other.cost);
+            }
+            if (path.length != other.path.length) {
+                return Integer.compare(path.length, other.path.length);
+            }
+            return Arrays.compare(path, other.path);
+        }
+    }
+}
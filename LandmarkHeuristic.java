@@ -0,0 +1,201 @@
+import java.util.Arrays;
+
+/**
+ * The LandmarkHeuristic class that estimates distances with the triangle inequality around a few
+ * landmark villages. The shortest distance from every landmark to every village is worked out
+ * once, and since a route can never be shorter than the difference of its two ends' distances to
+ * a landmark, the largest such difference is a lower bound on the real distance. The landmarks
+ * are picked one at a time as the village farthest from the ones already picked, which spreads
+ * them around the edge of the map where they give the best bounds.
+ */
+public class LandmarkHeuristic implements Heuristic {
+
+    public static final int DEFAULT_LANDMARKS = 8;
+
+    private final int[] landmarks;
+    private final double[][] distances;
+
+    /**
+     * The LandmarkHeuristic constructor that picks the landmarks and works out their distances
+     * @param graph - The graph to estimate distances in
+     * @param count - The most landmarks to pick
+     */
+    public LandmarkHeuristic(VillageGraph graph, int count) {
+        // A negative route goes both ways, so it is a cycle the distances would keep going down on
+        if (graph.hasNegativeRoute()) {
+            throw new IllegalArgumentException("Landmarks cannot be measured over routes with negative distances.");
+        }
+
+        int n = graph.size();
+        int[] picked = new int[Math.min(count, n)];
+        double[][] pickedDistances = new double[picked.length][];
+        int used = 0;
+
+        // The closest distance from any landmark picked so far to every village
+        double[] closest = new double[n];
+        Arrays.fill(closest, Double.POSITIVE_INFINITY);
+        IndexedMinHeap heap = new IndexedMinHeap(n);
+        int next = 0;
+
+        while (used < picked.length) {
+            picked[used] = next;
+            pickedDistances[used] = shortestDistances(graph, next, heap);
+            used += 1;
+
+            // Pick the reachable village farthest from every landmark so far as the next one. If
+            // the map has more than one part, a village that no landmark reaches comes first
+            double farthest = -1;
+            for (int v = 0; v < n; v++) {
+                closest[v] = Math.min(closest[v], pickedDistances[used - 1][v]);
+                if (closest[v] > farthest) {
+                    farthest = closest[v];
+                    next = v;
+                }
+            }
+
+            // If every village is a landmark already there is nothing left to pick
+            if (farthest <= 0) {
+                break;
+            }
+        }
+
+        landmarks = Arrays.copyOf(picked, used);
+        distances = Arrays.copyOf(pickedDistances, used);
+    }
+
+    /**
+     * The LandmarkHeuristic constructor that takes landmarks and distances that are already known
+     */
+    private LandmarkHeuristic(int[] landmarks, double[][] distances) {
+        this.landmarks = landmarks;
+        this.distances = distances;
+    }
+
+    /**
+     * The method for estimating the distance between two villages as the largest difference of
+     * their distances to a landmark. Landmarks that cannot reach both villages are skipped
+     * @param village - The id of the village the search has reached
+     * @param target - The id of the end village
+     * @return - Return the estimated distance
+     */
+    @Override
+    public double estimate(int village, int target) {
+        double best = 0;
+
+        for (double[] distance : distances) {
+            double difference = Math.abs(distance[target] - distance[village]);
+            if (difference > best && difference != Double.POSITIVE_INFINITY) {
+                best = difference;
+            }
+        }
+
+        return best;
+    }
+
+    /**
+     * The method for bringing the landmark distances up to date after the distance of one route
+     * changed. If the route got longer or was removed the old distances are kept: they may now be
+     * lower than the real ones, but the difference of a route's two ends still never comes to
+     * more than the route, so the estimates stay lower bounds. If the route got shorter or is new,
+     * the lower distances are spread out from its ends for every landmark they get closer to, and
+     * only the distance arrays of those landmarks are copied
+     * @param graph - The graph with the changed route
+     * @param first - The id of the first village of the route
+     * @param second - The id of the second village of the route
+     * @param oldDistance - The distance the route had, or infinity if it is new
+     * @param newDistance - The distance the route has now, or infinity if it was removed
+     * @return - Return this heuristic, or one with the lowered distances
+     */
+    @Override
+    public Heuristic routeChanged(VillageGraph graph, int first, int second, double oldDistance, double newDistance) {
+        if (newDistance >= oldDistance) {
+            return this;
+        }
+
+        double[][] changed = distances.clone();
+        IndexedMinHeap heap = null;
+
+        for (int i = 0; i < distances.length; i++) {
+            double[] distance = distances[i];
+
+            // If the shorter route does not bring either end closer to the landmark
+            if (distance[first] + newDistance >= distance[second] && distance[second] + newDistance >= distance[first]) {
+                continue;
+            }
+
+            if (heap == null) {
+                heap = new IndexedMinHeap(graph.size());
+            }
+            changed[i] = distance.clone();
+            lower(changed[i], first, distance[second] + newDistance, heap);
+            lower(changed[i], second, distance[first] + newDistance, heap);
+            spread(graph, changed[i], heap);
+        }
+
+        return heap == null ? this : new LandmarkHeuristic(landmarks, changed);
+    }
+
+    /**
+     * The method for lowering the distance of a village and putting it in the heap if it is lower
+     */
+    private static void lower(double[] distance, int village, double d, IndexedMinHeap heap) {
+        if (d < distance[village]) {
+            distance[village] = d;
+            heap.insertOrDecrease(village, d);
+        }
+    }
+
+    /**
+     * The method for spreading the lowered distances in the heap to the villages they bring closer
+     */
+    private static void spread(VillageGraph graph, double[] distance, IndexedMinHeap heap) {
+        while (!heap.isEmpty()) {
+            int current = heap.poll();
+            for (int edge = graph.firstEdge(current); edge < graph.lastEdge(current); edge++) {
+                lower(distance, graph.getTarget(edge), distance[current] + graph.getWeight(edge), heap);
+            }
+        }
+    }
+
+    /**
+     * The method for retrieving the landmarks that were picked
+     * @return - Return a copy of the ids of the landmarks
+     */
+    public int[] getLandmarks() {
+        return landmarks.clone();
+    }
+
+    /**
+     * The method for working out the shortest distance from one village to every other village
+     * @param graph - The graph to search
+     * @param source - The id of the village to start from
+     * @param heap - An empty heap large enough for the graph, which is left empty again
+     * @return - Return the distances, infinite for villages that cannot be reached
+     */
+    static double[] shortestDistances(VillageGraph graph, int source, IndexedMinHeap heap) {
+        double[] distance = new double[graph.size()];
+        Arrays.fill(distance, Double.POSITIVE_INFINITY);
+        distance[source] = 0;
+        heap.insertOrDecrease(source, 0);
+
+        // Settle the closest village and lower the distances of its neighbours until none are left
+        while (!heap.isEmpty()) {
+            int current = heap.poll();
+            for (int edge = graph.firstEdge(current); edge < graph.lastEdge(current); edge++) {
+                int child = graph.getTarget(edge);
+                double childDistance = distance[current] + graph.getWeight(edge);
+                if (childDistance < distance[child]) {
+                    distance[child] = childDistance;
+                    heap.insertOrDecrease(child, childDistance);
+                }
+            }
+        }
+
+        return distance;
+    }
+
+    @Override
+    public String toString() {
+        return "landmarks " + Arrays.toString(landmarks);
+    }
+}
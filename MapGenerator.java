@@ -0,0 +1,439 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The MapGenerator class that writes synthetic village maps in the format the RouteFinder reads:
+ * the number of villages on the first line, then one tab separated first village, second village
+ * and distance per line. The villages are called V0, V1 and so on.
+ *
+ * The routes are written out as they are made, and no shape keeps more than a few rows of its
+ * villages in memory, so a map can be far larger than the memory of the program. The same shape,
+ * size and seed always give the same file. The shapes are:
+ *
+ * grid - every village joined to the ones to its right and below it.
+ * geometric - villages spread over a square, joined to every village closer than a radius picked
+ * for the average number of routes. The square is cut into cells as wide as the radius and every
+ * cell gets its share of the villages, so only the rows of cells next to the one being written
+ * are kept.
+ * scalefree - every village joined to an earlier one and then random pairs added, with the ends
+ * picked so the number of routes of a village falls off as a power law, leaving a few hubs with
+ * very many routes. The ends are drawn straight from the distribution, so nothing is kept.
+ * clusters - a number of random maps side by side with no routes between them.
+ * random - every village joined to an earlier one and then random pairs added.
+ *
+ * Every village is in at least one line, as the count on the first line must match the villages in
+ * the file. A geometric village with no other village in reach gets a line to itself instead. The
+ * grid and geometric maps can also write the position of every village next to the map for the
+ * straight line heuristic, with no route ever shorter than the straight line it covers.
+ */
+public class MapGenerator {
+
+    public static final List<String> SHAPES = Arrays.asList("grid", "geometric", "scalefree", "clusters", "random");
+
+    private static final double SQUARE = 1_000_000;
+    private static final int MAX_DISTANCE = 100;
+
+    private final String shape;
+    private final int villages;
+    private final long seed;
+    private double degree = 4;
+    private int clusters = 8;
+
+    /**
+     * The MapGenerator constructor that picks the map to write
+     * @param shape - The shape of the map, one of SHAPES
+     * @param villages - The number of villages, at least 2
+     * @param seed - The seed of the random numbers
+     */
+    public MapGenerator(String shape, int villages, long seed) {
+        if (!SHAPES.contains(shape)) {
+            throw new IllegalArgumentException("There is no shape called " + shape + ", only " + SHAPES);
+        }
+        if (villages < 2) {
+            throw new IllegalArgumentException("A map needs at least 2 villages.");
+        }
+
+        this.shape = shape;
+        this.villages = villages;
+        this.seed = seed;
+    }
+
+    /**
+     * The method for setting the average number of routes of a village, which the grid ignores
+     * @param d - The average number of routes, at least 2
+     */
+    public void setDegree(double d) {
+        if (!(d >= 2)) {
+            throw new IllegalArgumentException("The villages need at least 2 routes on average.");
+        }
+
+        degree = d;
+    }
+
+    /**
+     * The method for setting the number of clusters of the clusters shape
+     * @param c - The number of clusters, with at least 2 villages each
+     */
+    public void setClusters(int c) {
+        if (c < 1 || c > villages / 2) {
+            throw new IllegalArgumentException("There must be between 1 and " + villages / 2 + " clusters.");
+        }
+
+        clusters = c;
+    }
+
+    /**
+     * Write a map from the command line
+     * Usage: java MapGenerator shape villages file [-seed 1] [-degree 4] [-clusters 8] [-coords]
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.out.println("Usage: java MapGenerator " + String.join("|", SHAPES)
+                    + " villages file [-seed 1] [-degree 4] [-clusters 8] [-coords]");
+            return;
+        }
+
+        MapGenerator generator;
+        long seed = 1;
+        boolean coordinates = false;
+        String degree = null;
+        String clusterCount = null;
+
+        // Read the options after the shape, size and file
+        for (int i = 3; i < args.length; i++) {
+            if (args[i].equals("-coords")) {
+                coordinates = true;
+            } else if (args[i].equals("-seed") && i + 1 < args.length) {
+                seed = Long.parseLong(args[++i]);
+            } else if (args[i].equals("-degree") && i + 1 < args.length) {
+                degree = args[++i];
+            } else if (args[i].equals("-clusters") && i + 1 < args.length) {
+                clusterCount = args[++i];
+            } else {
+                throw new IllegalArgumentException("There is no option called " + args[i]);
+            }
+        }
+
+        generator = new MapGenerator(args[0], Integer.parseInt(args[1]), seed);
+        if (degree != null) {
+            generator.setDegree(Double.parseDouble(degree));
+        }
+        if (clusterCount != null) {
+            generator.setClusters(Integer.parseInt(clusterCount));
+        }
+
+        File map = new File(args[2]);
+        long start = System.nanoTime();
+        long lines = generator.write(map, coordinates);
+        System.out.printf("Wrote %,d villages and %,d routes (%,d bytes) to %s in %.1f s%n", generator.villages,
+                lines, map.length(), map, (System.nanoTime() - start) / 1e9);
+    }
+
+    /**
+     * The method for writing the map to a file
+     * @param map - The file to write
+     * @param coordinates - True to write the positions of the villages next to the map as well,
+     *                    which only the grid and geometric shapes have
+     * @return - Return the number of route lines written
+     */
+    public long write(File map, boolean coordinates) throws IOException {
+        boolean positions = coordinates && (shape.equals("grid") || shape.equals("geometric"));
+
+        try (RouteWriter out = new RouteWriter(map);
+             RouteWriter coords = positions ? new RouteWriter(StraightLineHeuristic.coordinatesFile(map)) : null) {
+            // Write the number of villages
+            out.writeNumber(villages);
+            out.newLine();
+
+            if (shape.equals("grid")) {
+                writeGrid(out, coords);
+            } else if (shape.equals("geometric")) {
+                writeGeometric(out, coords);
+            } else if (shape.equals("scalefree")) {
+                writeScaleFree(out);
+            } else if (shape.equals("clusters")) {
+                // Every cluster gets its share of the villages, the first ones one more
+                int offset = 0;
+                for (int c = 0; c < clusters; c++) {
+                    int size = villages / clusters + (c < villages % clusters ? 1 : 0);
+                    writeRandom(out, offset, size, new Random(mix(seed, c)));
+                    offset += size;
+                }
+            } else {
+                writeRandom(out, 0, villages, new Random(seed));
+            }
+
+            return out.lines;
+        }
+    }
+
+    /**
+     * The method for writing a grid, one row after another
+     */
+    private void writeGrid(RouteWriter out, RouteWriter coords) throws IOException {
+        int width = (int) Math.ceil(Math.sqrt(villages));
+        Random random = new Random(seed);
+
+        for (int v = 0; v < villages; v++) {
+            if (coords != null) {
+                coords.writePosition(v, v % width, v / width);
+            }
+
+            // A route between two villages next to each other is never shorter than 1
+            if (v % width + 1 < width && v + 1 < villages) {
+                out.writeRoute(v, v + 1, 1 + random.nextInt(10));
+            }
+            if (v + width < villages) {
+                out.writeRoute(v, v + width, 1 + random.nextInt(10));
+            }
+        }
+    }
+
+    /**
+     * The method for writing a random geometric map. A village only reaches villages in its own
+     * cell and the eight around it, so the rows of cells above and below are the only ones kept
+     * while a row is written. Every cell makes its villages from its own seed, so a row can be made
+     * again the same way whenever it is needed
+     */
+    private void writeGeometric(RouteWriter out, RouteWriter coords) throws IOException {
+        // The radius that gives every village the average number of routes
+        double radius = Math.sqrt(degree / (Math.PI * villages));
+        int side = Math.max(1, (int) Math.floor(1 / radius));
+        double cell = SQUARE / side;
+        radius *= SQUARE;
+
+        double[][] above = null;
+        double[][] row = geometricRow(0, side, cell);
+        for (int r = 0; r < side; r++) {
+            double[][] below = r + 1 < side ? geometricRow(r + 1, side, cell) : null;
+
+            for (int c = 0; c < side; c++) {
+                double[] here = row[c];
+                int first = firstInCell(r * side + c, side);
+
+                for (int i = 0; i < here.length; i += 2) {
+                    int village = first + i / 2;
+                    boolean reached = false;
+
+                    if (coords != null) {
+                        coords.writePosition(village, (long) here[i], (long) here[i + 1]);
+                    }
+
+                    // Look through the nine cells around the village, writing a route only from
+                    // the village with the lower number so every route is written once
+                    for (int dr = -1; dr <= 1; dr++) {
+                        double[][] cells = dr < 0 ? above : dr == 0 ? row : below;
+                        if (cells == null) {
+                            continue;
+                        }
+                        for (int dc = -1; dc <= 1; dc++) {
+                            if (c + dc < 0 || c + dc >= side) {
+                                continue;
+                            }
+                            double[] there = cells[c + dc];
+                            int otherFirst = firstInCell((r + dr) * side + c + dc, side);
+
+                            for (int j = 0; j < there.length; j += 2) {
+                                int other = otherFirst + j / 2;
+                                double length = Math.hypot(here[i] - there[j], here[i + 1] - there[j + 1]);
+                                if (other == village || length > radius) {
+                                    continue;
+                                }
+
+                                reached = true;
+                                if (village < other) {
+                                    // Round up so a route is never shorter than its straight line
+                                    out.writeRoute(village, other, Math.max(1, (long) Math.ceil(length)));
+                                }
+                            }
+                        }
+                    }
+
+                    // A village with nobody in reach still has to be in the file
+                    if (!reached) {
+                        out.writeRoute(village, village, 0);
+                    }
+                }
+            }
+
+            above = row;
+            row = below;
+        }
+    }
+
+    /**
+     * The method for making the villages of a row of cells, as the x and y of every village one
+     * after the other in the array of its cell. The positions are whole numbers, the same as
+     * the ones written out, so the routes can be measured from them
+     */
+    private double[][] geometricRow(int r, int side, double cell) {
+        double[][] row = new double[side][];
+
+        for (int c = 0; c < side; c++) {
+            int index = r * side + c;
+            int count = firstInCell(index + 1, side) - firstInCell(index, side);
+            Random random = new Random(mix(seed, index));
+
+            row[c] = new double[count * 2];
+            for (int i = 0; i < count; i++) {
+                row[c][2 * i] = Math.floor((c + random.nextDouble()) * cell);
+                row[c][2 * i + 1] = Math.floor((r + random.nextDouble()) * cell);
+            }
+        }
+
+        return row;
+    }
+
+    /**
+     * The method for finding the number of the first village of a cell. The villages are shared
+     * out over the cells in order, the first cells getting one more
+     */
+    private int firstInCell(int index, int side) {
+        long cells = (long) side * side;
+        long base = villages / cells;
+        long extra = villages % cells;
+        return (int) (index * base + Math.min(index, extra));
+    }
+
+    /**
+     * The method for writing a scale free map. A village picked as i = n * u * u for a uniform u
+     * is picked with a chance that falls off as one over the square root of i, which gives the
+     * number of routes of the villages a power law tail like a preferential attachment map
+     */
+    private void writeScaleFree(RouteWriter out) throws IOException {
+        Random random = new Random(seed);
+
+        // Join every village to an earlier one, favouring the first villages, so the map is connected
+        for (int v = 1; v < villages; v++) {
+            out.writeRoute(v, powerLaw(random, v), 1 + random.nextInt(MAX_DISTANCE));
+        }
+
+        // Add routes between pairs drawn the same way until the average is reached
+        long extra = (long) Math.ceil(degree * villages / 2) - (villages - 1);
+        for (long i = 0; i < extra; i++) {
+            int first = powerLaw(random, villages);
+            int second = powerLaw(random, villages);
+            if (first == second) {
+                i -= 1;
+                continue;
+            }
+            out.writeRoute(first, second, 1 + random.nextInt(MAX_DISTANCE));
+        }
+    }
+
+    /**
+     * The method for picking a village below a bound, favouring the low numbers
+     */
+    private static int powerLaw(Random random, int bound) {
+        double u = random.nextDouble();
+        return Math.min(bound - 1, (int) (bound * u * u));
+    }
+
+    /**
+     * The method for writing a connected random map over a range of villages. Every village after
+     * the first is joined to an earlier one, and then random pairs are added until the average
+     * number of routes is reached
+     * @param offset - The number of the first village
+     * @param size - The number of villages
+     */
+    private void writeRandom(RouteWriter out, int offset, int size, Random random) throws IOException {
+        for (int v = 1; v < size; v++) {
+            out.writeRoute(offset + v, offset + random.nextInt(v), 1 + random.nextInt(MAX_DISTANCE));
+        }
+
+        long extra = (long) Math.ceil(degree * size / 2) - (size - 1);
+        for (long i = 0; i < extra; i++) {
+            out.writeRoute(offset + random.nextInt(size), offset + random.nextInt(size), 1 + random.nextInt(MAX_DISTANCE));
+        }
+    }
+
+    /**
+     * The method for making a seed for one part of the map out of the seed of the whole map
+     */
+    private static long mix(long seed, long part) {
+        long z = seed * 0x9E3779B97F4A7C15L + part;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * The RouteWriter class that writes the lines of a map through a large buffer, turning the
+     * numbers into characters itself so no String is made for a line
+     */
+    private static class RouteWriter implements AutoCloseable {
+
+        private final Writer out;
+        private final char[] digits = new char[20];
+        private long lines;
+
+        /**
+         * The RouteWriter constructor that opens the file
+         */
+        RouteWriter(File file) throws IOException {
+            out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8), 1 << 16);
+        }
+
+        /**
+         * The method for writing one route line
+         */
+        void writeRoute(int first, int second, long distance) throws IOException {
+            writeVillage(first);
+            out.write('\t');
+            writeVillage(second);
+            out.write('\t');
+            writeNumber(distance);
+            newLine();
+            lines += 1;
+        }
+
+        /**
+         * The method for writing the position of a village
+         */
+        void writePosition(int village, long x, long y) throws IOException {
+            writeVillage(village);
+            out.write('\t');
+            writeNumber(x);
+            out.write('\t');
+            writeNumber(y);
+            newLine();
+        }
+
+        void writeVillage(int village) throws IOException {
+            out.write('V');
+            writeNumber(village);
+        }
+
+        /**
+         * The method for writing a number that is 0 or more
+         */
+        void writeNumber(long number) throws IOException {
+            int start = digits.length;
+
+            do {
+                start -= 1;
+                digits[start] = (char) ('0' + number % 10);
+                number /= 10;
+            } while (number > 0);
+
+            out.write(digits, start, digits.length - start);
+        }
+
+        void newLine() throws IOException {
+            out.write('\n');
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+}
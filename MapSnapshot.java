@@ -0,0 +1,431 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * The MapSnapshot class that compiles a loaded village map into a binary file next to the text
+ * map, and loads it back without parsing a single route. The snapshot holds the interned name
+ * table and the adjacency arrays of the VillageGraph in 8 byte aligned sections, so loading it is
+ * one memory mapping and a bulk copy of each array. The header records the version of the format,
+ * a CRC32 checksum of the sections, and the length and last modified time of the text map it was
+ * compiled from, so a snapshot that no longer matches its map is ignored and rebuilt. A map too
+ * large for the heap can be opened with map instead, which leaves the sections in the mapped file
+ * and reads the graph straight out of them.
+ *
+ * The text map stays the source format; the snapshot is only a cache of it.
+ */
+public class MapSnapshot {
+
+    public static final String EXTENSION = ".graph";
+
+    private static final int MAGIC = 0x52464753;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int CHUNK_SIZE = 1 << 20;
+    private static final long MAP_SIZE = 1L << 30;
+
+    /**
+     * Compile every map file given on the command line into its snapshot
+     */
+    public static void main(String[] args) throws IOException {
+        for (String name : args) {
+            File map = new File(name);
+            RouteFinder routeFinder = new RouteFinder(map);
+
+            // If the map could not be read there is nothing to compile
+            if (routeFinder.readFile(map)) {
+                System.err.println("The file " + map + " does not contain the correct information.");
+            } else {
+                save(map, routeFinder.getGraph());
+                System.out.println("Compiled " + map + " into " + snapshotFile(map));
+            }
+        }
+    }
+
+    /**
+     * The method for retrieving the snapshot file that belongs to a map file
+     * @param map - The text map
+     * @return - Return the snapshot file next to it
+     */
+    public static File snapshotFile(File map) {
+        return new File(map.getPath() + EXTENSION);
+    }
+
+    /**
+     * The method for writing the snapshot of a graph next to the map it was loaded from. The
+     * snapshot is written to a temporary file first and moved into place, so a reader never sees
+     * half of one
+     * @param map - The text map the graph was loaded from
+     * @param graph - The loaded graph
+     * @throws IOException - If the snapshot cannot be written
+     */
+    public static void save(File map, VillageGraph graph) throws IOException {
+        Path target = snapshotFile(map).toPath();
+        Path temporary = Files.createTempFile(target.toAbsolutePath().getParent(), map.getName(), ".tmp");
+
+        try {
+            // Encode the names once so their total length is known
+            String[] names = graph.nameArray();
+            byte[][] encoded = new byte[names.length][];
+            int[] nameOffsets = new int[names.length + 1];
+            for (int i = 0; i < names.length; i++) {
+                encoded[i] = names[i].getBytes(StandardCharsets.UTF_8);
+                nameOffsets[i + 1] = nameOffsets[i] + encoded[i].length;
+            }
+
+            try (FileChannel out = FileChannel.open(temporary, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                Writer writer = new Writer(out);
+
+                // Write every section after the header
+                writer.position(HEADER_SIZE);
+                writer.putInts(nameOffsets);
+                for (byte[] name : encoded) {
+                    writer.putBytes(name);
+                }
+                writer.align();
+                writer.putInts(graph.nameRankArray());
+                writer.putInts(graph.offsetArray());
+                writer.putInts(graph.targetArray());
+                writer.putInts(graph.routeFromArray());
+                writer.putInts(graph.routeToArray());
+                writer.align();
+                writer.putDoubles(graph.weightArray());
+                writer.putDoubles(graph.routeDistanceArray());
+                writer.flush();
+
+                // Write the header last, now that the checksum is known
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+                header.putInt(MAGIC);
+                header.putInt(VERSION);
+                header.putLong(map.length());
+                header.putLong(map.lastModified());
+                header.putInt(names.length);
+                header.putInt(graph.getEdgeCount());
+                header.putInt(graph.getRouteCount());
+                header.putInt(nameOffsets[names.length]);
+                header.putLong(writer.checksum());
+                header.flip();
+                out.write(header, 0);
+            }
+
+            Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * The method for loading the snapshot of a map file
+     * @param map - The text map
+     * @return - Return the graph from the snapshot, or null if there is no snapshot or it is
+     * broken, from another version of the format, or older than the map
+     */
+    public static VillageGraph load(File map) {
+        File snapshot = snapshotFile(map);
+
+        // If the map has never been compiled
+        if (!snapshot.isFile()) {
+            return null;
+        }
+
+        try (FileChannel in = FileChannel.open(snapshot.toPath(), StandardOpenOption.READ)) {
+            Header header = Header.read(in, map);
+            if (header == null) {
+                return null;
+            }
+            int villages = header.villages;
+            int edges = header.edges;
+            int routes = header.routes;
+
+            MappedByteBuffer buffer = in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+            // If the sections were changed since they were written
+            CRC32 crc = new CRC32();
+            crc.update(buffer.duplicate().position(HEADER_SIZE));
+            if (crc.getValue() != header.checksum) {
+                return null;
+            }
+
+            // Read the name table
+            buffer.position(HEADER_SIZE);
+            int[] nameOffsets = readInts(buffer, villages + 1);
+            byte[] encoded = new byte[header.nameBytes];
+            buffer.get(encoded);
+            String[] names = new String[villages];
+            for (int i = 0; i < villages; i++) {
+                names[i] = new String(encoded, nameOffsets[i], nameOffsets[i + 1] - nameOffsets[i], StandardCharsets.UTF_8);
+            }
+            align(buffer);
+
+            // Read the adjacency arrays in one bulk copy each
+            int[] nameRank = readInts(buffer, villages);
+            int[] offsets = readInts(buffer, villages + 1);
+            int[] targets = readInts(buffer, edges);
+            int[] routeFrom = readInts(buffer, routes);
+            int[] routeTo = readInts(buffer, routes);
+            align(buffer);
+            double[] weights = readDoubles(buffer, edges);
+            double[] routeDistance = readDoubles(buffer, routes);
+
+            return VillageGraph.fromArrays(names, nameRank, offsets, targets, weights, routeFrom, routeTo, routeDistance);
+            // If the snapshot cannot be read it is simply rebuilt from the map
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * The method for opening the snapshot of a map file without copying it onto the heap. Every
+     * section is mapped on its own and the graph reads its routes and names straight out of the
+     * mapped file, so the operating system pages in only the parts a search touches and the heap
+     * holds nothing that grows with the map. Each section can be up to 2 GB, rather than the whole
+     * file as with load
+     * @param map - The text map
+     * @return - Return the graph on the mapped snapshot, or null if there is no snapshot or it is
+     * broken, from another version of the format, or older than the map
+     */
+    public static VillageGraph map(File map) {
+        File snapshot = snapshotFile(map);
+
+        // If the map has never been compiled
+        if (!snapshot.isFile()) {
+            return null;
+        }
+
+        try (FileChannel in = FileChannel.open(snapshot.toPath(), StandardOpenOption.READ)) {
+            Header header = Header.read(in, map);
+            if (header == null) {
+                return null;
+            }
+            int villages = header.villages;
+            int edges = header.edges;
+            int routes = header.routes;
+
+            // If the sections were changed since they were written, checked a piece at a time
+            CRC32 crc = new CRC32();
+            for (long position = HEADER_SIZE; position < in.size(); position += MAP_SIZE) {
+                crc.update(in.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAP_SIZE, in.size() - position)));
+            }
+            if (crc.getValue() != header.checksum) {
+                return null;
+            }
+
+            // Map the sections in the order they were written, the mappings outlive the channel
+            long position = HEADER_SIZE;
+            IntBuffer nameOffsets = mapSection(in, position, 4L * (villages + 1)).asIntBuffer();
+            position += 4L * (villages + 1);
+            ByteBuffer nameBytes = mapSection(in, position, header.nameBytes);
+            position = aligned(position + header.nameBytes);
+            IntBuffer nameRank = mapSection(in, position, 4L * villages).asIntBuffer();
+            position += 4L * villages;
+            IntBuffer offsets = mapSection(in, position, 4L * (villages + 1)).asIntBuffer();
+            position += 4L * (villages + 1);
+            IntBuffer targets = mapSection(in, position, 4L * edges).asIntBuffer();
+            position += 4L * edges;
+            IntBuffer routeFrom = mapSection(in, position, 4L * routes).asIntBuffer();
+            position += 4L * routes;
+            IntBuffer routeTo = mapSection(in, position, 4L * routes).asIntBuffer();
+            position = aligned(position + 4L * routes);
+            DoubleBuffer weights = mapSection(in, position, 8L * edges).asDoubleBuffer();
+            position += 8L * edges;
+            DoubleBuffer routeDistance = mapSection(in, position, 8L * routes).asDoubleBuffer();
+
+            return VillageGraph.fromStorage(new OffHeapGraphStorage(nameOffsets, nameBytes, nameRank, offsets,
+                    targets, weights, routeFrom, routeTo, routeDistance));
+            // If the snapshot cannot be read it is simply rebuilt from the map
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * The method for mapping one section of a snapshot in the byte order it was written in
+     */
+    private static ByteBuffer mapSection(FileChannel in, long position, long length) throws IOException {
+        return in.map(FileChannel.MapMode.READ_ONLY, position, length).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * The method for copying ints out of the snapshot in one bulk read
+     */
+    static int[] readInts(ByteBuffer buffer, int count) {
+        int[] values = new int[count];
+        buffer.asIntBuffer().get(values);
+        buffer.position(buffer.position() + 4 * count);
+        return values;
+    }
+
+    /**
+     * The method for copying doubles out of the snapshot in one bulk read
+     */
+    static double[] readDoubles(ByteBuffer buffer, int count) {
+        double[] values = new double[count];
+        buffer.asDoubleBuffer().get(values);
+        buffer.position(buffer.position() + 8 * count);
+        return values;
+    }
+
+    /**
+     * The method for moving the position of a buffer to the next multiple of 8
+     */
+    static void align(ByteBuffer buffer) {
+        buffer.position((int) aligned(buffer.position()));
+    }
+
+    /**
+     * The method for rounding a length up to the next multiple of 8
+     */
+    static long aligned(long length) {
+        return (length + 7) & ~7L;
+    }
+
+    /**
+     * The Header class that holds the counts and checksum at the front of a snapshot
+     */
+    private static class Header {
+
+        private int villages;
+        private int edges;
+        private int routes;
+        private int nameBytes;
+        private long checksum;
+
+        /**
+         * The method for reading the header of a snapshot and checking it against the format and
+         * the map it was compiled from
+         * @return - Return the header, or null if the snapshot does not belong to the map or is
+         * not as long as its sections
+         */
+        private static Header read(FileChannel in, File map) throws IOException {
+            // If the file is too small to even hold the header
+            if (in.size() < HEADER_SIZE) {
+                return null;
+            }
+
+            ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            while (buffer.hasRemaining()) {
+                if (in.read(buffer, buffer.position()) < 0) {
+                    return null;
+                }
+            }
+            buffer.flip();
+
+            // Check the header against the format and the map it was compiled from
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION
+                    || buffer.getLong() != map.length() || buffer.getLong() != map.lastModified()) {
+                return null;
+            }
+            Header header = new Header();
+            header.villages = buffer.getInt();
+            header.edges = buffer.getInt();
+            header.routes = buffer.getInt();
+            header.nameBytes = buffer.getInt();
+            header.checksum = buffer.getLong();
+
+            // If the sections are not all there
+            int villages = header.villages;
+            long expected = HEADER_SIZE + aligned(4L * (villages + 1) + header.nameBytes)
+                    + aligned(4L * (villages + villages + 1 + header.edges + header.routes + header.routes))
+                    + 8L * (header.edges + header.routes);
+            return in.size() == expected ? header : null;
+        }
+    }
+
+    /**
+     * The Writer class that streams the sections of a snapshot through a fixed size buffer and
+     * keeps the checksum of everything it writes. The other compiled files kept next to a map use
+     * it as well
+     */
+    static class Writer {
+
+        private final FileChannel out;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(CHUNK_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        private final CRC32 crc = new CRC32();
+        private long written;
+
+        /**
+         * The Writer constructor that writes to the given channel
+         */
+        Writer(FileChannel out) {
+            this.out = out;
+        }
+
+        /**
+         * The method for starting the sections at a position in the file
+         */
+        void position(long position) throws IOException {
+            out.position(position);
+            written = position;
+        }
+
+        void putInts(int[] values) throws IOException {
+            for (int value : values) {
+                room(4);
+                buffer.putInt(value);
+            }
+        }
+
+        void putDoubles(double[] values) throws IOException {
+            for (double value : values) {
+                room(8);
+                buffer.putDouble(value);
+            }
+        }
+
+        void putBytes(byte[] values) throws IOException {
+            for (byte value : values) {
+                room(1);
+                buffer.put(value);
+            }
+        }
+
+        /**
+         * The method for padding the file with zeros up to the next multiple of 8
+         */
+        void align() throws IOException {
+            while ((written + buffer.position()) % 8 != 0) {
+                room(1);
+                buffer.put((byte) 0);
+            }
+        }
+
+        long checksum() {
+            return crc.getValue();
+        }
+
+        /**
+         * The method for making sure the buffer has room for the given number of bytes
+         */
+        private void room(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        /**
+         * The method for writing out everything in the buffer
+         */
+        void flush() throws IOException {
+            buffer.flip();
+            crc.update(buffer.duplicate());
+            written += buffer.remaining();
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+}
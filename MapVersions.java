@@ -0,0 +1,254 @@
+import java.io.File;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The MapVersions class that hands the loaded map to the threads that search it while a new map
+ * is loaded. Every map that is published becomes a Version with the next epoch, and the current
+ * version sits in an AtomicReference, so publishing a new map is one swap and nothing that reads
+ * the map ever waits for a lock or for the load.
+ *
+ * A search pins the version it starts on and searches that version until it is done, even if a
+ * newer map is published in the meantime. A version counts its pins, plus one for as long as it is
+ * the current version, and once the last of them is let go it lets go of its graph as well. A
+ * replaced map is freed as soon as no search holds it, so long as nothing else keeps the graph:
+ * a search builds its RouteFinder on the graph of the version it pinned and lets go of both once
+ * it is done. The graph of a version is never changed, since a VillageGraph is never changed once
+ * it is built, and a change to the map is published as a new version.
+ *
+ * A MapVersions can be used from any number of threads at the same time.
+ */
+public class MapVersions {
+
+    private final AtomicReference<Version> current = new AtomicReference<>();
+    private final AtomicInteger released = new AtomicInteger();
+    private long epochs;
+
+    /**
+     * The method for publishing a newly loaded map as the current version. Searches that pinned
+     * the version before it keep it until they are done, and the searches pinned from now on get
+     * the new one
+     * @param file - The file the map was loaded from
+     * @param graph - The loaded graph
+     * @return - Return the new version
+     */
+    public Version publish(File file, VillageGraph graph) {
+        return publish(file, graph, false);
+    }
+
+    /**
+     * The method for publishing a map as the current version, telling if it was changed since it
+     * was loaded from its file. A changed map no longer matches the snapshot and hierarchy files
+     * next to its file, so a RouteFinder built on its version neither reads nor writes them
+     * @param file - The file the map was loaded from
+     * @param graph - The loaded or changed graph
+     * @param edited - True if the graph was changed since it was loaded from the file
+     * @return - Return the new version
+     */
+    public Version publish(File file, VillageGraph graph, boolean edited) {
+        if (graph == null) {
+            throw new IllegalArgumentException("There is no map to publish.");
+        }
+
+        // The epochs only have to go up in the order the maps are published
+        Version version;
+        synchronized (this) {
+            epochs += 1;
+            version = new Version(epochs, file, graph, edited);
+            Version old = current.getAndSet(version);
+
+            // The old version is no longer current, so only its pins still hold it
+            if (old != null) {
+                old.unpin();
+            }
+        }
+
+        return version;
+    }
+
+    /**
+     * The method for publishing a map and pinning the new version in one go, so no map published
+     * by another thread can let go of it before it is pinned
+     * @param file - The file the map was loaded from
+     * @param graph - The loaded or changed graph
+     * @param edited - True if the graph was changed since it was loaded from the file
+     * @return - Return the pin of the new version
+     */
+    public synchronized Pin publishPinned(File file, VillageGraph graph, boolean edited) {
+        // Nothing else can be published while this holds the lock, so the version is still current
+        return publish(file, graph, edited).pin();
+    }
+
+    /**
+     * The method for pinning the current version so it is kept until the pin is closed
+     * @return - Return the pin, or null if no map was published yet
+     */
+    public Pin pin() {
+        while (true) {
+            Version version = current.get();
+            if (version == null) {
+                return null;
+            }
+
+            // If the version was let go between reading it and pinning it, a newer one is current
+            Pin pin = version.pin();
+            if (pin != null) {
+                return pin;
+            }
+        }
+    }
+
+    /**
+     * The method for retrieving the current version without pinning it
+     * @return - Return the version, or null if no map was published yet
+     */
+    public Version getCurrent() {
+        return current.get();
+    }
+
+    /**
+     * The method for checking if a version is still the current one
+     * @param version - The version
+     * @return - Return true if no newer map was published since
+     */
+    public boolean isCurrent(Version version) {
+        return current.get() == version;
+    }
+
+    /**
+     * The method for retrieving how many versions let go of their graph
+     * @return - Return the number of versions
+     */
+    public int getReleasedCount() {
+        return released.get();
+    }
+
+    /**
+     * The Version class that is one published map with the epoch it was published in
+     */
+    public class Version {
+
+        private final long epoch;
+        private final File file;
+        private final boolean edited;
+        private final AtomicInteger pins = new AtomicInteger(1);
+        private volatile VillageGraph graph;
+
+        /**
+         * The Version constructor that holds the one pin of the current version
+         */
+        private Version(long epoch, File file, VillageGraph graph, boolean edited) {
+            this.epoch = epoch;
+            this.file = file;
+            this.graph = graph;
+            this.edited = edited;
+        }
+
+        /**
+         * The method for adding a pin, which fails once the version let go of its graph
+         */
+        private boolean tryPin() {
+            while (true) {
+                int count = pins.get();
+                if (count == 0) {
+                    return false;
+                }
+                if (pins.compareAndSet(count, count + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        /**
+         * The method for taking a pin away, letting go of the graph with the last one
+         */
+        private void unpin() {
+            if (pins.decrementAndGet() == 0) {
+                graph = null;
+                released.incrementAndGet();
+            }
+        }
+
+        /**
+         * The method for pinning this version, such as the one a window is showing, so it is kept
+         * until the pin is closed
+         * @return - Return the pin, or null if the version already let go of its graph
+         */
+        public Pin pin() {
+            return tryPin() ? new Pin(this) : null;
+        }
+
+        public long getEpoch() {
+            return epoch;
+        }
+
+        public File getFile() {
+            return file;
+        }
+
+        /**
+         * The method for checking if the map was changed since it was loaded from its file
+         * @return - Return true if the graph no longer matches the file
+         */
+        public boolean isEdited() {
+            return edited;
+        }
+
+        /**
+         * The method for retrieving the graph of the version
+         * @return - Return the graph, or null once nothing holds the version any more
+         */
+        public VillageGraph getGraph() {
+            return graph;
+        }
+
+        /**
+         * The method for retrieving how many pins hold the version, counting the one it has as
+         * the current version
+         * @return - Return the number of pins
+         */
+        public int getPinCount() {
+            return pins.get();
+        }
+
+        @Override
+        public String toString() {
+            return (edited ? "changed map " : "map ") + file + " in epoch " + epoch;
+        }
+    }
+
+    /**
+     * The Pin class that keeps a version from being let go of until it is closed. Closing a pin
+     * more than once only lets go of the version once
+     */
+    public static class Pin implements AutoCloseable {
+
+        private final Version version;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private Pin(Version version) {
+            this.version = version;
+        }
+
+        public Version getVersion() {
+            return version;
+        }
+
+        /**
+         * The method for retrieving the graph of the pinned version, which stays the same for as
+         * long as the pin is open
+         * @return - Return the graph
+         */
+        public VillageGraph getGraph() {
+            return version.getGraph();
+        }
+
+        @Override
+        public void close() {
+            if (closed.compareAndSet(false, true)) {
+                version.unpin();
+            }
+        }
+    }
+}
@@ -0,0 +1,23 @@
+/**
+ * The MetricsListener interface that a RouteFinder tells what every search and map load cost.
+ * Both methods are called on the thread that ran the search or load and should return quickly.
+ * RouteMetrics adds them up for JMX, and any other listener can be set instead to send them
+ * somewhere else.
+ */
+public interface MetricsListener {
+
+    /**
+     * The method called once a search has ended, whether it was run by findRoute or by a
+     * SearchEngine, and whether it found a path, found none or was stopped
+     * @param search - What the search cost
+     */
+    default void searchFinished(RouteMetrics.Search search) {
+    }
+
+    /**
+     * The method called once a map was loaded without an error
+     * @param load - What the load cost
+     */
+    default void mapLoaded(RouteMetrics.Load load) {
+    }
+}
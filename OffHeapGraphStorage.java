@@ -0,0 +1,278 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The OffHeapGraphStorage class that holds the arrays of a VillageGraph outside of the Java heap,
+ * either in direct buffers or straight in the memory mapped sections of a MapSnapshot file. The
+ * village names are kept as their UTF-8 bytes next to the position each one starts at, and a name
+ * is only made into a String when it is asked for, so nothing on the heap grows with the size of
+ * the map and the garbage collector has none of it to trace. A village is found by its name with a
+ * binary search over the villages in name order, which takes the place of the HashMap a graph on
+ * the heap keeps.
+ *
+ * Every read is an absolute get that leaves the buffers as they were, so any number of threads can
+ * search the same storage at once.
+ */
+public class OffHeapGraphStorage {
+
+    private final int villages;
+    private final IntBuffer nameOffsets;
+    private final ByteBuffer nameBytes;
+    private final IntBuffer nameRank;
+    private final IntBuffer byRank;
+    private final IntBuffer offsets;
+    private final IntBuffer targets;
+    private final DoubleBuffer weights;
+    private final IntBuffer routeFrom;
+    private final IntBuffer routeTo;
+    private final DoubleBuffer routeDistance;
+    private volatile Lookup lastLookup;
+
+    /**
+     * The OffHeapGraphStorage constructor that keeps buffers laid out like the arrays of a
+     * VillageGraph, with the names as one block of UTF-8 bytes and the position every name starts
+     * at, plus the end of the last one
+     */
+    OffHeapGraphStorage(IntBuffer nameOffsets, ByteBuffer nameBytes, IntBuffer nameRank, IntBuffer offsets,
+                        IntBuffer targets, DoubleBuffer weights, IntBuffer routeFrom, IntBuffer routeTo,
+                        DoubleBuffer routeDistance) {
+        this.villages = nameRank.capacity();
+        this.nameOffsets = nameOffsets;
+        this.nameBytes = nameBytes;
+        this.nameRank = nameRank;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.weights = weights;
+        this.routeFrom = routeFrom;
+        this.routeTo = routeTo;
+        this.routeDistance = routeDistance;
+
+        // Put the villages in name order so a name can be found with a binary search
+        byRank = allocateInts(villages);
+        for (int v = 0; v < villages; v++) {
+            byRank.put(nameRank.get(v), v);
+        }
+    }
+
+    /**
+     * The method for copying the arrays of a graph on the heap into direct buffers
+     * @return - Return the new storage
+     */
+    static OffHeapGraphStorage copyOf(String[] names, int[] nameRank, int[] offsets, int[] targets, double[] weights,
+                                      int[] routeFrom, int[] routeTo, double[] routeDistance) {
+        // Encode the names once so their total length is known
+        byte[][] encoded = new byte[names.length][];
+        IntBuffer nameOffsets = allocateInts(names.length + 1);
+        int length = 0;
+        for (int i = 0; i < names.length; i++) {
+            encoded[i] = names[i].getBytes(StandardCharsets.UTF_8);
+            nameOffsets.put(i, length);
+            length += encoded[i].length;
+        }
+        nameOffsets.put(names.length, length);
+
+        ByteBuffer nameBytes = ByteBuffer.allocateDirect(length);
+        for (byte[] name : encoded) {
+            nameBytes.put(name);
+        }
+
+        return new OffHeapGraphStorage(nameOffsets, nameBytes.clear(), allocateInts(nameRank),
+                allocateInts(offsets), allocateInts(targets), allocateDoubles(weights),
+                allocateInts(routeFrom), allocateInts(routeTo), allocateDoubles(routeDistance));
+    }
+
+    /**
+     * The method for allocating a direct buffer of ints in the order of the machine
+     */
+    private static IntBuffer allocateInts(int count) {
+        return ByteBuffer.allocateDirect(4 * count).order(ByteOrder.nativeOrder()).asIntBuffer();
+    }
+
+    /**
+     * The method for copying ints into a new direct buffer
+     */
+    private static IntBuffer allocateInts(int[] values) {
+        IntBuffer buffer = allocateInts(values.length);
+        buffer.put(values).clear();
+        return buffer;
+    }
+
+    /**
+     * The method for copying doubles into a new direct buffer
+     */
+    private static DoubleBuffer allocateDoubles(double[] values) {
+        DoubleBuffer buffer = ByteBuffer.allocateDirect(8 * values.length).order(ByteOrder.nativeOrder())
+                .asDoubleBuffer();
+        buffer.put(values).clear();
+        return buffer;
+    }
+
+    /**
+     * The method for retrieving the number of villages
+     * @return - Return the number of villages
+     */
+    public int size() {
+        return villages;
+    }
+
+    /**
+     * The method for retrieving the name of a village, which is decoded from its bytes every time
+     * @param id - The id of the village
+     * @return - Return the name of the village
+     */
+    public String getName(int id) {
+        int start = nameOffsets.get(id);
+        byte[] bytes = new byte[nameOffsets.get(id + 1) - start];
+        nameBytes.get(start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * The method for finding a village by its name. The villages are ranked by name from last to
+     * first, the same order the routes of every village are kept in. The searches look up the
+     * same end village at every step, so the last name found is kept
+     * @param name - The name of the village
+     * @return - Return the id of the village or -1 if it is not in the map
+     */
+    public int getId(String name) {
+        Lookup lookup = lastLookup;
+        if (lookup != null && lookup.name.equals(name)) {
+            return lookup.id;
+        }
+
+        int low = 0;
+        int high = villages - 1;
+
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int village = byRank.get(middle);
+            int order = getName(village).compareTo(name);
+
+            if (order > 0) {
+                low = middle + 1;
+            } else if (order < 0) {
+                high = middle - 1;
+            } else {
+                lastLookup = new Lookup(name, village);
+                return village;
+            }
+        }
+
+        return -1;
+    }
+
+    public int getRank(int id) {
+        return nameRank.get(id);
+    }
+
+    public int getOffset(int id) {
+        return offsets.get(id);
+    }
+
+    public int getTarget(int edge) {
+        return targets.get(edge);
+    }
+
+    public double getWeight(int edge) {
+        return weights.get(edge);
+    }
+
+    public int getEdgeCount() {
+        return targets.capacity();
+    }
+
+    public int getRouteCount() {
+        return routeFrom.capacity();
+    }
+
+    public int getRouteFrom(int route) {
+        return routeFrom.get(route);
+    }
+
+    public int getRouteTo(int route) {
+        return routeTo.get(route);
+    }
+
+    public double getRouteDistance(int route) {
+        return routeDistance.get(route);
+    }
+
+    /**
+     * The method for retrieving how many bytes the storage holds outside of the heap
+     * @return - Return the number of bytes
+     */
+    public long getBytes() {
+        return nameBytes.capacity() + 4L * (nameOffsets.capacity() + nameRank.capacity() + byRank.capacity()
+                + offsets.capacity() + targets.capacity() + routeFrom.capacity() + routeTo.capacity())
+                + 8L * (weights.capacity() + routeDistance.capacity());
+    }
+
+    /**
+     * The methods for copying the storage back into arrays on the heap, for the graphs that change
+     * the map and for writing a MapSnapshot
+     */
+    String[] nameArray() {
+        String[] names = new String[villages];
+        for (int i = 0; i < villages; i++) {
+            names[i] = getName(i);
+        }
+        return names;
+    }
+
+    int[] nameRankArray() {
+        return toArray(nameRank);
+    }
+
+    int[] offsetArray() {
+        return toArray(offsets);
+    }
+
+    int[] targetArray() {
+        return toArray(targets);
+    }
+
+    double[] weightArray() {
+        return toArray(weights);
+    }
+
+    int[] routeFromArray() {
+        return toArray(routeFrom);
+    }
+
+    int[] routeToArray() {
+        return toArray(routeTo);
+    }
+
+    double[] routeDistanceArray() {
+        return toArray(routeDistance);
+    }
+
+    private static int[] toArray(IntBuffer buffer) {
+        int[] values = new int[buffer.capacity()];
+        buffer.get(0, values);
+        return values;
+    }
+
+    private static double[] toArray(DoubleBuffer buffer) {
+        double[] values = new double[buffer.capacity()];
+        buffer.get(0, values);
+        return values;
+    }
+
+    /**
+     * The Lookup class that is a name and the id it was found at
+     */
+    private static class Lookup {
+
+        private final String name;
+        private final int id;
+
+        private Lookup(String name, int id) {
+            this.name = name;
+            this.id = id;
+        }
+    }
+}
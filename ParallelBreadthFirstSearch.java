@@ -0,0 +1,509 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * The ParallelBreadthFirstSearch class that runs a breadth first search one level at a time, with
+ * every level expanded across the threads of a fork join pool. The villages that were reached are
+ * kept in a bitset of atomic longs so the threads can mark them without locking.
+ *
+ * A level is expanded in one of two directions. Top down, every village of the level claims the
+ * villages it has routes to, which costs the routes of the level. Bottom up, every village not
+ * reached yet looks through its own routes for a village of the level, which costs the routes of
+ * the villages not reached yet. Top down is used while the level is small, and bottom up once
+ * BOTTOM_UP_RATIO times the routes of the level are more than the routes of the villages not
+ * reached yet, which on a large map happens for the few levels that hold most of its villages.
+ * On a pool of one thread every level is made top down in a single pass, which is cheaper.
+ *
+ * Either way a village is reached from the village of the level that comes first, and the next
+ * level is put in the order of those villages and then of their routes. That is the order the
+ * breadthFirstSearch puts the villages in its frontier, so both searches explore the villages in
+ * the same order and follow the same parents back to the start village, however many threads run.
+ * The trace is only told about a level by the thread calling step, so it gets the same events in
+ * the same order as well.
+ */
+public class ParallelBreadthFirstSearch {
+
+    public static final int BOTTOM_UP_RATIO = 3;
+
+    // The villages or positions a thread takes at once, a multiple of the 64 villages of a long
+    private static final int CHUNK = 1024;
+    // The fewest routes a level must have before it is worth handing to the pool
+    private static final long PARALLEL_ROUTES = 1 << 14;
+
+    private final VillageGraph graph;
+    private final ForkJoinPool pool;
+    private final boolean symmetric;
+    private final AtomicLongArray visited;
+    private final AtomicIntegerArray claim;
+    private final int[] parent;
+    private final int[] position;
+    private final int[] owned;
+    private int[] level;
+    private int[] nextLevel;
+    private int levelSize;
+    private int[] stepLevel;
+    private int stepSize;
+    private int start;
+    private int end;
+    private long unvisitedRoutes;
+    private boolean finished;
+    private boolean found;
+    private long expanded;
+    private long relaxed;
+    private int depth;
+    private int bottomUpLevels;
+    private SearchTrace trace;
+
+    /**
+     * The ParallelBreadthFirstSearch constructor that expands the levels on the common fork join
+     * pool. The arrays are made once and reused by every search started with restart
+     * @param graph - The graph to search
+     */
+    public ParallelBreadthFirstSearch(VillageGraph graph) {
+        this(graph, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * The ParallelBreadthFirstSearch constructor that expands the levels on a given fork join pool
+     * @param graph - The graph to search
+     * @param pool - The pool to work on
+     */
+    public ParallelBreadthFirstSearch(VillageGraph graph, ForkJoinPool pool) {
+        int n = graph.size();
+        this.graph = graph;
+        this.pool = pool;
+        visited = new AtomicLongArray((n + 63) >>> 6);
+        claim = new AtomicIntegerArray(n);
+        parent = new int[n];
+        position = new int[n];
+        owned = new int[n + 1];
+        level = new int[n];
+        nextLevel = new int[n];
+        for (int v = 0; v < n; v++) {
+            claim.set(v, Integer.MAX_VALUE);
+        }
+
+        // Looking through a village's own routes only finds the villages with a route to it if
+        // every route runs both ways, which a map read from a file always does
+        symmetric = pool.submit(() -> IntStream.range(0, n).parallel().allMatch(v -> {
+            for (int edge = graph.firstEdge(v); edge < graph.lastEdge(v); edge++) {
+                if (graph.findEdge(graph.getTarget(edge), v) < 0) {
+                    return false;
+                }
+            }
+            return true;
+        })).join();
+    }
+
+    /**
+     * The method for starting the search again between two other villages, with only the start
+     * village in the first level
+     * @param s - The id of the start village
+     * @param e - The id of the end village
+     */
+    public void restart(int s, int e) {
+        start = s;
+        end = e;
+        finished = false;
+        found = false;
+        expanded = 0;
+        relaxed = 0;
+        depth = 0;
+        bottomUpLevels = 0;
+        stepSize = 0;
+        stepLevel = level;
+        unvisitedRoutes = graph.getEdgeCount();
+        for (int i = 0; i < visited.length(); i++) {
+            visited.set(i, 0);
+        }
+
+        level[0] = start;
+        levelSize = 1;
+        parent[start] = -1;
+        position[start] = 0;
+        markVisited(start);
+        if (trace != null) {
+            trace.record(SearchTrace.ENQUEUE, start, -1);
+        }
+    }
+
+    /**
+     * The method for setting the trace every step tells the villages it takes out of the level,
+     * expands and puts in the next level
+     * @param t - The trace, or null for none
+     */
+    public void setTrace(SearchTrace t) {
+        trace = t;
+    }
+
+    /**
+     * The method for taking one step of the search. Every village of the level is expanded in
+     * order until the end village is, and if it was not in the level the next level is made
+     * @return - Return the number of villages that were expanded, 0 if the search was already
+     * finished
+     */
+    public int step() {
+        if (finished) {
+            return 0;
+        }
+
+        // Expand the villages of the level in order, stopping at the end village
+        long levelRoutes = 0;
+        stepLevel = level;
+        stepSize = levelSize;
+        for (int i = 0; i < levelSize; i++) {
+            int current = level[i];
+            levelRoutes += graph.lastEdge(current) - graph.firstEdge(current);
+            if (trace != null) {
+                trace.record(SearchTrace.DEQUEUE, current, parent[current]);
+                trace.record(SearchTrace.EXPAND, current, parent[current]);
+            }
+
+            if (current == end) {
+                stepSize = i + 1;
+                found = true;
+                finished = true;
+                break;
+            }
+        }
+        expanded += stepSize;
+        relaxed += levelRoutes;
+        if (finished) {
+            return stepSize;
+        }
+
+        // Pick the direction that looks through fewer routes. Top down looks through the routes
+        // of the level three times when it runs in parallel, and once when it does not
+        unvisitedRoutes -= levelRoutes;
+        boolean parallel = pool.getParallelism() > 1;
+        int nextSize;
+        if (parallel && symmetric && levelRoutes * BOTTOM_UP_RATIO > unvisitedRoutes) {
+            nextSize = bottomUp(unvisitedRoutes >= PARALLEL_ROUTES);
+            bottomUpLevels += 1;
+        } else {
+            nextSize = topDown(parallel && levelRoutes >= PARALLEL_ROUTES);
+        }
+
+        // The next level takes the place of the one that was expanded
+        int[] expandedLevel = level;
+        level = nextLevel;
+        nextLevel = expandedLevel;
+        levelSize = nextSize;
+        depth += 1;
+
+        // The threads of the pool are done with the level, so it is recorded in order from here
+        if (trace != null) {
+            for (int i = 0; i < levelSize; i++) {
+                trace.record(SearchTrace.ENQUEUE, level[i], parent[level[i]]);
+            }
+        }
+
+        // If nothing new was reached every village that can be was explored
+        if (levelSize == 0) {
+            finished = true;
+        }
+
+        return stepSize;
+    }
+
+    /**
+     * The method for making the next level top down. Every village not reached yet is claimed by
+     * the first village of the level with a route to it, then every village of the level counts
+     * what it claimed so it knows where in the next level to write its villages
+     * @return - Return the size of the next level
+     */
+    private int topDown(boolean parallel) {
+        int size = levelSize;
+        int chunks = (size + CHUNK - 1) / CHUNK;
+
+        // On one thread the first village to reach a child is already the first in the level, so
+        // the villages can be written as they are reached without claiming them
+        if (!parallel || chunks == 1) {
+            int place = 0;
+            for (int p = 0; p < size; p++) {
+                int current = level[p];
+                for (int edge = graph.firstEdge(current); edge < graph.lastEdge(current); edge++) {
+                    int child = graph.getTarget(edge);
+                    if (!isVisited(child)) {
+                        reach(child, current, place);
+                        place += 1;
+                    }
+                }
+            }
+            return place;
+        }
+
+        // Claim the villages, keeping the smallest position of the level that has a route to them
+        forEach(chunks, parallel, chunk -> {
+            for (int p = chunk * CHUNK; p < Math.min(size, (chunk + 1) * CHUNK); p++) {
+                int current = level[p];
+                for (int edge = graph.firstEdge(current); edge < graph.lastEdge(current); edge++) {
+                    int child = graph.getTarget(edge);
+                    if (!isVisited(child) && claim.get(child) > p) {
+                        claim.accumulateAndGet(child, p, Math::min);
+                    }
+                }
+            }
+        });
+
+        // Count the villages every position claimed and add the counts up into places to write
+        forEach(chunks, parallel, chunk -> {
+            for (int p = chunk * CHUNK; p < Math.min(size, (chunk + 1) * CHUNK); p++) {
+                int current = level[p];
+                int count = 0;
+                for (int edge = graph.firstEdge(current); edge < graph.lastEdge(current); edge++) {
+                    if (claim.get(graph.getTarget(edge)) == p) {
+                        count += 1;
+                    }
+                }
+                owned[p + 1] = count;
+            }
+        });
+        owned[0] = 0;
+        Arrays.parallelPrefix(owned, 0, size + 1, Integer::sum);
+
+        // Write the claimed villages in the order of their routes, letting go of the claims
+        forEach(chunks, parallel, chunk -> {
+            for (int p = chunk * CHUNK; p < Math.min(size, (chunk + 1) * CHUNK); p++) {
+                int current = level[p];
+                int place = owned[p];
+                for (int edge = graph.firstEdge(current); edge < graph.lastEdge(current); edge++) {
+                    int child = graph.getTarget(edge);
+                    if (claim.get(child) == p) {
+                        claim.set(child, Integer.MAX_VALUE);
+                        reach(child, current, place);
+                        place += 1;
+                    }
+                }
+            }
+        });
+
+        return owned[size];
+    }
+
+    /**
+     * The method for making the next level bottom up. Every village not reached yet looks through
+     * all of its routes for the first village of the level, and is kept as that village's
+     * position and the offset of the route among its routes, so sorting them gives the order the
+     * top down direction would have written them in
+     * @return - Return the size of the next level
+     */
+    private int bottomUp(boolean parallel) {
+        int n = graph.size();
+        int chunks = (n + CHUNK - 1) / CHUNK;
+        long[][] keys = new long[chunks][];
+        int[] counts = new int[chunks];
+
+        // Find the villages with a route to the level, skipping longs of villages all reached
+        forEach(chunks, parallel, chunk -> {
+            long[] reached = new long[16];
+            int count = 0;
+            for (int v = chunk * CHUNK; v < Math.min(n, (chunk + 1) * CHUNK); v++) {
+                if (visited.get(v >>> 6) == -1L) {
+                    v |= 63;
+                    continue;
+                }
+                if (isVisited(v)) {
+                    continue;
+                }
+
+                int first = Integer.MAX_VALUE;
+                for (int edge = graph.firstEdge(v); edge < graph.lastEdge(v); edge++) {
+                    int p = inLevel(graph.getTarget(edge));
+                    if (p >= 0 && p < first) {
+                        first = p;
+                    }
+                }
+
+                if (first != Integer.MAX_VALUE) {
+                    if (count == reached.length) {
+                        reached = Arrays.copyOf(reached, count * 2);
+                    }
+                    int from = level[first];
+                    reached[count++] = ((long) first << 32) | (graph.findEdge(from, v) - graph.firstEdge(from));
+                }
+            }
+            keys[chunk] = reached;
+            counts[chunk] = count;
+        });
+
+        // Put the keys of every chunk together and sort them into the order of the next level
+        int total = 0;
+        for (int count : counts) {
+            total += count;
+        }
+        long[] sorted = new long[total];
+        int filled = 0;
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            System.arraycopy(keys[chunk], 0, sorted, filled, counts[chunk]);
+            filled += counts[chunk];
+        }
+        if (parallel) {
+            Arrays.parallelSort(sorted);
+        } else {
+            Arrays.sort(sorted);
+        }
+
+        // Write the villages of the keys, which are only marked as reached now so the search above
+        // saw the villages reached before this level
+        forEach((total + CHUNK - 1) / CHUNK, parallel, chunk -> {
+            for (int i = chunk * CHUNK; i < Math.min(sorted.length, (chunk + 1) * CHUNK); i++) {
+                int from = level[(int) (sorted[i] >>> 32)];
+                reach(graph.getTarget(graph.firstEdge(from) + (int) sorted[i]), from, i);
+            }
+        });
+
+        return total;
+    }
+
+    /**
+     * The method for running a task for every chunk, on the pool if there is enough work for it
+     */
+    private void forEach(int chunks, boolean parallel, IntConsumer task) {
+        if (parallel && chunks > 1) {
+            pool.submit(() -> IntStream.range(0, chunks).parallel().forEach(task)).join();
+        } else {
+            for (int chunk = 0; chunk < chunks; chunk++) {
+                task.accept(chunk);
+            }
+        }
+    }
+
+    /**
+     * The method for writing a village into the next level and marking it as reached
+     */
+    private void reach(int village, int from, int place) {
+        nextLevel[place] = village;
+        parent[village] = from;
+        position[village] = place;
+        markVisited(village);
+    }
+
+    /**
+     * The method for finding the position of a village in the level being expanded
+     * @return - Return the position, or -1 if the village is not in the level
+     */
+    private int inLevel(int village) {
+        if (!isVisited(village)) {
+            return -1;
+        }
+
+        // A village reached in an earlier level keeps the position it had, which now holds
+        // another village or lies past the end of the level
+        int p = position[village];
+        return p < levelSize && level[p] == village ? p : -1;
+    }
+
+    private boolean isVisited(int village) {
+        return (visited.get(village >>> 6) & (1L << village)) != 0;
+    }
+
+    private void markVisited(int village) {
+        visited.accumulateAndGet(village >>> 6, 1L << village, (a, b) -> a | b);
+    }
+
+    /**
+     * The method for checking if the search is finished
+     * @return - Return true once the end village was found or there is nothing left to reach
+     */
+    public boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * The method for checking if the end village was found
+     * @return - Return true if a path was found
+     */
+    public boolean found() {
+        return found;
+    }
+
+    /**
+     * The method for retrieving the path that was found, following the parents back from the
+     * end village
+     * @return - Return the ids of the villages from the start village to the end village, or an
+     * empty array if none was found
+     */
+    public int[] getPath() {
+        if (!found) {
+            return new int[0];
+        }
+
+        int[] path = new int[depth + 1];
+        for (int current = end, i = depth; current >= 0; current = parent[current], i--) {
+            path[i] = current;
+        }
+        return path;
+    }
+
+    /**
+     * The method for retrieving the number of villages the last step expanded
+     * @return - Return the number of villages
+     */
+    public int stepSize() {
+        return stepSize;
+    }
+
+    /**
+     * The method for retrieving a village the last step expanded
+     * @param index - The place of the village in the order it was expanded
+     * @return - Return the id of the village
+     */
+    public int stepVillage(int index) {
+        return stepLevel[index];
+    }
+
+    /**
+     * The method for retrieving the number of villages in the level the next step expands
+     * @return - Return the number of villages, 0 once the search is finished
+     */
+    public int levelSize() {
+        return finished ? 0 : levelSize;
+    }
+
+    /**
+     * The method for retrieving a village of the level the next step expands
+     * @param index - The position of the village in the level
+     * @return - Return the id of the village
+     */
+    public int levelVillage(int index) {
+        return level[index];
+    }
+
+    /**
+     * The method for retrieving how many villages were expanded
+     * @return - Return the number of villages
+     */
+    public long getExpanded() {
+        return expanded;
+    }
+
+    /**
+     * The method for retrieving how many routes the expanded villages have, which is the number a
+     * breadthFirstSearch would follow for them
+     * @return - Return the number of routes
+     */
+    public long getRelaxed() {
+        return relaxed;
+    }
+
+    /**
+     * The method for retrieving the number of levels that were made
+     * @return - Return the number of levels after the first
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * The method for retrieving the number of levels that were made bottom up
+     * @return - Return the number of levels
+     */
+    public int getBottomUpLevels() {
+        return bottomUpLevels;
+    }
+}
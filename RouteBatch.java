@@ -0,0 +1,176 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+/**
+ * The RouteBatch class that finds the routes between many pairs of villages at once. The pairs are
+ * spread over the threads of a fork join pool, and every batch makes one RouteFinder for each
+ * thread it runs on that is reused from pair to pair, so the arrays of a search are only made once
+ * per thread. The RouteFinders belong to the batch and are dropped when it ends, so the threads of
+ * the pool do not keep a RouteFinder and its arrays alive after the batch is done. The
+ * RouteFinders all search the same graph, and the landmarks or positions the aStarSearch needs and
+ * the contraction hierarchy are worked out once before the pairs are spread out and shared, since
+ * none of them are changed by a search.
+ *
+ * A RouteBatch can be used from several threads at the same time.
+ */
+public class RouteBatch {
+
+    private final VillageGraph graph;
+    private final RouteFinder loaded;
+    private volatile Heuristic heuristic;
+    private volatile ContractionHierarchy hierarchy;
+
+    /**
+     * The RouteBatch constructor that searches the graph of a RouteFinder that has read its file
+     * @param routeFinder - The RouteFinder with the loaded map
+     */
+    public RouteBatch(RouteFinder routeFinder) {
+        graph = routeFinder.getGraph();
+        loaded = routeFinder;
+    }
+
+    /**
+     * The method for finding the routes of a batch of pairs on the common fork join pool
+     * @param pairs - The start and end village names of every pair
+     * @param searchType - The name of the search method, like dijkstraSearch
+     * @return - Return the routes in the same order as the pairs
+     */
+    public List<Route> findRoutes(List<String[]> pairs, String searchType) {
+        return findRoutes(pairs, searchType, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * The method for finding the routes of a batch of pairs on a given fork join pool
+     * @param pairs - The start and end village names of every pair
+     * @param searchType - The name of the search method, like dijkstraSearch
+     * @param pool - The pool to run the searches on
+     * @return - Return the routes in the same order as the pairs
+     */
+    public List<Route> findRoutes(List<String[]> pairs, String searchType, ForkJoinPool pool) {
+        // Check the search and every pair before any search is started
+        if (!RouteFinder.SEARCH_TYPES.contains(searchType)) {
+            throw new IllegalArgumentException("There is no search called " + searchType);
+        }
+        for (String[] pair : pairs) {
+            if (pair.length != 2 || graph.getId(pair[0]) < 0 || graph.getId(pair[1]) < 0) {
+                throw new IllegalArgumentException("The pair " + String.join(", ", pair) + " is not two villages of the map.");
+            }
+        }
+        prepare(searchType);
+
+        // Every worker takes the next pair that is left until there are none, and every pair
+        // writes its own slot, so the threads never touch the same place
+        Route[] routes = new Route[pairs.size()];
+        AtomicInteger next = new AtomicInteger();
+        int workers = Math.min(pool.getParallelism(), routes.length);
+        pool.submit(() -> IntStream.range(0, workers).parallel().forEach(w -> {
+            RouteFinder routeFinder = newWorker(searchType);
+            for (int i = next.getAndIncrement(); i < routes.length; i = next.getAndIncrement()) {
+                routeFinder.findRoute(searchType, pairs.get(i)[0], pairs.get(i)[1]);
+                routes[i] = routeFinder.getRoute();
+            }
+        })).join();
+
+        List<Route> result = new ArrayList<>(routes.length);
+        Collections.addAll(result, routes);
+        return result;
+    }
+
+    /**
+     * The method for making the RouteFinder one worker of a batch searches the pairs it takes with
+     */
+    private RouteFinder newWorker(String searchType) {
+        // Every worker reports to the same metrics as the RouteFinder the map was loaded into
+        RouteFinder routeFinder = new RouteFinder(loaded.getPickedFile(), graph);
+        routeFinder.setMetricsListener(loaded.getMetricsListener());
+
+        // Hand the worker what was worked out for the search
+        if (searchType.equals("aStarSearch") || searchType.equals("idaStarSearch")) {
+            routeFinder.setHeuristic(heuristic);
+        } else if (searchType.equals("hierarchySearch")) {
+            routeFinder.setContractionHierarchy(hierarchy);
+        }
+        return routeFinder;
+    }
+
+    /**
+     * The method for working out what a search needs before the pairs are spread out, so the
+     * threads do not all work it out at once
+     */
+    private synchronized void prepare(String searchType) {
+        if ((searchType.equals("aStarSearch") || searchType.equals("idaStarSearch")) && heuristic == null) {
+            heuristic = loaded.getHeuristic();
+        } else if (searchType.equals("hierarchySearch") && hierarchy == null) {
+            hierarchy = loaded.getContractionHierarchy();
+        }
+    }
+
+    /**
+     * The Route class that holds the result of the search for one pair
+     */
+    public static class Route {
+
+        private final String startVillage;
+        private final String endVillage;
+        private final List<String> path;
+        private final double cost;
+        private final int explored;
+
+        /**
+         * The Route constructor that keeps the result of a search
+         */
+        Route(String startVillage, String endVillage, List<String> path, double cost, int explored) {
+            this.startVillage = startVillage;
+            this.endVillage = endVillage;
+            this.path = Collections.unmodifiableList(path);
+            this.cost = cost;
+            this.explored = explored;
+        }
+
+        public String getStartVillage() {
+            return startVillage;
+        }
+
+        public String getEndVillage() {
+            return endVillage;
+        }
+
+        /**
+         * The method for retrieving the path that was found
+         * @return - Return the villages from the start village to the end village, or an empty
+         * List if they are not connected
+         */
+        public List<String> getPath() {
+            return path;
+        }
+
+        /**
+         * The method for retrieving the cost of the path that was found
+         * @return - Return the cost, or infinity if the villages are not connected
+         */
+        public double getCost() {
+            return cost;
+        }
+
+        public boolean isFound() {
+            return !path.isEmpty();
+        }
+
+        /**
+         * The method for retrieving how many villages the search explored
+         * @return - Return the number of villages
+         */
+        public int getExplored() {
+            return explored;
+        }
+
+        @Override
+        public String toString() {
+            return startVillage + " -> " + endVillage + ": " + path + " " + RouteFinder.formatDistance(cost);
+        }
+    }
+}
@@ -0,0 +1,220 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The RouteCache class that keeps the routes found by earlier searches, so asking for the same
+ * villages with the same kind of search again does not search the map at all. It holds a set number
+ * of routes, and when it is full the route that was asked for least recently is dropped.
+ *
+ * The routes belong to one map file. The cache remembers the path, length and last modified time of
+ * the file it was filled from, and empties itself when a different file or a changed one is loaded.
+ * When the loaded map is changed in place, only the routes the change can affect are dropped.
+ */
+public class RouteCache {
+
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    // The searches that count every route as one step instead of following the distances
+    private static final List<String> UNWEIGHTED_TYPES = Arrays.asList(
+            "depthFirstSearch", "breadthFirstSearch", "bidirectionalBreadthFirstSearch", "depthLimitedSearch",
+            "iterativeDeepeningSearch", "parallelBreadthFirstSearch");
+
+    private final int capacity;
+    private final LinkedHashMap<String, RouteBatch.Route> routes;
+    private String mapPath;
+    private long mapLength;
+    private long mapModified;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * The RouteCache constructor that keeps at most a given number of routes
+     * @param capacity - The most routes to keep
+     */
+    public RouteCache(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("The cache must have room for at least one route.");
+        }
+
+        this.capacity = capacity;
+
+        // An access ordered map keeps the least recently used route first
+        routes = new LinkedHashMap<String, RouteBatch.Route>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, RouteBatch.Route> eldest) {
+                if (size() > RouteCache.this.capacity) {
+                    evictions += 1;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * The method for telling the cache which map is loaded. If it is not the file the routes were
+     * found in, or the file has changed since, the routes are dropped
+     * @param map - The map file that was loaded
+     */
+    public synchronized void useMap(File map) {
+        String path;
+        try {
+            path = map.getCanonicalPath();
+            // If the path cannot be resolved the one given is used as it is
+        } catch (IOException e) {
+            path = map.getAbsolutePath();
+        }
+
+        if (!path.equals(mapPath) || map.length() != mapLength || map.lastModified() != mapModified) {
+            routes.clear();
+            mapPath = path;
+            mapLength = map.length();
+            mapModified = map.lastModified();
+        }
+    }
+
+    /**
+     * The method for retrieving a route that was found before
+     * @param searchType - The name of the search method, like dijkstraSearch
+     * @param start - The start village name
+     * @param end - The end village name
+     * @return - Return the route, or null if it is not in the cache
+     */
+    public synchronized RouteBatch.Route get(String searchType, String start, String end) {
+        RouteBatch.Route route = routes.get(key(searchType, start, end));
+
+        if (route == null) {
+            misses += 1;
+        } else {
+            hits += 1;
+        }
+
+        return route;
+    }
+
+    /**
+     * The method for keeping a route that was found, which may drop the least recently used one
+     * @param searchType - The name of the search method that found it
+     * @param route - The route
+     */
+    public synchronized void put(String searchType, RouteBatch.Route route) {
+        routes.put(key(searchType, route.getStartVillage(), route.getEndVillage()), route);
+    }
+
+    /**
+     * The method for bringing the routes up to date after the distance of one route of the map
+     * changed. The routes of the searches that count every route as one step only change in cost
+     * when a route keeps its place, but any other change may lead them anywhere. The routes of the
+     * searches for the shortest path stay the shortest if a route they do not use gets longer or
+     * goes away, but a shorter or new route may be a shortcut for any of them
+     * @param first - The name of the first village of the route
+     * @param second - The name of the second village of the route
+     * @param oldDistance - The distance the route had, or infinity if it is new
+     * @param newDistance - The distance the route has now, or infinity if it was removed
+     */
+    public synchronized void routeChanged(String first, String second, double oldDistance, double newDistance) {
+        boolean moved = oldDistance == Double.POSITIVE_INFINITY || newDistance == Double.POSITIVE_INFINITY;
+        Iterator<Map.Entry<String, RouteBatch.Route>> entries = routes.entrySet().iterator();
+
+        while (entries.hasNext()) {
+            Map.Entry<String, RouteBatch.Route> entry = entries.next();
+            RouteBatch.Route route = entry.getValue();
+            int uses = uses(route.getPath(), first, second);
+            String searchType = entry.getKey().substring(0, entry.getKey().indexOf('\n'));
+
+            if (UNWEIGHTED_TYPES.contains(searchType)) {
+                if (moved) {
+                    entries.remove();
+                } else if (uses > 0) {
+                    entry.setValue(new RouteBatch.Route(route.getStartVillage(), route.getEndVillage(), route.getPath(),
+                            route.getCost() + uses * (newDistance - oldDistance), route.getExplored()));
+                }
+            } else if (newDistance < oldDistance || uses > 0) {
+                entries.remove();
+            }
+        }
+
+        // The map no longer matches its file, so loading the file again must empty the cache
+        mapPath = null;
+    }
+
+    /**
+     * The method for dropping the routes a village that was removed from the map, with all of its
+     * routes, can affect: the routes to, from and through it, and every route of a search without
+     * distances, since the order those explore the villages in may have changed
+     * @param village - The name of the village
+     */
+    public synchronized void villageRemoved(String village) {
+        routes.entrySet().removeIf(entry -> {
+            RouteBatch.Route route = entry.getValue();
+            String searchType = entry.getKey().substring(0, entry.getKey().indexOf('\n'));
+            return UNWEIGHTED_TYPES.contains(searchType) || route.getStartVillage().equals(village)
+                    || route.getEndVillage().equals(village) || route.getPath().contains(village);
+        });
+        mapPath = null;
+    }
+
+    /**
+     * The method for counting how many times a path travels the route between two villages
+     */
+    private static int uses(List<String> path, String first, String second) {
+        int uses = 0;
+
+        for (int i = 1; i < path.size(); i++) {
+            String from = path.get(i - 1);
+            String to = path.get(i);
+            if ((from.equals(first) && to.equals(second)) || (from.equals(second) && to.equals(first))) {
+                uses += 1;
+            }
+        }
+
+        return uses;
+    }
+
+    /**
+     * The method for dropping every route
+     */
+    public synchronized void clear() {
+        routes.clear();
+    }
+
+    /**
+     * The method for making the key of a route. A village name never holds a line break, since
+     * the map has one route per line
+     */
+    private static String key(String searchType, String start, String end) {
+        return searchType + '\n' + start + '\n' + end;
+    }
+
+    public synchronized int size() {
+        return routes.size();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "route cache: " + routes.size() + "/" + capacity + " routes, " + hits + " hits, " + misses
+                + " misses, " + evictions + " evictions";
+    }
+}
@@ -1,6 +1,9 @@
 import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * @author Rachel Feddersen
@@ -12,16 +15,51 @@ import java.util.*;
  */
 public class RouteFinder {
 
+    public static final List<String> SEARCH_TYPES = Collections.unmodifiableList(Arrays.asList(
+            "depthFirstSearch", "breadthFirstSearch", "dijkstraSearch", "aStarSearch", "hierarchySearch",
+            "bidirectionalBreadthFirstSearch", "bidirectionalDijkstraSearch", "depthLimitedSearch",
+            "iterativeDeepeningSearch", "idaStarSearch", "parallelBreadthFirstSearch"));
+
     private int routeNodes;
     private int numberOfLines;
     private String startVillage;
     private String endVillage;
-    private TreeMap<String,TreeMap<String,Double>> mappedRoute = new TreeMap<>();
+    private VillageGraph graph;
+    private TreeMap<String,TreeMap<String,Double>> mappedRoute;
     private LinkedList<String> path = new LinkedList<>();
-    private List<String> nodes = new ArrayList<>();
     private List<String> frontier = new ArrayList<>();
     private List<String> explored = new ArrayList<>();
-    private TreeMap<String,String> pathFrom = new TreeMap<>();
+    private SearchFrontier villages;
+    private IndexedMinHeap heap;
+    private double[] distance;
+    private int[] parent;
+    private int[] reached;
+    private int[] settled;
+    private int generation;
+    private boolean started;
+    private Heuristic heuristic;
+    private BidirectionalSearch bidirectional;
+    private DeepeningSearch deepening;
+    private boolean deepeningStarted;
+    private int depthLimit = DeepeningSearch.AUTO_DEPTH_LIMIT;
+    private ParallelBreadthFirstSearch parallelSearch;
+    private KShortestPaths kShortestPaths;
+    private ContractionHierarchy hierarchy;
+    private ContractionHierarchy.Query hierarchyQuery;
+    private DistanceMatrix distanceMatrix;
+    private double delta = DeltaStepping.AUTO_DELTA;
+    private RouteCache routeCache;
+    private MapVersions mapVersions;
+    private MapVersions.Pin mapPin;
+    private SearchTrace trace;
+    private MetricsListener metrics;
+    private long relaxed;
+    private int peakFrontier;
+    private long searchStarted;
+    private long searchAllocated;
+    private boolean edited;
+    private boolean offHeap;
+    private boolean solved;
     private File pickedFile;
 
     /**
@@ -31,20 +69,45 @@ public class RouteFinder {
         setPickedFile(filename);
     }
 
+    /**
+     * The RouteFinder constructor that searches a graph that has already been loaded. The graph is
+     * never changed by a search, so any number of RouteFinders can share it. The graph is taken to
+     * be the one in the file, so a changed graph has to be given with its version instead
+     * @param filename - The file the graph was loaded from, or null
+     * @param g - The loaded graph
+     */
+    public RouteFinder (File filename, VillageGraph g) {
+        setPickedFile(filename);
+        setNumberOfNodes(g.size());
+        setNumberOfLines(g.getRouteCount());
+        setGraph(g);
+    }
+
+    /**
+     * The RouteFinder constructor that searches the graph of a published version of the map. If
+     * the map was changed since it was loaded, the snapshot and hierarchy files next to its file
+     * are about the map before the change, so they are never read or written
+     * @param version - The version, which has to be pinned while the RouteFinder is used
+     */
+    public RouteFinder (MapVersions.Version version) {
+        this(version.getFile(), version.getGraph());
+        edited = version.isEdited();
+    }
+
     /**
      * This method attempts to open the file
      * @param filename - The location of the file
-     * @return - Return the new scanner with the opened file
+     * @return - Return the new channel with the opened file
      */
-    private Scanner openFile(File filename) {
-        // Open a scanner
-        Scanner inputFile = null;
+    private FileChannel openFile(File filename) {
+        // Open a channel
+        FileChannel inputFile = null;
 
-        // Try to create a new Scanner
+        // Try to create a new FileChannel
         try {
-            inputFile = new Scanner(filename);
+            inputFile = FileChannel.open(filename.toPath(), StandardOpenOption.READ);
             // If the file cannot be found
-        } catch (FileNotFoundException e) {
+        } catch (IOException e) {
             System.exit(0);
             e.printStackTrace();
         }
@@ -53,43 +116,63 @@ public class RouteFinder {
     }
 
     /**
-     * This method attempts to read the file
+     * This method attempts to read the file. The file is memory mapped and scanned exactly once by
+     * the VillageMapParser: the header gives the number of villages and every following line is
+     * interned straight into the graph builder, so the load time is linear in the size of the file
      * @param filename - The location of the file
      * @return - Return the error if the file does not open
      */
     public boolean readFile(File filename) {
-        // Open a scanner
-        Scanner inputFile;
-        // Create a new scanner
-        inputFile = openFile(filename);
-
-        // Keep track of the number of lines in the file for later use and set other variables
-        int lines = 0;
         boolean fileError = false;
+        VillageMapParser parser = new VillageMapParser();
+        edited = false;
+
+        // Only measure the load when something listens for it
+        long loadStarted = metrics != null ? System.nanoTime() : 0;
+        long loadAllocated = metrics != null ? RouteMetrics.allocatedBytes() : 0;
+
+        // If the map has an up to date snapshot, load the compiled graph instead of the text. A map
+        // kept outside of the heap, or one whose snapshot would take up much of it, reads its
+        // graph straight out of the mapped snapshot
+        boolean mapped = offHeap || MapSnapshot.snapshotFile(filename).length() > Runtime.getRuntime().maxMemory() / 4;
+        VillageGraph snapshot = mapped ? MapSnapshot.map(filename) : MapSnapshot.load(filename);
+        if (snapshot != null) {
+            setNumberOfNodes(snapshot.size());
+            setNumberOfLines(snapshot.getRouteCount());
+            setGraph(snapshot);
+            snapshot.getComponents();
+            reportLoad(filename, true, loadStarted, loadAllocated);
+            return false;
+        }
 
-        // Try to read the file
-        try {
-            // Read the number of villages and set the variable
-            setNumberOfNodes(inputFile.nextInt());
-            inputFile.nextLine();
-
-            // While there are more lines in the file,
-            while(inputFile.hasNextLine()) {
-                // Call setNodes method for retrieving list of all villages in file
-                setNodes((inputFile.nextLine()).split("\\t", -1));
-                lines += 1;
+        // Try to read the file, closing it again when it is done
+        try (FileChannel inputFile = openFile(filename)) {
+            // Scan the whole file into the graph builder
+            VillageGraph.Builder builder = parser.parse(inputFile);
+
+            // Set the number of villages and the number of lines in the file
+            setNumberOfNodes(parser.getVillageCount());
+            setNumberOfLines(parser.getLineCount());
+
+            // Call this method for creating the graph based on the file's information
+            createGraph(builder);
+            reportLoad(filename, false, loadStarted, loadAllocated);
+
+            // Compile the graph so the next load of this map can skip the parsing, and move a graph
+            // that is kept outside of the heap onto the snapshot, or into direct buffers if the
+            // snapshot could not be written
+            boolean saved = saveSnapshot(filename);
+            if (offHeap) {
+                VillageGraph compiled = saved ? MapSnapshot.map(filename) : null;
+                if (compiled != null) {
+                    setGraph(compiled);
+                    graph.getComponents();
+                } else {
+                    setGraph(graph.toOffHeap());
+                }
             }
-
-            // Call the method to set the number of lines in the file
-            setNumberOfLines(lines);
-
-            // Close the file
-            inputFile.close();
-
-            // Call this method for creating the treeMap based on the file's information
-            createTreeMap(filename);
             // If the file does not match what the file normally would be like
-        } catch (InputMismatchException e) {
+        } catch (InputMismatchException | IOException e) {
             // Set the error to true
             fileError = true;
         }
@@ -98,46 +181,49 @@ public class RouteFinder {
     }
 
     /**
-     * The method for creating the TreeMap based on the information in the file
-     * @param filename - The file that was chosen by the user
-     */
-    private void createTreeMap(File filename) {
-        // Open a scanner
-        Scanner inputFile;
-        String currentNode;
-        String[] values;
-
-        // While the TreeMap is not larger than the number of villages found eariler
-        while(mappedRoute.size() != getNumberOfNodes()) {
-            // Create a new scanner
-            inputFile = openFile(filename);
-            inputFile.nextLine();
-
-            // Set the currentNode to be searched as the next one in the nodes list
-            currentNode = nodes.get(mappedRoute.size());
-
-            // If the TreeMap does not already contains the node we are looking at
-            if (!mappedRoute.containsKey(currentNode)) {
-                // Add the currentNode to the TreeMap
-                mappedRoute.put(currentNode, new TreeMap<>(Collections.reverseOrder()));
-                // While the file has a next line
-                while(inputFile.hasNext()) {
-                    // Set a String array to the values from the first line
-                    values = (inputFile.nextLine()).split("\\t", -1);
-                    // If first value in line equals currentNode and TreeMap does not have the second value
-                    if (values[0].equals(currentNode) && !mappedRoute.get(values[0]).containsKey(values[1])) {
-                        // Put the second and third values in the map under the first value
-                        mappedRoute.get(values[0]).put(values[1], Double.parseDouble(values[2]));
-                        // If second value in line equals currentNode and TreeMap does not have the first value
-                    } else if (values[1].equals(currentNode) && !mappedRoute.get(values[1]).containsKey(values[0])) {
-                        // Put the first and third values in the map under the second value
-                        mappedRoute.get(values[1]).put(values[0], Double.parseDouble(values[2]));
-                    }
-                }
-            }
+     * The method for creating the graph based on the information in the file. The routes were
+     * already collected by the parser, so the file is never opened again
+     * @param builder - The builder holding the villages and routes from the file
+     */
+    private void createGraph(VillageGraph.Builder builder) {
+        // If the file listed a different number of villages than it actually contains
+        if (builder.size() != getNumberOfNodes()) {
+            throw new InputMismatchException("The file lists " + getNumberOfNodes() + " villages but contains "
+                    + builder.size());
+        }
+
+        // Pack the villages and routes into the graph the searches run on, and sweep it for its
+        // connected parts so a search between two parts can stop straight away
+        setGraph(builder.build());
+        graph.getComponents();
+    }
+
+    /**
+     * The method for compiling the loaded graph into a snapshot next to the picked file. A map in
+     * a folder that cannot be written to is simply loaded from its text again next time
+     * @return - Return true if the snapshot was written, false if it could not be or the map was
+     * changed since it was read
+     */
+    public boolean saveSnapshot() {
+        return saveSnapshot(getPickedFile());
+    }
+
+    /**
+     * The method for compiling the loaded graph into a snapshot next to the given map file
+     * @param filename - The map the graph was loaded from
+     * @return - Return true if the snapshot was written
+     */
+    private boolean saveSnapshot(File filename) {
+        // A changed map no longer matches its file, so its snapshot would load the wrong map
+        if (edited) {
+            return false;
+        }
 
-            // Close the file
-            inputFile.close();
+        try {
+            MapSnapshot.save(filename, graph);
+            return true;
+        } catch (IOException e) {
+            return false;
         }
     }
 
@@ -158,43 +244,69 @@ public class RouteFinder {
     }
 
     /**
-     * The method for setting the mappedRoute of the villages
-     * @param m - The mappedRoute received
+     * The method for setting the graph of the villages
+     * @param g - The graph received
      */
-    private void setMappedRoute(TreeMap<String, TreeMap<String,Double>> m) {
-        mappedRoute = m;
+    private void setGraph(VillageGraph g) {
+        graph = g;
+        mappedRoute = null;
+        heuristic = null;
+        hierarchy = null;
+        hierarchyQuery = null;
+        distanceMatrix = null;
+        villages = null;
+        heap = null;
+        parent = null;
+        bidirectional = null;
+        deepening = null;
+        parallelSearch = null;
+        kShortestPaths = null;
     }
 
     /**
-     * The method for retrieving the mappedRoute of the villages
-     * @return - Return the TreeMap with the data in it
+     * The method for retrieving the graph of the villages that the searches run on
+     * @return - Return the graph
      */
-    public TreeMap<String,TreeMap<String,Double>> getMappedRoute() {
-        return mappedRoute;
+    public VillageGraph getGraph() {
+        return graph;
     }
 
     /**
-     * The method for setting the villages in the List nodes
-     * @param values - The String array that contains the line from the file
+     * The method for setting the mappedRoute of the villages. If it is not the view this
+     * RouteFinder handed out, the graph is rebuilt from it
+     * @param m - The mappedRoute received
      */
-    private void setNodes(String[] values) {
-        // If the first item in the line is not in the List
-        if (!nodes.contains(values[0])) {
-            nodes.add(values[0]);
+    private void setMappedRoute(TreeMap<String, TreeMap<String,Double>> m) {
+        if (m != mappedRoute) {
+            VillageGraph g = VillageGraph.fromTreeMap(m);
+
+            // The counts have to match the new graph for the distance table
+            setNumberOfNodes(g.size());
+            setNumberOfLines(g.getRouteCount());
+            setGraph(g);
+            mappedRoute = m;
         }
+    }
 
-        // If the second item in the line is not in the List
-        if (!nodes.contains(values[1])) {
-            nodes.add(values[1]);
+    /**
+     * The method for retrieving the mappedRoute of the villages. The TreeMap is only a view of the
+     * graph for older callers, so it is built the first time it is asked for
+     * @return - Return the TreeMap with the data in it
+     */
+    public TreeMap<String,TreeMap<String,Double>> getMappedRoute() {
+        if (mappedRoute == null) {
+            mappedRoute = graph.toTreeMap();
         }
+
+        return mappedRoute;
     }
 
     /**
      * The method for retrieving the nodes List
-     * @return - Return the List of nodes
+     * @return - Return a new List of the villages in the order they were found in the file
      */
     public List<String> getNodes() {
-        return nodes;
+        return graph.getNames();
     }
 
     /**
@@ -286,14 +398,115 @@ public class RouteFinder {
     }
 
     /**
-     * The method for preparing the searches for finding the end village
+     * The method for preparing the searches for finding the end village. Anything left from an
+     * earlier search is forgotten, so the same RouteFinder can search again
      * @param s - The start village
      */
     public void startSearch(String s) {
+        explored.clear();
+        path.clear();
+        solved = false;
+        started = false;
+        deepeningStarted = false;
+        relaxed = 0;
+        peakFrontier = 1;
+
+        // Only measure the search when something listens for it
+        if (metrics != null) {
+            searchAllocated = RouteMetrics.allocatedBytes();
+            searchStarted = System.nanoTime();
+        }
+
         // Add the startVillage to the frontier and set the frontier in the RouteFinder class
+        frontier = new ArrayList<>();
         frontier.add(s);
     }
 
+    /**
+     * The method for performing one step of a search picked by its name
+     * @param searchType - The name of the search method, like depthFirstSearch
+     * @param s - The start village name
+     * @param e - The end village name
+     */
+    public void searchStep(String searchType, String s, String e) {
+        // If the villages are in different parts of the map, empty the frontier so the search
+        // ends without exploring anything
+        if (!started && !reachable(s, e)) {
+            setStartVillage(s);
+            setEndVillage(e);
+            frontier = new ArrayList<>();
+            return;
+        }
+
+        if (searchType.equals("depthFirstSearch")) {
+            depthFirstSearch(s, e);
+        } else if (searchType.equals("breadthFirstSearch")) {
+            breadthFirstSearch(s, e);
+        } else if (searchType.equals("dijkstraSearch")) {
+            dijkstraSearch(s, e);
+        } else if (searchType.equals("aStarSearch")) {
+            aStarSearch(s, e);
+        } else if (searchType.equals("hierarchySearch")) {
+            hierarchySearch(s, e);
+        } else if (searchType.equals("bidirectionalBreadthFirstSearch")) {
+            bidirectionalBreadthFirstSearch(s, e);
+        } else if (searchType.equals("bidirectionalDijkstraSearch")) {
+            bidirectionalDijkstraSearch(s, e);
+        } else if (searchType.equals("depthLimitedSearch")) {
+            depthLimitedSearch(s, e);
+        } else if (searchType.equals("iterativeDeepeningSearch")) {
+            iterativeDeepeningSearch(s, e);
+        } else if (searchType.equals("idaStarSearch")) {
+            idaStarSearch(s, e);
+        } else if (searchType.equals("parallelBreadthFirstSearch")) {
+            parallelBreadthFirstSearch(s, e);
+        } else {
+            throw new IllegalArgumentException("There is no search called " + searchType);
+        }
+
+        if (metrics != null) {
+            peakFrontier = Math.max(peakFrontier, frontier.size());
+        }
+    }
+
+    /**
+     * The method for performing a whole search, taking steps until the end village is found or
+     * there is nothing left to explore
+     * @param searchType - The name of the search method, like depthFirstSearch
+     * @param s - The start village name
+     * @param e - The end village name
+     * @return - Return true if a path was found
+     */
+    public boolean findRoute(String searchType, String s, String e) {
+        startSearch(s);
+
+        do {
+            searchStep(searchType, s, e);
+        } while (isSearching());
+
+        reportSearch(searchType);
+        return solved();
+    }
+
+    /**
+     * The method for checking if the search should take another step
+     * @return - Return true while the end village has not been found and there are still villages
+     * left in the frontier to explore
+     */
+    public boolean isSearching() {
+        return !solved() && explored.size() != getNumberOfNodes() && !frontier.isEmpty();
+    }
+
+    /**
+     * The method for checking if there is any path between two villages, without searching
+     * @param s - The start village name
+     * @param e - The end village name
+     * @return - Return true if the villages are in the same connected part of the map
+     */
+    public boolean reachable(String s, String e) {
+        return graph.getComponents().connected(graph.getId(s), graph.getId(e));
+    }
+
     /**
      * The method for performing the depthFirstSearch
      * @param m - The TreeMap containing the information from the file
@@ -301,51 +514,54 @@ public class RouteFinder {
      * @param e - The end village name
      */
     public void depthFirstSearch(TreeMap<String,TreeMap<String,Double>> m, String s, String e) {
-        // Set the mappedRoute, start village, and end village so they can be used later
+        // Set the mappedRoute so the graph matches it
         setMappedRoute(m);
+        depthFirstSearch(s, e);
+    }
+
+    /**
+     * The method for performing the depthFirstSearch on the loaded graph
+     * @param s - The start village name
+     * @param e - The end village name
+     */
+    public void depthFirstSearch(String s, String e) {
+        // Set the start village and end village so they can be used later
         setStartVillage(s);
         setEndVillage(e);
 
-        // Add the last village in the frontier to the explored List
-        explored.add(frontier.get(frontier.size() - 1));
+        // If this is the first step, move the start village into the frontier of ids
+        if (!started) {
+            startFrontierSearch();
+        }
 
-        // If this is the first village to be put in the path
-        if (path.size() == 0) {
-            // Add the village to the path
-            path.add(explored.get(explored.size() - 1));
-        } else {
-            // If the villages are connected
-            if (nodesConnected(explored.get(explored.size() - 1), path.getLast())) {
-                // Add the village to the path
-                path.add(explored.get(explored.size() - 1));
-            } else {
-                // While village on end of explored List is not connected to last village on path
-                while (!nodesConnected(explored.get(explored.size() - 1), path.getLast())) {
-                    // Remove the last village from the path
-                    path.removeLast();
-                }
-                // If the villages are finally connected
-                if (nodesConnected(explored.get(explored.size() - 1), path.getLast())) {
-                    // Add the village to the path
-                    path.add(explored.get(explored.size() - 1));
-                }
-            }
+        // Explore the last village in the frontier, which removes all of its copies from it
+        int current = villages.last();
+        villages.explore(current);
+        explore(graph.getName(current));
+        relaxed += graph.lastEdge(current) - graph.firstEdge(current);
+        if (trace != null) {
+            trace.record(SearchTrace.DEQUEUE, current, parent[current]);
+            trace.record(SearchTrace.EXPAND, current, parent[current]);
         }
 
-        // Iterate through the currentNode in the explored List's children and add them to the frontier
-        Set<Map.Entry<String, Double>> entrySet = mappedRoute.get(explored.get(explored.size() - 1)).entrySet();
-        for (Map.Entry<String, Double> entry : entrySet) {
-            if (!explored.contains(entry.getKey())) {
-                frontier.add(entry.getKey());
+        // Iterate through the current village's children and add them to the frontier. The
+        // village explored last that adds a child is the one it is reached from, which is where the
+        // path would back up to once the child is explored
+        for (int edge = graph.firstEdge(current); edge < graph.lastEdge(current); edge++) {
+            int child = graph.getTarget(edge);
+            if (!villages.isExplored(child)) {
+                villages.add(child);
+                parent[child] = current;
+                if (trace != null) {
+                    trace.record(SearchTrace.ENQUEUE, child, current);
+                }
             }
         }
 
-        // For the number of villages in the frontier
-        for (int i = frontier.size() - 1; i >= 0; i--) {
-            // If the village in the frontier is already in the explored, remove it
-            if (frontier.get(i).equals(explored.get(explored.size() - 1))) {
-                frontier.remove(i);
-            }
+        // If the end village is found and the search is complete
+        if (solved()) {
+            // Call the createPath method for following the villages back to the start village
+            createPath(parent, current);
         }
     }
 
@@ -356,129 +572,1250 @@ public class RouteFinder {
      * @param e - The end village name
      */
     public void breadthFirstSearch(TreeMap<String,TreeMap<String,Double>> m, String s, String e) {
-        // Set the mappedRoute, start village, and end village so they can be used later
+        // Set the mappedRoute so the graph matches it
         setMappedRoute(m);
+        breadthFirstSearch(s, e);
+    }
+
+    /**
+     * The method for performing the breadthFirstSearch on the loaded graph
+     * @param s - The start village name
+     * @param e - The end village name
+     */
+    public void breadthFirstSearch(String s, String e) {
+        // Set the start village and end village so they can be used later
         setStartVillage(s);
         setEndVillage(e);
 
+        // If this is the first step, move the start village into the frontier of ids
+        if (!started) {
+            startFrontierSearch();
+        }
+
         // Iterate through the first node's children
-        Set<Map.Entry<String, Double>> entrySet = mappedRoute.get(frontier.get(0)).entrySet();
-        for (Map.Entry<String, Double> entry : entrySet) {
-            // If the child is not already in the explored List
-            if (!explored.contains(entry.getKey())) {
-                frontier.add(entry.getKey());
+        int current = villages.first();
+        relaxed += graph.lastEdge(current) - graph.firstEdge(current);
+        if (trace != null) {
+            trace.record(SearchTrace.DEQUEUE, current, parent[current]);
+            trace.record(SearchTrace.EXPAND, current, parent[current]);
+        }
+        for (int edge = graph.firstEdge(current); edge < graph.lastEdge(current); edge++) {
+            int child = graph.getTarget(edge);
+            // If the child has never been in the frontier, it is reached from the current village
+            if (!villages.wasAdded(child)) {
+                parent[child] = current;
+            }
+            // If the child is not already explored
+            if (!villages.isExplored(child)) {
+                villages.add(child);
+                if (trace != null) {
+                    trace.record(SearchTrace.ENQUEUE, child, current);
+                }
             }
-            // If the child is not already in the pathFrom TreeMap that keeps track path from start village
-            if (!pathFrom.containsKey(entry.getKey())) {
-                pathFrom.put(entry.getKey(), frontier.get(0));
+        }
+
+        // Add the current Node to the explored List, which removes all of its copies from the frontier
+        villages.explore(current);
+        explore(graph.getName(current));
+
+        // If the end village is found and the search is complete
+        if (solved()) {
+            // Call the createPath method for putting the breadthFirstSearch's path in order
+            createPath(parent, current);
+        }
+    }
+
+    /**
+     * The method for preparing the depthFirstSearch and breadthFirstSearch. The villages in the
+     * frontier List are moved into a frontier of ids, and the frontier becomes a view of it so it
+     * can still be shown while searching
+     */
+    private void startFrontierSearch() {
+        // Reuse the arrays of an earlier search on the same graph
+        if (villages == null) {
+            villages = new SearchFrontier(graph.size());
+        } else {
+            villages.reset();
+        }
+        if (parent == null) {
+            parent = new int[graph.size()];
+        }
+        started = true;
+
+        // Move the start village over
+        for (String village : frontier) {
+            int id = graph.getId(village);
+            parent[id] = -1;
+            villages.add(id);
+            if (trace != null) {
+                trace.record(SearchTrace.ENQUEUE, id, -1);
             }
         }
 
-        // Add the current Node to the explored List
-        explored.add(frontier.get(0));
+        frontier = new AbstractList<String>() {
+            @Override
+            public String get(int index) {
+                return graph.getName(villages.get(index));
+            }
 
-        // For the number of villages in the frontier
-        for (int i = frontier.size()-1; i >= 0; i--) {
-            // If the village in the frontier is already in the explored, remove it
-            if (frontier.get(i).equals(frontier.get(0))) {
-                frontier.remove(i);
+            @Override
+            public int size() {
+                return villages.size();
             }
+        };
+    }
+
+    /**
+     * The method for performing the parallelBreadthFirstSearch
+     * @param m - The TreeMap containing the information from the file
+     * @param s - The start village name
+     * @param e - The end village name
+     */
+    public void parallelBreadthFirstSearch(TreeMap<String,TreeMap<String,Double>> m, String s, String e) {
+        // Set the mappedRoute so the graph matches it
+        setMappedRoute(m);
+        parallelBreadthFirstSearch(s, e);
+    }
+
+    /**
+     * The method for performing one step of the parallelBreadthFirstSearch on the loaded graph.
+     * Every step expands a whole level of villages across the threads of the common fork join
+     * pool, in the same order the breadthFirstSearch expands them one step at a time, so it
+     * explores the same villages and finds the same path
+     * @param s - The start village name
+     * @param e - The end village name
+     */
+    public void parallelBreadthFirstSearch(String s, String e) {
+        // Set the start village and end village so they can be used later
+        setStartVillage(s);
+        setEndVillage(e);
+
+        // If this is the first step, put the start village in the first level
+        if (!started) {
+            startParallelSearch();
+        }
+
+        parallelSearch.step();
+        relaxed = parallelSearch.getRelaxed();
+
+        // Add the villages of the level to the explored List, which ends at the end village
+        for (int i = 0; i < parallelSearch.stepSize(); i++) {
+            explore(graph.getName(parallelSearch.stepVillage(i)));
         }
 
         // If the end village is found and the search is complete
         if (solved()) {
-            // Call the createPath method for putting the breadthFirstSearch's path in order
-            createPath(pathFrom);
+            path.clear();
+            for (int village : parallelSearch.getPath()) {
+                path.add(graph.getName(village));
+            }
         }
     }
 
     /**
-     * The method for determining if two nodes have a connection
-     * @param firstNode - The first village to be checked
-     * @param secondNode - The second village to be checked
-     * @return - Return true or false depending on whether they are connected or not
+     * The method for preparing the parallelBreadthFirstSearch. Its arrays are kept for the next
+     * search on the same graph, and the frontier becomes a view of the level the next step expands
      */
-    public boolean nodesConnected(String firstNode, String secondNode) {
-        return mappedRoute.get(firstNode).containsKey(secondNode);
+    private void startParallelSearch() {
+        if (parallelSearch == null) {
+            parallelSearch = new ParallelBreadthFirstSearch(graph);
+            parallelSearch.setTrace(trace);
+        }
+        parallelSearch.restart(graph.getId(getStartVillage()), graph.getId(getEndVillage()));
+        started = true;
+
+        frontier = new AbstractList<String>() {
+            @Override
+            public String get(int index) {
+                return graph.getName(parallelSearch.levelVillage(index));
+            }
+
+            @Override
+            public int size() {
+                return parallelSearch.levelSize();
+            }
+        };
     }
 
     /**
-     * The method for creating the path for the breadthFirstSearch
-     * @param pathFrom - The TreeMap of the villages and from what village they were explored
+     * The method for performing the dijkstraSearch
+     * @param m - The TreeMap containing the information from the file
+     * @param s - The start village name
+     * @param e - The end village name
      */
-    public void createPath(TreeMap pathFrom) {
-        // Set the currentNode equal to the last village
-        String currentNode = getEndVillage();
+    public void dijkstraSearch(TreeMap<String,TreeMap<String,Double>> m, String s, String e) {
+        // Set the mappedRoute so the graph matches it
+        setMappedRoute(m);
+        dijkstraSearch(s, e);
+    }
 
-        // While the currentNode does not equal the start village
-        while(!currentNode.equals(getStartVillage())) {
-            // Add the currentNode to the beginning of the path and set the new currentNode
-            path.addFirst(currentNode);
-            currentNode = String.valueOf(pathFrom.get(currentNode));
-        }
+    /**
+     * The method for performing one step of the dijkstraSearch on the loaded graph. Every call
+     * settles the village in the frontier with the shortest distance from the start village and
+     * lowers the distances of its children, so the path found is the shortest one in the map. The
+     * search stops as soon as the end village is settled
+     * @param s - The start village name
+     * @param e - The end village name
+     */
+    public void dijkstraSearch(String s, String e) {
+        weightedSearch(s, e, Heuristic.ZERO);
+    }
 
-        // Add the last node to the beginning of the path
-        path.addFirst(currentNode);
+    /**
+     * The method for performing the aStarSearch
+     * @param m - The TreeMap containing the information from the file
+     * @param s - The start village name
+     * @param e - The end village name
+     */
+    public void aStarSearch(TreeMap<String,TreeMap<String,Double>> m, String s, String e) {
+        // Set the mappedRoute so the graph matches it
+        setMappedRoute(m);
+        aStarSearch(s, e);
     }
 
     /**
-     * The method for calculating the cost of the path that was found through the map
-     * @return - Return the cost
+     * The method for performing one step of the aStarSearch on the loaded graph. It works like the
+     * dijkstraSearch, but the frontier is ordered by the distance from the start village plus the
+     * heuristic's estimate of the distance left to the end village, so villages leading away from
+     * the end village are explored much later or not at all
+     * @param s - The start village name
+     * @param e - The end village name
      */
-    public double calculatePath() {
-        double pathCost = 0.00;
+    public void aStarSearch(String s, String e) {
+        weightedSearch(s, e, getHeuristic());
+    }
 
-        // For the number of nodes in the path
-        for (int i = 0; i < path.size() - 1; i++) {
-            // Get the cost between the nodes and add it to the pathCost
-            pathCost += mappedRoute.get(path.get(i)).get(path.get(i+1));
+    /**
+     * The method for performing one step of a weighted search
+     * @param s - The start village name
+     * @param e - The end village name
+     * @param h - The heuristic estimating the distance left to the end village
+     */
+    private void weightedSearch(String s, String e, Heuristic h) {
+        // Set the start village and end village so they can be used later
+        setStartVillage(s);
+        setEndVillage(e);
+
+        // If this is the first step, put the start village in the heap
+        if (!started) {
+            startWeightedSearch(h);
         }
 
-        return pathCost;
+        // If there is nothing left to settle, the end village cannot be reached
+        if (heap.isEmpty()) {
+            return;
+        }
+
+        // Settle the village with the shortest estimated route and add it to the explored List
+        int current = heap.poll();
+        int end = graph.getId(getEndVillage());
+        settled[current] = generation;
+        explore(graph.getName(current));
+        if (trace != null) {
+            trace.record(SearchTrace.DEQUEUE, current, parent[current]);
+        }
+
+        // If the end village has been settled its shortest path is known
+        if (current == end) {
+            createPath(parent, current);
+            return;
+        }
+        if (trace != null) {
+            trace.record(SearchTrace.EXPAND, current, parent[current]);
+        }
+        relaxed += graph.lastEdge(current) - graph.firstEdge(current);
+
+        // Lower the distance of every child that can be reached more cheaply through this village
+        for (int edge = graph.firstEdge(current); edge < graph.lastEdge(current); edge++) {
+            int child = graph.getTarget(edge);
+            double childDistance = distance[current] + graph.getWeight(edge);
+
+            // A village not reached yet in this search has no distance
+            if (settled[child] != generation && (reached[child] != generation || childDistance < distance[child])) {
+                reached[child] = generation;
+                distance[child] = childDistance;
+                parent[child] = current;
+                heap.insertOrDecrease(child, childDistance + h.estimate(child, end));
+                if (trace != null) {
+                    trace.record(SearchTrace.ENQUEUE, child, current);
+                }
+            }
+        }
     }
 
     /**
-     * The method for creating the table of the distances between all of the villages
-     * @return - Return the rows created by the file
+     * The method for setting the heuristic the aStarSearch uses
+     * @param h - The heuristic
      */
-    public Object[][] createDistanceTable() {
-        // Initialize the variables
-        int place = 0;
-        String values[];
-        Object rowData[][] = new Object[getNumberOfLines()][3];
+    public void setHeuristic(Heuristic h) {
+        heuristic = h;
+    }
 
-        // Open a scanner
-        Scanner inputFile;
+    /**
+     * The method for retrieving the heuristic the aStarSearch uses. If none was set, the straight
+     * line heuristic is used when the map has a positions file next to it and its scale is not
+     * weak, and otherwise landmarks are picked in the loaded graph. A map with a negative route
+     * gets no estimate at all, since the landmarks could never be measured on it
+     * @return - Return the heuristic
+     */
+    public Heuristic getHeuristic() {
+        if (heuristic == null) {
+            // A weak straight line explores nearly as much as no estimate, so landmarks do better
+            StraightLineHeuristic straightLine = StraightLineHeuristic.load(getPickedFile(), graph);
+            if (straightLine != null && !straightLine.isWeak()) {
+                heuristic = straightLine;
+            }
+        }
+        if (heuristic == null) {
+            heuristic = graph.hasNegativeRoute() ? Heuristic.ZERO
+                    : new LandmarkHeuristic(graph, LandmarkHeuristic.DEFAULT_LANDMARKS);
+        }
 
-        // Create a new scanner
-        inputFile = openFile(getPickedFile());
+        return heuristic;
+    }
 
-        inputFile.nextLine();
+    /**
+     * The method for preparing the arrays of a weighted search. The arrays are stamped with the
+     * number of the search, so a later search on the same graph only has to empty the heap. The
+     * frontier becomes a view of the villages in the heap so it can still be shown while searching
+     */
+    private void startWeightedSearch(Heuristic h) {
+        int n = graph.size();
+        int start = graph.getId(getStartVillage());
+
+        // Reuse the arrays of an earlier search on the same graph
+        if (heap == null) {
+            heap = new IndexedMinHeap(n);
+            distance = new double[n];
+            reached = new int[n];
+            settled = new int[n];
+        } else {
+            heap.clear();
+        }
+        if (parent == null) {
+            parent = new int[n];
+        }
+        generation += 1;
+        started = true;
+
+        reached[start] = generation;
+        distance[start] = 0;
+        parent[start] = -1;
+        heap.insertOrDecrease(start, h.estimate(start, graph.getId(getEndVillage())));
+        if (trace != null) {
+            trace.record(SearchTrace.ENQUEUE, start, -1);
+        }
+        frontier = new AbstractList<String>() {
+            @Override
+            public String get(int index) {
+                return graph.getName(heap.get(index));
+            }
 
-        // While there is another line in the file
-        while(inputFile.hasNextLine()) {
-            // Set a String array to the values from the first line
-            values = (inputFile.nextLine()).split("\\t", -1);
+            @Override
+            public int size() {
+                return heap.size();
+            }
+        };
+    }
 
-            // Copy the values String array to the current location in the rowData Object
-            System.arraycopy(values, 0, rowData[place], 0, 3);
+    /**
+     * The method for performing the bidirectionalBreadthFirstSearch
+     * @param m - The TreeMap containing the information from the file
+     * @param s - The start village name
+     * @param e - The end village name
+     */
+    public void bidirectionalBreadthFirstSearch(TreeMap<String,TreeMap<String,Double>> m, String s, String e) {
+        // Set the mappedRoute so the graph matches it
+        setMappedRoute(m);
+        bidirectionalBreadthFirstSearch(s, e);
+    }
 
-            // Increment the place count
-            place += 1;
-        }
+    /**
+     * The method for performing one step of the bidirectionalBreadthFirstSearch on the loaded
+     * graph. It works like the breadthFirstSearch, but one search grows from the start village and
+     * one from the end village, and the path with the fewest routes is found where they meet
+     * @param s - The start village name
+     * @param e - The end village name
+     */
+    public void bidirectionalBreadthFirstSearch(String s, String e) {
+        bidirectionalSearch(s, e, false);
+    }
 
-        // Close the file
-        inputFile.close();
+    /**
+     * The method for performing the bidirectionalDijkstraSearch
+     * @param m - The TreeMap containing the information from the file
+     * @param s - The start village name
+     * @param e - The end village name
+     */
+    public void bidirectionalDijkstraSearch(TreeMap<String,TreeMap<String,Double>> m, String s, String e) {
+        // Set the mappedRoute so the graph matches it
+        setMappedRoute(m);
+        bidirectionalDijkstraSearch(s, e);
+    }
 
-        return rowData;
+    /**
+     * The method for performing one step of the bidirectionalDijkstraSearch on the loaded graph.
+     * It works like the dijkstraSearch, but one search grows from the start village and one from
+     * the end village, and the shortest path is found where they meet
+     * @param s - The start village name
+     * @param e - The end village name
+     */
+    public void bidirectionalDijkstraSearch(String s, String e) {
+        bidirectionalSearch(s, e, true);
     }
 
     /**
-     * The method the determines if the end village has been found
-     * @return - Return true or false
+     * The method for performing one step of a bidirectional search. The villages either search
+     * settles are added to the explored List, and once the search is finished the two halves of
+     * the path are stitched together in the path
+     * @param s - The start village name
+     * @param e - The end village name
+     * @param weighted - True to follow the route distances, false to count every route as one step
      */
-    public boolean solved() {
-        return explored.contains(getEndVillage());
+    private void bidirectionalSearch(String s, String e, boolean weighted) {
+        // Set the start village and end village so they can be used later
+        setStartVillage(s);
+        setEndVillage(e);
+
+        // If this is the first step, put the two villages in their frontiers
+        if (!started) {
+            startBidirectionalSearch(weighted);
+        }
+
+        // Settle the next village and add it to the explored List, unless the other side
+        // already did. The end village is settled first by the search from its own end, so it
+        // does not solve the search
+        int current = bidirectional.step();
+        if (current >= 0) {
+            explored.add(graph.getName(current));
+        }
+        relaxed = bidirectional.getRelaxed();
+
+        // If the two searches have met on the shortest path, stitch its halves together
+        if (bidirectional.isFinished() && bidirectional.found()) {
+            path.clear();
+            for (int village : bidirectional.getPath()) {
+                path.add(graph.getName(village));
+            }
+            solved = true;
+        }
+    }
+
+    /**
+     * The method for preparing a bidirectional search. The frontier becomes a view of the two
+     * frontiers of the search so it can still be shown while searching
+     */
+    private void startBidirectionalSearch(boolean weighted) {
+        int start = graph.getId(getStartVillage());
+        int end = graph.getId(getEndVillage());
+
+        // Reuse the arrays of an earlier search of the same kind
+        if (bidirectional == null || bidirectional.isWeighted() != weighted) {
+            bidirectional = new BidirectionalSearch(graph, start, end, weighted);
+        } else {
+            bidirectional.restart(start, end);
+        }
+        bidirectional.setTrace(trace);
+        if (trace != null) {
+            trace.record(SearchTrace.ENQUEUE, start, -1);
+            trace.record(SearchTrace.ENQUEUE, end, -1);
+        }
+        started = true;
+        frontier = new AbstractList<String>() {
+            @Override
+            public String get(int index) {
+                return graph.getName(bidirectional.frontierVillage(index));
+            }
+
+            @Override
+            public int size() {
+                return bidirectional.frontierSize();
+            }
+        };
+    }
+
+    /**
+     * The method for performing the depthLimitedSearch
+     * @param m - The TreeMap containing the information from the file
+     * @param s - The start village name
+     * @param e - The end village name
+     */
+    public void depthLimitedSearch(TreeMap<String,TreeMap<String,Double>> m, String s, String e) {
+        // Set the mappedRoute so the graph matches it
+        setMappedRoute(m);
+        depthLimitedSearch(s, e);
+    }
+
+    /**
+     * The method for performing one step of the depthLimitedSearch on the loaded graph. It works
+     * like the depthFirstSearch, but only remembers the path it is on and goes no deeper than the
+     * depth limit, so a path with more routes than the limit is never found
+     * @param s - The start village name
+     * @param e - The end village name
+     */
+    public void depthLimitedSearch(String s, String e) {
+        deepeningSearch(s, e, DeepeningSearch.Mode.DEPTH_LIMITED);
+    }
+
+    /**
+     * The method for performing the iterativeDeepeningSearch
+     * @param m - The TreeMap containing the information from the file
+     * @param s - The start village name
+     * @param e - The end village name
+     */
+    public void iterativeDeepeningSearch(TreeMap<String,TreeMap<String,Double>> m, String s, String e) {
+        // Set the mappedRoute so the graph matches it
+        setMappedRoute(m);
+        iterativeDeepeningSearch(s, e);
+    }
+
+    /**
+     * The method for performing one step of the iterativeDeepeningSearch on the loaded graph. It
+     * runs the depthLimitedSearch again with a limit one deeper every time, so like the
+     * breadthFirstSearch it finds the path with the fewest routes, while only remembering the path
+     * it is on
+     * @param s - The start village name
+     * @param e - The end village name
+     */
+    public void iterativeDeepeningSearch(String s, String e) {
+        deepeningSearch(s, e, DeepeningSearch.Mode.ITERATIVE_DEEPENING);
+    }
+
+    /**
+     * The method for performing the idaStarSearch
+     * @param m - The TreeMap containing the information from the file
+     * @param s - The start village name
+     * @param e - The end village name
+     */
+    public void idaStarSearch(TreeMap<String,TreeMap<String,Double>> m, String s, String e) {
+        // Set the mappedRoute so the graph matches it
+        setMappedRoute(m);
+        idaStarSearch(s, e);
+    }
+
+    /**
+     * The method for performing one step of the idaStarSearch on the loaded graph. It limits the
+     * distance from the start village plus the heuristic's estimate of the distance left instead
+     * of the depth, and raises the limit every time, so like the aStarSearch it finds the shortest
+     * path, while only remembering the path it is on
+     * @param s - The start village name
+     * @param e - The end village name
+     */
+    public void idaStarSearch(String s, String e) {
+        deepeningSearch(s, e, DeepeningSearch.Mode.IDA_STAR);
+    }
+
+    /**
+     * The method for performing one step of a search that only remembers the path it is on. No
+     * explored List is kept, since it would grow with the number of villages, so the villages the
+     * search expanded are only counted
+     * @param s - The start village name
+     * @param e - The end village name
+     * @param mode - How the search limits its depth
+     */
+    private void deepeningSearch(String s, String e, DeepeningSearch.Mode mode) {
+        // Set the start village and end village so they can be used later
+        setStartVillage(s);
+        setEndVillage(e);
+
+        // If this is the first step, put the start village on the stack
+        if (!started) {
+            startDeepeningSearch(mode);
+        }
+
+        deepening.step();
+        relaxed = deepening.getRelaxed();
+
+        // If the end village is on top of the stack, the stack is its path
+        if (deepening.isFinished() && deepening.found()) {
+            path.clear();
+            for (int village : deepening.getPath()) {
+                path.add(graph.getName(village));
+            }
+            solved = true;
+        }
+    }
+
+    /**
+     * The method for preparing a search that only remembers the path it is on. The frontier
+     * becomes a view of the stack so it can still be shown while searching
+     */
+    private void startDeepeningSearch(DeepeningSearch.Mode mode) {
+        int start = graph.getId(getStartVillage());
+        int end = graph.getId(getEndVillage());
+        Heuristic h = mode == DeepeningSearch.Mode.IDA_STAR ? getHeuristic() : null;
+
+        deepening = new DeepeningSearch(graph, start, end, mode, h, depthLimit);
+        deepening.setTrace(trace);
+        deepeningStarted = true;
+        started = true;
+        frontier = new AbstractList<String>() {
+            @Override
+            public String get(int index) {
+                return graph.getName(deepening.stackVillage(index));
+            }
+
+            @Override
+            public int size() {
+                return deepening.stackSize();
+            }
+        };
+    }
+
+    /**
+     * The method for setting the most routes the paths of the depthLimitedSearch,
+     * iterativeDeepeningSearch and idaStarSearch may have. Their stacks take
+     * DeepeningSearch.BYTES_PER_LEVEL bytes for every route of the limit at most
+     * @param limit - The depth limit, or DeepeningSearch.AUTO_DEPTH_LIMIT for one less than the
+     * number of villages of the map
+     */
+    public void setDepthLimit(int limit) {
+        if (limit < 0 && limit != DeepeningSearch.AUTO_DEPTH_LIMIT) {
+            throw new IllegalArgumentException("The depth limit cannot be negative.");
+        }
+
+        depthLimit = limit;
+    }
+
+    /**
+     * The method for retrieving the most routes the paths of the searches that only remember the
+     * path they are on may have
+     * @return - Return the depth limit, DeepeningSearch.AUTO_DEPTH_LIMIT if it follows the map
+     */
+    public int getDepthLimit() {
+        return depthLimit;
+    }
+
+    /**
+     * The method for checking if the last search that only remembers its path left paths
+     * unexplored because of the depth limit, so finding no path does not mean there is none
+     * @return - Return true if the depth limit cut a path off
+     */
+    public boolean isDepthLimitReached() {
+        return deepeningStarted && deepening.isLimitReached();
+    }
+
+    /**
+     * The method for retrieving how many villages the last search expanded. It is the size of the
+     * explored List, apart from the searches that only remember their path, which count a village
+     * again every time they reach it
+     * @return - Return the number of villages
+     */
+    public int getExpandedCount() {
+        if (deepeningStarted) {
+            return (int) Math.min(Integer.MAX_VALUE, deepening.getExpanded());
+        }
+
+        return explored.size();
+    }
+
+    /**
+     * The method for performing the hierarchySearch
+     * @param m - The TreeMap containing the information from the file
+     * @param s - The start village name
+     * @param e - The end village name
+     */
+    public void hierarchySearch(TreeMap<String,TreeMap<String,Double>> m, String s, String e) {
+        // Set the mappedRoute so the graph matches it
+        setMappedRoute(m);
+        hierarchySearch(s, e);
+    }
+
+    /**
+     * The method for performing the hierarchySearch on the loaded graph. The whole search is done
+     * in one call: it searches upward through the contraction hierarchy from both villages, and
+     * the path where the two searches meet is unpacked back into the real villages along it. The
+     * villages either search settled become the explored List
+     * @param s - The start village name
+     * @param e - The end village name
+     */
+    public void hierarchySearch(String s, String e) {
+        // Set the start village and end village so they can be used later
+        setStartVillage(s);
+        setEndVillage(e);
+
+        // Make sure the hierarchy and the scratch state of its queries are ready
+        if (hierarchyQuery == null) {
+            hierarchyQuery = getContractionHierarchy().newQuery();
+        }
+
+        boolean found = hierarchyQuery.run(graph.getId(s), graph.getId(e));
+        relaxed = hierarchyQuery.getRelaxed();
+        peakFrontier = Math.max(peakFrontier, hierarchyQuery.getPeakFrontier());
+
+        // Show every village the two searches settled as explored
+        frontier.clear();
+        for (int village : hierarchyQuery.getSettled()) {
+            explored.add(graph.getName(village));
+            if (trace != null) {
+                trace.record(SearchTrace.EXPAND, village, -1);
+            }
+        }
+
+        // If the searches met, unpack the path between the villages
+        if (found) {
+            path.clear();
+            for (int village : hierarchyQuery.getPath()) {
+                path.add(graph.getName(village));
+            }
+            solved = true;
+        }
+    }
+
+    /**
+     * The method for setting the contraction hierarchy the hierarchySearch uses, so one that was
+     * already built for the same graph can be shared
+     * @param h - The hierarchy
+     */
+    public void setContractionHierarchy(ContractionHierarchy h) {
+        // Only a different hierarchy needs a new query
+        if (h != hierarchy) {
+            hierarchy = h;
+            hierarchyQuery = null;
+        }
+    }
+
+    /**
+     * The method for retrieving the contraction hierarchy of the loaded graph. It is loaded from
+     * the file next to the map if that was built from the same map, and otherwise the graph is
+     * preprocessed on all cores and the result saved next to the map for the next time. A map that
+     * was changed since it was read is never saved over its file's hierarchy
+     * @return - Return the hierarchy
+     */
+    public ContractionHierarchy getContractionHierarchy() {
+        if (hierarchy == null && getPickedFile() != null && !edited) {
+            hierarchy = ContractionHierarchy.load(getPickedFile(), graph);
+        }
+
+        if (hierarchy == null) {
+            hierarchy = ContractionHierarchy.build(graph);
+
+            saveHierarchy();
+        }
+
+        return hierarchy;
+    }
+
+    /**
+     * The method for keeping the contraction hierarchy next to the picked file so the next load
+     * can skip building it. A hierarchy that cannot be saved is simply built again next time
+     * @return - Return true if the hierarchy was saved
+     */
+    private boolean saveHierarchy() {
+        // A changed map no longer matches its file, so its hierarchy would be wrong for the file
+        if (getPickedFile() == null || edited) {
+            return false;
+        }
+
+        try {
+            hierarchy.save(getPickedFile(), graph);
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * The method for determining if two nodes have a connection
+     * @param firstNode - The first village to be checked
+     * @param secondNode - The second village to be checked
+     * @return - Return true or false depending on whether they are connected or not
+     */
+    public boolean nodesConnected(String firstNode, String secondNode) {
+        return graph.findEdge(graph.getId(firstNode), graph.getId(secondNode)) >= 0;
+    }
+
+    /**
+     * The method for creating the path for the breadthFirstSearch
+     * @param pathFrom - The TreeMap of the villages and from what village they were explored
+     */
+    public void createPath(TreeMap<String,String> pathFrom) {
+        // Set the currentNode equal to the last village
+        String currentNode = getEndVillage();
+
+        // While the currentNode does not equal the start village
+        while(!currentNode.equals(getStartVillage())) {
+            // Add the currentNode to the beginning of the path and set the new currentNode
+            path.addFirst(currentNode);
+            currentNode = pathFrom.get(currentNode);
+        }
+
+        // Add the last node to the beginning of the path
+        path.addFirst(currentNode);
+    }
+
+    /**
+     * The method for creating the path from an array holding the village every village was
+     * reached from
+     * @param parents - The array of the village each village was reached from, -1 for the start
+     * @param end - The id of the last village of the path
+     */
+    private void createPath(int[] parents, int end) {
+        path.clear();
+
+        // Walk back from the end village to the start village
+        for (int current = end; current >= 0; current = parents[current]) {
+            path.addFirst(graph.getName(current));
+        }
+    }
+
+    /**
+     * The method for retrieving the result of the last search as a Route that can be kept
+     * @return - Return the route, with an empty path if the search did not find one
+     */
+    public RouteBatch.Route getRoute() {
+        if (!solved()) {
+            return new RouteBatch.Route(getStartVillage(), getEndVillage(), Collections.emptyList(),
+                    Double.POSITIVE_INFINITY, getExpandedCount());
+        }
+
+        return new RouteBatch.Route(getStartVillage(), getEndVillage(), new ArrayList<>(path), calculatePath(),
+                getExpandedCount());
+    }
+
+    /**
+     * The method for calculating the cost of the path that was found through the map
+     * @return - Return the cost
+     */
+    public double calculatePath() {
+        double pathCost = 0.00;
+        int previous = -1;
+
+        // For the number of nodes in the path
+        for (String village : path) {
+            int current = graph.getId(village);
+            // Get the cost between the nodes and add it to the pathCost
+            if (previous >= 0) {
+                pathCost += graph.getWeight(graph.findEdge(previous, current));
+            }
+            previous = current;
+        }
+
+        return pathCost;
+    }
+
+    /**
+     * The method for finding the k shortest routes between two villages that never visit a village
+     * twice, so there are alternatives to the one path a search finds. The arrays of the searches
+     * are kept for the next query on the same graph
+     * @param s - The start village name
+     * @param e - The end village name
+     * @param k - The most routes to find
+     * @return - Return the routes shortest first, each with its cost added up like calculatePath,
+     * or fewer than k if there are not that many
+     */
+    public List<RouteBatch.Route> kShortestRoutes(String s, String e, int k) {
+        int start = requireVillage(s);
+        int end = requireVillage(e);
+
+        // If the villages are in different parts of the map there is no route at all
+        if (!graph.getComponents().connected(start, end)) {
+            return new ArrayList<>();
+        }
+
+        if (kShortestPaths == null) {
+            kShortestPaths = new KShortestPaths(graph);
+        }
+        return kShortestPaths.find(start, end, k);
+    }
+
+    /**
+     * The method for creating the table of the distances between all of the villages. The
+     * distances are no longer copied from the text of the file but written by formatDistance, so
+     * a distance of 2.50 in the file is shown as 2.5 and 7.0 as 7
+     * @return - Return the rows created by the file
+     */
+    public Object[][] createDistanceTable() {
+        // Initialize the variables
+        Object rowData[][] = new Object[graph.getRouteCount()][3];
+
+        // Copy every route that was loaded from the file into the rows of the table
+        for (int place = 0; place < graph.getRouteCount(); place++) {
+            rowData[place][0] = graph.getName(graph.getRouteFrom(place));
+            rowData[place][1] = graph.getName(graph.getRouteTo(place));
+            rowData[place][2] = formatDistance(graph.getRouteDistance(place));
+        }
+
+        return rowData;
+    }
+
+    /**
+     * The method for retrieving the shortest distance between every pair of villages. It is
+     * worked out on all cores the first time it is asked for
+     * @return - Return the matrix of distances
+     */
+    public DistanceMatrix getDistanceMatrix() {
+        if (distanceMatrix == null) {
+            distanceMatrix = DistanceMatrix.compute(graph);
+        }
+
+        return distanceMatrix;
+    }
+
+    /**
+     * The method for working out the shortest distance from one village to every other village
+     * with delta stepping on all cores, without the memory of a whole distance matrix
+     * @param village - The name of the village to measure from
+     * @return - Return the distances and the village every village is reached from, whose
+     * getPath gives a path in the same form as getPath
+     */
+    public DeltaStepping distancesFrom(String village) {
+        return DeltaStepping.compute(graph, requireVillage(village), delta, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * The method for setting the width of the buckets distancesFrom keeps its villages in. A small
+     * delta expands fewer villages more than once, a large one gives the threads more to share
+     * @param d - The delta, or DeltaStepping.AUTO_DELTA to pick one from the routes of the map
+     */
+    public void setDelta(double d) {
+        if (!(d >= 0) || d == Double.POSITIVE_INFINITY) {
+            throw new IllegalArgumentException("The delta must be a positive number.");
+        }
+
+        delta = d;
+    }
+
+    /**
+     * The method for retrieving the width of the buckets distancesFrom keeps its villages in
+     * @return - Return the delta, DeltaStepping.AUTO_DELTA if it is picked from the map
+     */
+    public double getDelta() {
+        return delta;
+    }
+
+    /**
+     * The method for setting if the maps loaded from now on keep their graph outside of the heap.
+     * The graph is read straight out of the mapped snapshot of the map, so the heap holds only the
+     * arrays of the searches and the time the garbage collector pauses for does not grow with the
+     * map. A map whose snapshot is larger than a quarter of the heap is always kept outside of it,
+     * and a map kept outside of the heap cannot be changed with setRoute, removeRoute, addVillage
+     * or removeVillage
+     * @param o - True to keep the graph outside of the heap
+     */
+    public void setOffHeap(boolean o) {
+        offHeap = o;
+    }
+
+    /**
+     * The method for checking if the maps loaded from now on keep their graph outside of the heap
+     * @return - Return true if they do
+     */
+    public boolean isOffHeap() {
+        return offHeap;
+    }
+
+    /**
+     * The method for setting the distance of the route between two villages, adding the route if
+     * the villages had none. The map is changed in place without reading the file again: the
+     * graph only copies the arrays the route is in, the landmarks, distance matrix and cached
+     * routes are repaired instead of being worked out again, and the arrays of the searches are
+     * kept. A search that was in progress has to be started again
+     * @param first - The name of the first village
+     * @param second - The name of the second village
+     * @param d - The distance between them
+     */
+    public void setRoute(String first, String second, double d) {
+        int from = requireVillage(first);
+        int to = requireVillage(second);
+
+        // The searches need distances they can add up and never go back on
+        if (!(d >= 0) || d == Double.POSITIVE_INFINITY) {
+            throw new IllegalArgumentException("The distance of a route must be a number that is 0 or more.");
+        }
+
+        int edge = graph.findEdge(from, to);
+        double oldDistance = edge >= 0 ? graph.getWeight(edge) : Double.POSITIVE_INFINITY;
+        changeGraph(graph.withRoute(from, to, d), true);
+        routeChanged(from, to, oldDistance, d);
+    }
+
+    /**
+     * The method for removing the route between two villages, in both directions. If the
+     * villages have no route nothing changes
+     * @param first - The name of the first village
+     * @param second - The name of the second village
+     */
+    public void removeRoute(String first, String second) {
+        int from = requireVillage(first);
+        int to = requireVillage(second);
+        int edge = graph.findEdge(from, to);
+
+        // If there is no route to remove
+        if (edge < 0) {
+            return;
+        }
+
+        double oldDistance = graph.getWeight(edge);
+        changeGraph(graph.withoutRoute(from, to), true);
+        routeChanged(from, to, oldDistance, Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * The method for adding a village without any routes to the map. The other villages keep their
+     * ids
+     * @param name - The name of the village
+     */
+    public void addVillage(String name) {
+        // A name has to fit on a line of the map between the tabs
+        if (name == null || name.isEmpty() || name.indexOf('\t') >= 0 || name.indexOf('\n') >= 0 || name.indexOf('\r') >= 0) {
+            throw new IllegalArgumentException("A village name cannot be empty or hold a tab or line break.");
+        }
+        if (graph.getId(name) >= 0) {
+            throw new IllegalArgumentException("The map already has a village called " + name);
+        }
+
+        changeGraph(graph.withVillage(name), false);
+        heuristic = null;
+        if (distanceMatrix != null) {
+            distanceMatrix = distanceMatrix.withVillage();
+        }
+    }
+
+    /**
+     * The method for removing a village and all of its routes from the map. The villages after it
+     * move down one id. The graph is copied once and published as one new version, so no search
+     * ever sees the village with only some of its routes
+     * @param name - The name of the village
+     */
+    public void removeVillage(String name) {
+        int village = requireVillage(name);
+
+        changeGraph(graph.withoutVillage(village), false);
+        heuristic = null;
+        if (distanceMatrix != null) {
+            distanceMatrix = distanceMatrix.withoutVillage(graph, village);
+        }
+        if (routeCache != null) {
+            routeCache.villageRemoved(name);
+        }
+    }
+
+    /**
+     * The method for setting the trace the searches tell every village they put in the frontier,
+     * take out of it and expand. Without a trace the searches do no work for it
+     * @param t - The trace, or null for none
+     */
+    public void setTrace(SearchTrace t) {
+        trace = t;
+        if (bidirectional != null) {
+            bidirectional.setTrace(t);
+        }
+        if (deepening != null) {
+            deepening.setTrace(t);
+        }
+        if (parallelSearch != null) {
+            parallelSearch.setTrace(t);
+        }
+    }
+
+    /**
+     * The method for retrieving the trace the searches tell what they do
+     * @return - Return the trace, or null if there is none
+     */
+    public SearchTrace getTrace() {
+        return trace;
+    }
+
+    /**
+     * The method for setting the listener told what every search and load costs. Without a
+     * listener the searches and loads are not timed or measured
+     * @param listener - The listener, such as a RouteMetrics, or null for none
+     */
+    public void setMetricsListener(MetricsListener listener) {
+        metrics = listener;
+    }
+
+    /**
+     * The method for retrieving the listener told what every search and load costs
+     * @return - Return the listener, or null if there is none
+     */
+    public MetricsListener getMetricsListener() {
+        return metrics;
+    }
+
+    /**
+     * The method for telling the metrics listener what the search that was just run cost. It is
+     * called by findRoute and by a SearchEngine once a search has ended, however it ended
+     * @param searchType - The name of the search method that was run
+     */
+    void reportSearch(String searchType) {
+        if (metrics == null) {
+            return;
+        }
+
+        long elapsed = System.nanoTime() - searchStarted;
+        long allocatedBytes = searchAllocated < 0 ? -1 : RouteMetrics.allocatedBytes() - searchAllocated;
+        metrics.searchFinished(new RouteMetrics.Search(searchType, getStartVillage(), getEndVillage(), solved(),
+                getExpandedCount(), relaxed, peakFrontier, solved() ? path.size() : 0, elapsed, allocatedBytes));
+    }
+
+    /**
+     * The method for telling the metrics listener what the load that just ended cost
+     */
+    private void reportLoad(File filename, boolean fromSnapshot, long loadStarted, long loadAllocated) {
+        if (metrics == null) {
+            return;
+        }
+
+        long elapsed = System.nanoTime() - loadStarted;
+        long allocatedBytes = loadAllocated < 0 ? -1 : RouteMetrics.allocatedBytes() - loadAllocated;
+        metrics.mapLoaded(new RouteMetrics.Load(filename, fromSnapshot, getNumberOfLines(), getNumberOfNodes(),
+                graph.getEdgeCount(), graph.getMemoryFootprint(), elapsed, allocatedBytes));
+    }
+
+    /**
+     * The method for setting the cache whose routes are repaired when the map is changed
+     * @param cache - The cache, or null
+     */
+    public void setRouteCache(RouteCache cache) {
+        routeCache = cache;
+    }
+
+    /**
+     * The method for setting the versions the map is published to. The graph the RouteFinder has
+     * now is published as the newest version, and every change to the map after this is published
+     * as a new version too, so a search that pinned a version keeps the map it started on. The
+     * RouteFinder pins the version of its own graph until it is given other versions or null
+     * @param versions - The versions, or null to let go of the version it has
+     * @return - Return the version of the graph, or null
+     */
+    public MapVersions.Version setMapVersions(MapVersions versions) {
+        if (mapPin != null) {
+            mapPin.close();
+            mapPin = null;
+        }
+        mapVersions = versions;
+
+        if (versions != null && graph != null) {
+            publishGraph();
+        }
+
+        return getMapVersion();
+    }
+
+    /**
+     * The method for retrieving the version the graph was last published as
+     * @return - Return the version, or null if the graph is not published
+     */
+    public MapVersions.Version getMapVersion() {
+        return mapPin == null ? null : mapPin.getVersion();
+    }
+
+    /**
+     * The method for publishing the graph as the newest version and moving the pin over to it
+     */
+    private void publishGraph() {
+        MapVersions.Pin old = mapPin;
+        mapPin = mapVersions.publishPinned(getPickedFile(), graph, edited);
+        if (old != null) {
+            old.close();
+        }
+    }
+
+    /**
+     * The method for checking if the map was changed since it was read from its file
+     * @return - Return true if it was changed
+     */
+    public boolean isEdited() {
+        return edited;
+    }
+
+    /**
+     * The method for finding the id of a village that has to be in the map
+     */
+    private int requireVillage(String name) {
+        int village = graph.getId(name);
+
+        if (village < 0) {
+            throw new IllegalArgumentException("The map has no village called " + name);
+        }
+
+        return village;
+    }
+
+    /**
+     * The method for moving over to a changed graph. The TreeMap view and the contraction
+     * hierarchy are built again when they are next needed. The search arrays are kept if the
+     * villages stayed the same, but the bidirectional search holds on to the graph it searches
+     * @param g - The changed graph
+     * @param sameVillages - True if only routes changed
+     */
+    private void changeGraph(VillageGraph g, boolean sameVillages) {
+        graph = g;
+        edited = true;
+        mappedRoute = null;
+        hierarchy = null;
+        hierarchyQuery = null;
+        bidirectional = null;
+        deepening = null;
+        parallelSearch = null;
+        kShortestPaths = null;
+        setNumberOfNodes(g.size());
+        setNumberOfLines(g.getRouteCount());
+
+        if (!sameVillages) {
+            villages = null;
+            heap = null;
+            parent = null;
+        }
+
+        // The searches that pinned the map before the change keep the graph they started on
+        if (mapVersions != null) {
+            publishGraph();
+        }
+    }
+
+    /**
+     * The method for repairing the heuristic, distance matrix and cached routes after the
+     * distance of one route changed
+     */
+    private void routeChanged(int first, int second, double oldDistance, double newDistance) {
+        if (heuristic != null) {
+            heuristic = heuristic.routeChanged(graph, first, second, oldDistance, newDistance);
+        }
+        if (distanceMatrix != null) {
+            distanceMatrix = distanceMatrix.routeChanged(graph, first, second, oldDistance, newDistance);
+        }
+        if (routeCache != null) {
+            routeCache.routeChanged(graph.getName(first), graph.getName(second), oldDistance, newDistance);
+        }
+    }
+
+    /**
+     * The method for writing a distance the way it was written in the file, without a trailing
+     * .0 on whole numbers
+     * @param distance - The distance
+     * @return - Return the distance as a String
+     */
+    public static String formatDistance(double distance) {
+        if (distance == Math.rint(distance) && Math.abs(distance) < 1e15) {
+            return Long.toString((long) distance);
+        }
+
+        return Double.toString(distance);
+    }
+
+    /**
+     * The method the determines if the end village has been found
+     * @return - Return true or false
+     */
+    public boolean solved() {
+        return solved;
+    }
+
+    /**
+     * The method for adding a village to the explored List, which solves the search once it is
+     * the end village
+     * @param village - The village that was explored
+     */
+    private void explore(String village) {
+        explored.add(village);
+
+        // If the end village has been explored the search is complete
+        if (village.equals(getEndVillage())) {
+            solved = true;
+        }
     }
 }
 
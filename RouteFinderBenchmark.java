@@ -0,0 +1,518 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+
+/**
+ * The RouteFinderBenchmark class that measures loading and searching village maps of several sizes
+ * and shapes, the way a JMH benchmark would: every benchmark is run for a few warmup iterations
+ * that are thrown away and then for a few measured iterations of a fixed time each. For every
+ * benchmark it reports the throughput, the average time of one operation, and how many bytes were
+ * allocated per second and per operation with the garbage collections they caused.
+ *
+ * The searches cycle through a fixed set of random start and end villages, so every shape and
+ * size is searched between the same pairs from run to run. The results can be written to a CSV
+ * file and a later run compared against it, which fails when a benchmark got slower by more than
+ * a threshold.
+ *
+ * Usage: java RouteFinderBenchmark [-sizes 1000,10000] [-shapes random,grid,geometric,scalefree,clusters] [-benchmarks a,b]
+ *        [-warmup 2] [-iterations 5] [-time 1000] [-csv out.csv] [-baseline old.csv] [-threshold 10]
+ */
+public class RouteFinderBenchmark {
+
+    private static final List<String> DEFAULT_SHAPES = Arrays.asList("random", "grid");
+    private static final List<String> BENCHMARKS = Arrays.asList(
+            "readFile", "readSnapshot", "readOffHeap", "createTreeMap", "depthFirstSearch", "breadthFirstSearch",
+            "dijkstraSearch", "aStarSearch", "hierarchySearch", "bidirectionalBreadthFirstSearch",
+            "bidirectionalDijkstraSearch", "parallelBreadthFirstSearch", "kShortestRoutes", "distancesFrom",
+            "calculatePath", "createDistanceTable", "distanceMatrix", "routeBatch");
+    private static final int PAIRS = 64;
+    private static final int K_ROUTES = 4;
+    private static final int MATRIX_LIMIT = 5_000;
+
+    // Every result is folded into this so the JIT cannot drop an operation whose result is unused
+    private static volatile int sink;
+
+    /**
+     * Run the benchmarks picked by the options and print the results
+     */
+    public static void main(String[] args) throws IOException {
+        Options options = new Options(args);
+        List<Score> scores = new ArrayList<>();
+
+        System.out.printf("%-9s %9s  %-32s %12s %12s %10s %12s %6s %8s%n", "shape", "villages", "benchmark",
+                "ops/s", "ms/op", "alloc MB/s", "alloc B/op", "gc", "gc ms");
+
+        for (String shape : options.shapes) {
+            for (int size : options.sizes) {
+                File map = writeMap(shape, size);
+
+                try {
+                    for (String benchmark : options.benchmarks) {
+                        Operation operation = setUp(benchmark, map, size);
+
+                        // If the benchmark does not apply to a map of this size
+                        if (operation == null) {
+                            continue;
+                        }
+
+                        Score score = measure(shape, size, benchmark, operation, options);
+                        scores.add(score);
+                        System.out.println(score);
+                    }
+                } finally {
+                    deleteMap(map);
+                }
+            }
+        }
+
+        if (options.csv != null) {
+            writeCsv(options.csv, scores);
+        }
+
+        // Compare against an earlier run, and fail if anything got slower than allowed
+        if (options.baseline != null && !compare(options.baseline, scores, options.threshold)) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * The Operation interface for one call of a benchmark
+     */
+    private interface Operation {
+
+        /**
+         * The method for running the benchmark once
+         * @param invocation - The number of the call, used to cycle through the village pairs
+         * @return - Return the result, which is only kept so it cannot be optimized away
+         */
+        Object run(int invocation);
+    }
+
+    /**
+     * The method for preparing a benchmark on a map, doing the work that is not part of what is
+     * measured, such as loading the map or building the hierarchy
+     * @param benchmark - The name of the benchmark
+     * @param map - The map file
+     * @param size - The number of villages in the map
+     * @return - Return the operation to measure, or null if the benchmark does not apply
+     */
+    private static Operation setUp(String benchmark, File map, int size) {
+        // The text benchmark removes the snapshot first, the others load the one it leaves
+        if (benchmark.equals("readFile")) {
+            return invocation -> {
+                MapSnapshot.snapshotFile(map).delete();
+                return load(map, false);
+            };
+        }
+
+        RouteFinder routeFinder = load(map, false);
+        if (benchmark.equals("readSnapshot")) {
+            return invocation -> load(map, false);
+        } else if (benchmark.equals("readOffHeap")) {
+            // The snapshot is mapped instead of read, so the graph never comes onto the heap
+            return invocation -> load(map, true);
+        }
+
+        VillageGraph graph = routeFinder.getGraph();
+        List<String[]> pairs = pairs(graph, new Random(size * 31L));
+
+        if (benchmark.equals("createTreeMap")) {
+            // The TreeMap is only built the first time a RouteFinder is asked for it
+            return invocation -> new RouteFinder(map, graph).getMappedRoute();
+        } else if (RouteFinder.SEARCH_TYPES.contains(benchmark)) {
+            // Work out what the search needs once, as a loaded map would have it already
+            if (benchmark.equals("aStarSearch")) {
+                routeFinder.getHeuristic();
+            } else if (benchmark.equals("hierarchySearch")) {
+                routeFinder.getContractionHierarchy();
+            }
+            return invocation -> {
+                String[] pair = pairs.get(invocation % PAIRS);
+                return routeFinder.findRoute(benchmark, pair[0], pair[1]);
+            };
+        } else if (benchmark.equals("kShortestRoutes")) {
+            // The arrays of the searches are kept from one query to the next, as they would be
+            return invocation -> {
+                String[] pair = pairs.get(invocation % PAIRS);
+                return routeFinder.kShortestRoutes(pair[0], pair[1], K_ROUTES);
+            };
+        } else if (benchmark.equals("distancesFrom")) {
+            return invocation -> routeFinder.distancesFrom(pairs.get(invocation % PAIRS)[0]);
+        } else if (benchmark.equals("calculatePath")) {
+            // Find the longest of the shortest paths and measure adding it up
+            String[] longest = null;
+            int longestSize = -1;
+            for (String[] pair : pairs) {
+                routeFinder.findRoute("dijkstraSearch", pair[0], pair[1]);
+                if (routeFinder.getPath().size() > longestSize) {
+                    longestSize = routeFinder.getPath().size();
+                    longest = pair;
+                }
+            }
+            routeFinder.findRoute("dijkstraSearch", longest[0], longest[1]);
+            return invocation -> routeFinder.calculatePath();
+        } else if (benchmark.equals("createDistanceTable")) {
+            return invocation -> routeFinder.createDistanceTable();
+        } else if (benchmark.equals("distanceMatrix")) {
+            // A matrix of a large map takes too long and too much memory to measure many times
+            if (size > MATRIX_LIMIT || !DistanceMatrix.fits(graph)) {
+                return null;
+            }
+            return invocation -> DistanceMatrix.compute(graph);
+        } else if (benchmark.equals("routeBatch")) {
+            RouteBatch batch = new RouteBatch(routeFinder);
+            return invocation -> batch.findRoutes(pairs, "dijkstraSearch");
+        }
+
+        throw new IllegalArgumentException("There is no benchmark called " + benchmark);
+    }
+
+    /**
+     * The method for loading a map into a new RouteFinder
+     * @param map - The map file
+     * @param offHeap - True to keep the graph outside of the heap
+     * @return - Return the RouteFinder
+     */
+    private static RouteFinder load(File map, boolean offHeap) {
+        RouteFinder routeFinder = new RouteFinder(map);
+        routeFinder.setOffHeap(offHeap);
+
+        // If the map could not be loaded the timing means nothing
+        if (routeFinder.readFile(map)) {
+            throw new IllegalStateException("The benchmark map could not be loaded: " + map);
+        }
+
+        return routeFinder;
+    }
+
+    /**
+     * The method for picking the random start and end villages the searches cycle through
+     */
+    private static List<String[]> pairs(VillageGraph graph, Random random) {
+        List<String[]> pairs = new ArrayList<>(PAIRS);
+
+        for (int i = 0; i < PAIRS; i++) {
+            pairs.add(new String[] { graph.getName(random.nextInt(graph.size())), graph.getName(random.nextInt(graph.size())) });
+        }
+
+        return pairs;
+    }
+
+    /**
+     * The method for running the warmup and measured iterations of a benchmark
+     * @return - Return the score of the measured iterations
+     */
+    private static Score measure(String shape, int size, String benchmark, Operation operation, Options options) {
+        int invocation = 0;
+
+        // Run the warmup iterations so the measured ones are not measuring the JIT
+        for (int i = 0; i < options.warmup; i++) {
+            invocation = iterate(operation, invocation, options.time, null);
+        }
+
+        long[] totals = new long[5];
+        double slowest = 0;
+        double fastest = Double.POSITIVE_INFINITY;
+
+        // Time each iteration on its own, counting the operations, time, bytes and collections
+        for (int i = 0; i < options.iterations; i++) {
+            long[] iteration = new long[5];
+            invocation = iterate(operation, invocation, options.time, iteration);
+            for (int j = 0; j < totals.length; j++) {
+                totals[j] += iteration[j];
+            }
+
+            double latency = (double) iteration[1] / iteration[0];
+            slowest = Math.max(slowest, latency);
+            fastest = Math.min(fastest, latency);
+        }
+
+        return new Score(shape, size, benchmark, totals[0], totals[1], totals[2], totals[3], totals[4], fastest, slowest);
+    }
+
+    /**
+     * The method for running a benchmark over and over for a given time, at least once
+     * @param counts - The array to add the operations, nanoseconds, bytes allocated, collections
+     *               and collection milliseconds to, or null for a warmup iteration
+     * @return - Return the number of the next call
+     */
+    private static int iterate(Operation operation, int invocation, long millis, long[] counts) {
+        long bytes = allocatedBytes();
+        long[] gc = collections();
+        long start = System.nanoTime();
+        long end = start + millis * 1_000_000;
+        long operations = 0;
+        long now;
+
+        do {
+            sink ^= System.identityHashCode(operation.run(invocation));
+            invocation += 1;
+            operations += 1;
+            now = System.nanoTime();
+        } while (now < end);
+
+        if (counts != null) {
+            long[] gcAfter = collections();
+            counts[0] += operations;
+            counts[1] += now - start;
+            counts[2] += bytes < 0 ? 0 : allocatedBytes() - bytes;
+            counts[3] += gcAfter[0] - gc[0];
+            counts[4] += gcAfter[1] - gc[1];
+        }
+
+        return invocation;
+    }
+
+    /**
+     * The method for adding up the bytes every live thread has allocated, which includes the
+     * threads of the fork join pool the parallel benchmarks run on
+     * @return - Return the bytes, or -1 if the JVM does not count them
+     */
+    private static long allocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+        // If the JVM cannot count the bytes of a thread
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+            return -1;
+        }
+
+        long total = 0;
+        for (long bytes : ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(threads.getAllThreadIds())) {
+            total += Math.max(0, bytes);
+        }
+
+        return total;
+    }
+
+    /**
+     * The method for adding up the garbage collections so far and the milliseconds they took
+     */
+    private static long[] collections() {
+        long[] total = new long[2];
+
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total[0] += Math.max(0, collector.getCollectionCount());
+            total[1] += Math.max(0, collector.getCollectionTime());
+        }
+
+        return total;
+    }
+
+    /**
+     * The method for writing a map of a given shape to a temporary file with the MapGenerator,
+     * with the positions of the villages next to it for the shapes that have them
+     * @param shape - The shape of the map, one of MapGenerator.SHAPES
+     * @param villages - The number of villages
+     * @return - Return the temporary file holding the map
+     */
+    private static File writeMap(String shape, int villages) throws IOException {
+        File map = File.createTempFile("village-map-" + shape + "-" + villages + "-", ".txt");
+        new MapGenerator(shape, villages, villages).write(map, true);
+        return map;
+    }
+
+    /**
+     * The method for deleting a map and every file that was made next to it
+     */
+    private static void deleteMap(File map) {
+        MapSnapshot.snapshotFile(map).delete();
+        StraightLineHeuristic.coordinatesFile(map).delete();
+        new File(map.getPath() + ContractionHierarchy.EXTENSION).delete();
+        map.delete();
+    }
+
+    /**
+     * The method for writing the scores to a CSV file
+     */
+    private static void writeCsv(File csv, List<Score> scores) throws IOException {
+        try (PrintWriter out = new PrintWriter(csv, "UTF-8")) {
+            out.println("shape,villages,benchmark,ops_per_s,ms_per_op,alloc_mb_per_s,alloc_bytes_per_op,gc_count,gc_ms");
+            for (Score score : scores) {
+                out.println(score.toCsv());
+            }
+        }
+    }
+
+    /**
+     * The method for comparing the scores against the ones of an earlier run
+     * @param baseline - The CSV file of the earlier run
+     * @param scores - The scores of this run
+     * @param threshold - The most percent a benchmark may get slower by
+     * @return - Return true if no benchmark got slower by more than the threshold
+     */
+    private static boolean compare(File baseline, List<Score> scores, double threshold) throws IOException {
+        Map<String, Double> before = new HashMap<>();
+
+        try (BufferedReader in = Files.newBufferedReader(baseline.toPath(), StandardCharsets.UTF_8)) {
+            // Skip the header and keep the time of every benchmark
+            String line = in.readLine();
+            while ((line = in.readLine()) != null) {
+                String[] values = line.split(",");
+                before.put(values[0] + "," + values[1] + "," + values[2], Double.parseDouble(values[4]));
+            }
+        }
+
+        boolean passed = true;
+        System.out.printf("%nCompared against %s (slower by more than %.0f%% fails):%n", baseline, threshold);
+        for (Score score : scores) {
+            Double old = before.get(score.shape + "," + score.size + "," + score.benchmark);
+
+            // If the benchmark was not run before there is nothing to compare
+            if (old == null) {
+                continue;
+            }
+
+            double change = (score.latency() / old - 1) * 100;
+            boolean regressed = change > threshold;
+            passed &= !regressed;
+            System.out.printf("%-9s %9d  %-32s %+8.1f%%%s%n", score.shape, score.size, score.benchmark, change,
+                    regressed ? "  REGRESSION" : "");
+        }
+
+        return passed;
+    }
+
+    /**
+     * The Score class that holds the measured iterations of one benchmark on one map
+     */
+    private static class Score {
+
+        private final String shape;
+        private final int size;
+        private final String benchmark;
+        private final long operations;
+        private final long nanos;
+        private final long bytes;
+        private final long gcCount;
+        private final long gcMillis;
+        private final double fastest;
+        private final double slowest;
+
+        /**
+         * The Score constructor that keeps the totals of the measured iterations
+         */
+        Score(String shape, int size, String benchmark, long operations, long nanos, long bytes, long gcCount,
+              long gcMillis, double fastest, double slowest) {
+            this.shape = shape;
+            this.size = size;
+            this.benchmark = benchmark;
+            this.operations = operations;
+            this.nanos = nanos;
+            this.bytes = bytes;
+            this.gcCount = gcCount;
+            this.gcMillis = gcMillis;
+            this.fastest = fastest;
+            this.slowest = slowest;
+        }
+
+        /**
+         * The method for working out the average milliseconds of one operation
+         */
+        double latency() {
+            return nanos / 1e6 / operations;
+        }
+
+        double throughput() {
+            return operations / (nanos / 1e9);
+        }
+
+        double allocationRate() {
+            return bytes / 1e6 / (nanos / 1e9);
+        }
+
+        double bytesPerOperation() {
+            return (double) bytes / operations;
+        }
+
+        /**
+         * The method for writing the score as a line of the table, with the spread of the
+         * iterations after the average time
+         */
+        @Override
+        public String toString() {
+            return String.format("%-9s %9d  %-32s %12.1f %12.4f %10.1f %12.0f %6d %8d   (%.4f to %.4f ms/op)",
+                    shape, size, benchmark, throughput(), latency(), allocationRate(), bytesPerOperation(),
+                    gcCount, gcMillis, fastest / 1e6, slowest / 1e6);
+        }
+
+        /**
+         * The method for writing the score as a line of a CSV file
+         */
+        String toCsv() {
+            return String.format(Locale.ROOT, "%s,%d,%s,%.3f,%.6f,%.3f,%.1f,%d,%d", shape, size, benchmark,
+                    throughput(), latency(), allocationRate(), bytesPerOperation(), gcCount, gcMillis);
+        }
+    }
+
+    /**
+     * The Options class that reads the command line
+     */
+    private static class Options {
+
+        private List<Integer> sizes = Arrays.asList(1_000, 10_000, 100_000);
+        private List<String> shapes = DEFAULT_SHAPES;
+        private List<String> benchmarks = BENCHMARKS;
+        private int warmup = 2;
+        private int iterations = 5;
+        private long time = 1_000;
+        private File csv;
+        private File baseline;
+        private double threshold = 10;
+
+        /**
+         * The Options constructor that reads every option and its value
+         */
+        Options(String[] args) {
+            for (int i = 0; i + 1 < args.length; i += 2) {
+                String value = args[i + 1];
+
+                if (args[i].equals("-sizes")) {
+                    sizes = new ArrayList<>();
+                    for (String size : value.split(",")) {
+                        sizes.add(Integer.parseInt(size.trim()));
+                    }
+                } else if (args[i].equals("-shapes")) {
+                    shapes = checked(value, MapGenerator.SHAPES, "shape");
+                } else if (args[i].equals("-benchmarks")) {
+                    benchmarks = checked(value, BENCHMARKS, "benchmark");
+                } else if (args[i].equals("-warmup")) {
+                    warmup = Integer.parseInt(value);
+                } else if (args[i].equals("-iterations")) {
+                    iterations = Math.max(1, Integer.parseInt(value));
+                } else if (args[i].equals("-time")) {
+                    time = Long.parseLong(value);
+                } else if (args[i].equals("-csv")) {
+                    csv = new File(value);
+                } else if (args[i].equals("-baseline")) {
+                    baseline = new File(value);
+                } else if (args[i].equals("-threshold")) {
+                    threshold = Double.parseDouble(value);
+                } else {
+                    throw new IllegalArgumentException("There is no option called " + args[i]);
+                }
+            }
+        }
+
+        /**
+         * The method for splitting a list of names and checking every one of them
+         */
+        private static List<String> checked(String value, List<String> known, String kind) {
+            List<String> names = Arrays.asList(value.split(","));
+
+            for (String name : names) {
+                if (!known.contains(name)) {
+                    throw new IllegalArgumentException("There is no " + kind + " called " + name + ", only " + known);
+                }
+            }
+
+            return names;
+        }
+    }
+}
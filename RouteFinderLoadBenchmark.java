@@ -0,0 +1,120 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * The RouteFinderLoadBenchmark class that measures how long the RouteFinder takes to load village
+ * maps of 10 thousand, 100 thousand and 1 million routes, both from the text and from the compiled
+ * snapshot. The maps are written to temporary files before they are timed and are deleted again
+ * afterwards.
+ */
+public class RouteFinderLoadBenchmark {
+
+    private static final int[] EDGE_COUNTS = { 10_000, 100_000, 1_000_000 };
+    private static final int WARMUP_ROUNDS = 2;
+    private static final int MEASURED_ROUNDS = 5;
+
+    /**
+     * Run the benchmark for every map size and print the results
+     */
+    public static void main(String[] args) throws IOException {
+        for (int edges : EDGE_COUNTS) {
+            // Create the map that will be loaded
+            File map = writeMap(edges, new Random(edges));
+            File snapshot = MapSnapshot.snapshotFile(map);
+
+            try {
+                // Time parsing the text map, removing the snapshot before every round
+                report(edges, "text", map, true);
+
+                // Time loading the snapshot the last round left behind
+                report(edges, "snapshot", map, false);
+            } finally {
+                map.delete();
+                snapshot.delete();
+            }
+        }
+    }
+
+    /**
+     * The method for timing the loads of one map and printing the result
+     * @param edges - The number of routes in the map
+     * @param label - The name of the way the map is loaded
+     * @param map - The file to load
+     * @param fromText - Whether the snapshot is removed before every load
+     */
+    private static void report(int edges, String label, File map, boolean fromText) {
+        // Load the map a few times first so the timed rounds are not measuring the JIT
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            load(map, fromText);
+        }
+
+        long best = Long.MAX_VALUE;
+        long total = 0;
+
+        // Time each round on its own
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            long time = load(map, fromText);
+            best = Math.min(best, time);
+            total += time;
+        }
+
+        System.out.printf("%,10d routes from %-8s: best %,8.1f ms, average %,8.1f ms%n",
+                edges, label, best / 1e6, total / 1e6 / MEASURED_ROUNDS);
+    }
+
+    /**
+     * The method for loading the map once
+     * @param map - The file to load
+     * @param fromText - Whether the snapshot is removed first
+     * @return - Return the number of nanoseconds the load took
+     */
+    private static long load(File map, boolean fromText) {
+        // Remove the snapshot so the text has to be parsed
+        if (fromText) {
+            MapSnapshot.snapshotFile(map).delete();
+        }
+
+        long start = System.nanoTime();
+        RouteFinder routeFinder = new RouteFinder(map);
+
+        // If the map could not be loaded the timing means nothing
+        if (routeFinder.readFile(map)) {
+            throw new IllegalStateException("The benchmark map could not be loaded: " + map);
+        }
+
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * The method for writing a random connected map with the given number of routes. Every village
+     * after the first is joined to an earlier one so the map is connected, and the rest of the
+     * routes are spread randomly over the villages
+     * @param edges - The number of routes in the map
+     * @param random - The source of the random villages and distances
+     * @return - Return the temporary file holding the map
+     */
+    private static File writeMap(int edges, Random random) throws IOException {
+        int villages = Math.max(2, edges / 4);
+        File map = File.createTempFile("village-map-" + edges + "-", ".txt");
+
+        try (BufferedWriter out = new BufferedWriter(new FileWriter(map))) {
+            // Write the number of villages
+            out.write(Integer.toString(villages));
+            out.newLine();
+
+            for (int i = 0; i < edges; i++) {
+                // Connect every village to an earlier one first, then pick random pairs
+                int first = i < villages - 1 ? i + 1 : random.nextInt(villages);
+                int second = i < villages - 1 ? random.nextInt(i + 1) : random.nextInt(villages);
+
+                out.write("V" + first + "\tV" + second + "\t" + (1 + random.nextInt(100)));
+                out.newLine();
+            }
+        }
+
+        return map;
+    }
+}
@@ -4,9 +4,10 @@ import java.awt.event.ActionListener;
 import java.io.File;
 import java.util.Arrays;
 import java.util.List;
-import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
 
 import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
 
 /**
  * @author Rachel Feddersen
@@ -17,19 +18,40 @@ import javax.swing.*;
  */
 
 public class RouteFinderWindow extends JFrame {
+    private static final long SEARCH_BUDGET_MILLIS = 5 * 60 * 1000;
+    private static final int TEXT_VILLAGES = 100;
+
     private File file;
     private RouteFinder routeFinder;
+    private SearchWorker searchWorker;
+    private MapVersions mapVersions = new MapVersions();
+    private boolean searching;
+    private int depthLimit = DeepeningSearch.AUTO_DEPTH_LIMIT;
     private String searchType;
     private JTextArea searchResults;
-    private TreeMap<String,TreeMap<String,Double>> mappedRoute = new TreeMap<>();
     private String startVillage;
     private String endVillage;
     private JMenuItem fileMenuItem;
     private JMenuItem exitMenuItem;
     private JMenuItem depthFirstSearch;
     private JMenuItem breadthFirstSearch;
+    private JMenuItem dijkstraSearch;
+    private JMenuItem aStarSearch;
+    private JMenuItem hierarchySearch;
+    private JMenuItem bidirectionalBreadthFirstSearch;
+    private JMenuItem bidirectionalDijkstraSearch;
+    private JMenuItem depthLimitedSearch;
+    private JMenuItem iterativeDeepeningSearch;
+    private JMenuItem idaStarSearch;
+    private JMenuItem parallelBreadthFirstSearch;
+    private JMenuItem depthLimitItem;
     private JMenuItem findPath;
+    private JMenuItem stopSearch;
     private JMenuItem allDistances;
+    private RouteCache routeCache = new RouteCache(RouteCache.DEFAULT_CAPACITY);
+    private TraceRecorder traceRecorder = new TraceRecorder();
+    private TraceListModel traceModel = new TraceListModel(traceRecorder);
+    private RouteMetrics routeMetrics = new RouteMetrics();
 
     /**
      * Create a new RouteFinderWindow by calling the constructor in the RouteFinderWindow class
@@ -67,9 +89,8 @@ public class RouteFinderWindow extends JFrame {
 
         // Set the menu options to be disabled
         findPath.setEnabled(false);
-        depthFirstSearch.setEnabled(false);
-        breadthFirstSearch.setEnabled(false);
-        allDistances.setEnabled(false);
+        stopSearch.setEnabled(false);
+        setMapOptions(false);
 
         // Create the text area that will be in the JOptionPane
         searchResults = new JTextArea();
@@ -80,11 +101,30 @@ public class RouteFinderWindow extends JFrame {
         // Create the JScrollPane and the JPanel for holding the JTextArea and making it more user friendly
         JScrollPane scroll = new JScrollPane(searchResults);
         scroll.setVerticalScrollBarPolicy(JScrollPane.VERTICAL_SCROLLBAR_ALWAYS);
-        scroll.setPreferredSize(new Dimension(600, 600));
+        scroll.setPreferredSize(new Dimension(600, 360));
+
+        // Create the JList for the trace of the search. Every row has the height of the prototype,
+        // so the JList only asks the model for the rows that can be seen
+        JList<String> traceList = new JList<>(traceModel);
+        traceList.setPrototypeCellValue("#0000000000 enqueue WWWWWWWWWWWW from WWWWWWWWWWWW");
+        JScrollPane traceScroll = new JScrollPane(traceList);
+        traceScroll.setVerticalScrollBarPolicy(JScrollPane.VERTICAL_SCROLLBAR_ALWAYS);
+        traceScroll.setPreferredSize(new Dimension(600, 240));
+
+        // Put the results above the trace so the line between them can be moved
+        JSplitPane split = new JSplitPane(JSplitPane.VERTICAL_SPLIT, scroll, traceScroll);
         JPanel container = new JPanel();
-        container.add(scroll);
+        container.add(split);
         add(container);
 
+        // Show what the searches and loads cost to JMX tools like JConsole. The window still works
+        // if the metrics cannot be registered
+        try {
+            routeMetrics.register("window");
+        } catch (javax.management.JMException ex) {
+            ex.printStackTrace();
+        }
+
         // Show the window
         pack();
         setVisible(true);
@@ -122,16 +162,19 @@ public class RouteFinderWindow extends JFrame {
 
         // Create the menu items
         findPath = new JMenuItem("Find Path");
+        stopSearch = new JMenuItem("Stop Search");
         exitMenuItem = new JMenuItem("Exit");
 
         // Add these menu items into fileMenu
         fileMenu.add(findPath);
+        fileMenu.add(stopSearch);
         fileMenu.addSeparator();
         fileMenu.add(exitMenuItem);
 
         // Hook up the menu items with the listener
         MyListener listener = new MyListener();
         findPath.addActionListener(listener);
+        stopSearch.addActionListener(listener);
         exitMenuItem.addActionListener(listener);
 
         return fileMenu;
@@ -169,15 +212,46 @@ public class RouteFinderWindow extends JFrame {
         // Create the menu items
         depthFirstSearch = new JMenuItem("Depth First Search");
         breadthFirstSearch = new JMenuItem("Breadth First Search");
+        dijkstraSearch = new JMenuItem("Dijkstra Search");
+        aStarSearch = new JMenuItem("A* Search");
+        hierarchySearch = new JMenuItem("Contraction Hierarchy Search");
+        bidirectionalBreadthFirstSearch = new JMenuItem("Bidirectional Breadth First Search");
+        bidirectionalDijkstraSearch = new JMenuItem("Bidirectional Dijkstra Search");
+        depthLimitedSearch = new JMenuItem("Depth Limited Search");
+        iterativeDeepeningSearch = new JMenuItem("Iterative Deepening Search");
+        idaStarSearch = new JMenuItem("IDA* Search");
+        parallelBreadthFirstSearch = new JMenuItem("Parallel Breadth First Search");
+        depthLimitItem = new JMenuItem("Set Depth Limit");
 
         // Add these menu items into searchMenu
         searchMenu.add(depthFirstSearch);
         searchMenu.add(breadthFirstSearch);
+        searchMenu.add(dijkstraSearch);
+        searchMenu.add(aStarSearch);
+        searchMenu.add(hierarchySearch);
+        searchMenu.add(bidirectionalBreadthFirstSearch);
+        searchMenu.add(bidirectionalDijkstraSearch);
+        searchMenu.add(depthLimitedSearch);
+        searchMenu.add(iterativeDeepeningSearch);
+        searchMenu.add(idaStarSearch);
+        searchMenu.add(parallelBreadthFirstSearch);
+        searchMenu.addSeparator();
+        searchMenu.add(depthLimitItem);
 
         // Hook up the menu items with the listener
         MyListener listener = new MyListener();
         depthFirstSearch.addActionListener(listener);
         breadthFirstSearch.addActionListener(listener);
+        dijkstraSearch.addActionListener(listener);
+        aStarSearch.addActionListener(listener);
+        hierarchySearch.addActionListener(listener);
+        bidirectionalBreadthFirstSearch.addActionListener(listener);
+        bidirectionalDijkstraSearch.addActionListener(listener);
+        depthLimitedSearch.addActionListener(listener);
+        iterativeDeepeningSearch.addActionListener(listener);
+        idaStarSearch.addActionListener(listener);
+        parallelBreadthFirstSearch.addActionListener(listener);
+        depthLimitItem.addActionListener(listener);
 
         return searchMenu;
     }
@@ -215,14 +289,13 @@ public class RouteFinderWindow extends JFrame {
          * corresponding action
          */
         public void actionPerformed(ActionEvent e){
-            boolean fileError = false;
             // If the user clicks on the exitMenuItem
             if (e.getSource() == exitMenuItem) {
                 // Call this method to create the end message dialog
                 createExitMessage();
                 // If the user clicks on the fileMenuItem
             } else if (e.getSource() == fileMenuItem) {
-                fileError = getFileInformation();
+                getFileInformation();
                 // If the user clicks on the depthFirstSearch
             } else if (e.getSource() == depthFirstSearch) {
                 // Call the pickVillages method for allowing the user to pick the start and end villages
@@ -235,56 +308,302 @@ public class RouteFinderWindow extends JFrame {
                 pickVillages();
                 // Set the search type to what the user picked
                 setSearchType("breadthFirstSearch");
+                // If the user clicks on the dijkstraSearch
+            } else if (e.getSource() == dijkstraSearch) {
+                // Call the pickVillages method for allowing the user to pick the start and end villages
+                pickVillages();
+                // Set the search type to what the user picked
+                setSearchType("dijkstraSearch");
+                // If the user clicks on the aStarSearch
+            } else if (e.getSource() == aStarSearch) {
+                // Call the pickVillages method for allowing the user to pick the start and end villages
+                pickVillages();
+                // Set the search type to what the user picked
+                setSearchType("aStarSearch");
+                // If the user clicks on the hierarchySearch
+            } else if (e.getSource() == hierarchySearch) {
+                // Call the pickVillages method for allowing the user to pick the start and end villages
+                pickVillages();
+                // Set the search type to what the user picked
+                setSearchType("hierarchySearch");
+                // If the user clicks on the bidirectionalBreadthFirstSearch
+            } else if (e.getSource() == bidirectionalBreadthFirstSearch) {
+                // Call the pickVillages method for allowing the user to pick the start and end villages
+                pickVillages();
+                // Set the search type to what the user picked
+                setSearchType("bidirectionalBreadthFirstSearch");
+                // If the user clicks on the bidirectionalDijkstraSearch
+            } else if (e.getSource() == bidirectionalDijkstraSearch) {
+                // Call the pickVillages method for allowing the user to pick the start and end villages
+                pickVillages();
+                // Set the search type to what the user picked
+                setSearchType("bidirectionalDijkstraSearch");
+                // If the user clicks on the depthLimitedSearch
+            } else if (e.getSource() == depthLimitedSearch) {
+                // Call the pickVillages method for allowing the user to pick the start and end villages
+                pickVillages();
+                // Set the search type to what the user picked
+                setSearchType("depthLimitedSearch");
+                // If the user clicks on the iterativeDeepeningSearch
+            } else if (e.getSource() == iterativeDeepeningSearch) {
+                // Call the pickVillages method for allowing the user to pick the start and end villages
+                pickVillages();
+                // Set the search type to what the user picked
+                setSearchType("iterativeDeepeningSearch");
+                // If the user clicks on the idaStarSearch
+            } else if (e.getSource() == idaStarSearch) {
+                // Call the pickVillages method for allowing the user to pick the start and end villages
+                pickVillages();
+                // Set the search type to what the user picked
+                setSearchType("idaStarSearch");
+                // If the user clicks on the parallelBreadthFirstSearch
+            } else if (e.getSource() == parallelBreadthFirstSearch) {
+                // Call the pickVillages method for allowing the user to pick the start and end villages
+                pickVillages();
+                // Set the search type to what the user picked
+                setSearchType("parallelBreadthFirstSearch");
+                // If the user clicks on the Set Depth Limit option
+            } else if (e.getSource() == depthLimitItem) {
+                // Ask for the most routes the searches that only remember their path may follow
+                chooseDepthLimit();
                 // If the user clicks on the All Distances option
             } else if (e.getSource() == allDistances) {
                 // Call this method for creating the table with the villages and distances
                 createTableDisplay();
             // If the user clicks on the findPath option
             } else if (e.getSource() == findPath) {
-                // Call the findThePath method to perform the search
+                // Call the findThePath method to start the search, which ends the search itself
+                // once it is done
                 findThePath();
-
-                // Call the endSearch method to reset some of the variables
-                endSearch();
+            // If the user clicks on the stopSearch option
+            } else if (e.getSource() == stopSearch) {
+                // Ask the running search to stop before its next step
+                if (searchWorker != null) {
+                    searchWorker.stop();
+                }
             }
 
             // Call method to enable options
-            setEnabledOptions(e, fileError);
+            setEnabledOptions(e);
         }
     }
 
     /**
-     * The method for getting the file that the user choose and calling methods to retrieve
-     * the files information
-     * @return - Return the file error
+     * The method for getting the file that the user choose and loading it on a LoadWorker. The map
+     * that is loaded already can still be searched while the new one is read
      */
-    public boolean getFileInformation() {
+    public void getFileInformation() {
         // Show a dialog to allow the user to choose files
         JFileChooser fc = new JFileChooser("./");  //set starting point
         int status = fc.showOpenDialog(null);
-        boolean fileError = false;
         // If the user actually chose a file
         if (status == JFileChooser.APPROVE_OPTION){
-            // Get the selected file
-            file = fc.getSelectedFile();
-
-            // Create a new routeFinder class and get the TreeMap
-            routeFinder = new RouteFinder(file);
-            fileError = routeFinder.readFile(file);
-
-            // If there was not an error with the file
-            if (!fileError) {
-                mappedRoute = routeFinder.getMappedRoute();
-            } else {
-                searchResults.setText("The file chosen does not contain the correct information. Please choose a new one.");
-                // Disable the options that might have been enabled
-                depthFirstSearch.setEnabled(false);
-                breadthFirstSearch.setEnabled(false);
-                allDistances.setEnabled(false);
+            // Keep a second map from being loaded until this one is done
+            fileMenuItem.setEnabled(false);
+            setTitle("Route Finder - loading " + fc.getSelectedFile().getName());
+            new LoadWorker(fc.getSelectedFile()).execute();
+        }
+    }
+
+    /**
+     * This is the private class for the SwingWorker that loads a map
+     * It reads the map into a RouteFinder of its own on a background thread and publishes the
+     * graph as the newest version of the map. Only then does the window move over to it, so a
+     * search that is running when the load ends finishes on the map it started on
+     */
+    private class LoadWorker extends SwingWorker<RouteFinder, Void> {
+        private final File chosen;
+
+        /**
+         * The constructor that keeps the file to load
+         */
+        LoadWorker(File chosen) {
+            this.chosen = chosen;
+        }
+
+        /**
+         * The method that reads the map on the background thread
+         * @return - Return the RouteFinder with the map, or null if the file was not a map
+         */
+        @Override
+        protected RouteFinder doInBackground() {
+            RouteFinder loaded = new RouteFinder(chosen);
+            loaded.setMetricsListener(routeMetrics);
+            if (loaded.readFile(chosen)) {
+                return null;
             }
+
+            // Publish the map, which the RouteFinder keeps pinned, along with every change made to it
+            loaded.setMapVersions(mapVersions);
+            return loaded;
         }
 
-        return fileError;
+        /**
+         * The method that moves the window over to the loaded map
+         */
+        @Override
+        protected void done() {
+            setTitle("Route Finder");
+            fileMenuItem.setEnabled(true);
+
+            RouteFinder loaded;
+            try {
+                loaded = get();
+            } catch (InterruptedException | ExecutionException e) {
+                loaded = null;
+            }
+
+            // If there was an error with the file, the map loaded before stays
+            if (loaded == null) {
+                String message = "The file chosen does not contain the correct information. Please choose a new one.";
+                if (searching) {
+                    JOptionPane.showMessageDialog(null, message);
+                } else {
+                    searchResults.setText(message);
+                }
+                if (routeFinder == null) {
+                    setMapOptions(false);
+                }
+                return;
+            }
+
+            // Let go of the map that was shown, which is freed once the search on it is done too
+            if (routeFinder != null) {
+                routeFinder.setMapVersions(null);
+            }
+            file = chosen;
+            routeFinder = loaded;
+
+            // The map is not the one the kept routes were found in, so forget them, and keep the
+            // routes up to date if the map is changed after it was loaded
+            routeCache.useMap(file);
+            routeFinder.setRouteCache(routeCache);
+
+            // A running search turns the options back on and tells about the new map once it is done.
+            // Otherwise the trace of the last search is about the old map, so it is let go of too
+            if (!searching) {
+                clearTrace();
+                showLoadedMap();
+            }
+        }
+    }
+
+    /**
+     * This is the private class for the model of the distance table
+     * It has a row for every pair of villages and reads the names and distances straight from the
+     * graph and the distance matrix, so no row is made until the table shows it
+     */
+    private static class DistanceTableModel extends AbstractTableModel {
+        private static final long serialVersionUID = 1L;
+        private final String[] columnNames = { "1st Village", "2nd Village", "Distance"};
+        private final VillageGraph graph;
+        private final DistanceMatrix matrix;
+        private final int[] rowStart;
+
+        /**
+         * The constructor that works out the first row of every village's pairs
+         */
+        DistanceTableModel(VillageGraph graph, DistanceMatrix matrix) {
+            this.graph = graph;
+            this.matrix = matrix;
+
+            // Every village is paired with the villages after it
+            int n = graph.size();
+            rowStart = new int[n + 1];
+            for (int i = 0; i < n; i++) {
+                rowStart[i + 1] = rowStart[i] + (n - 1 - i);
+            }
+        }
+
+        @Override
+        public int getRowCount() {
+            return rowStart[rowStart.length - 1];
+        }
+
+        @Override
+        public int getColumnCount() {
+            return columnNames.length;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return columnNames[column];
+        }
+
+        /**
+         * The method for finding the pair of villages of a row and the value of a column
+         */
+        @Override
+        public Object getValueAt(int row, int column) {
+            // Find the village whose pairs the row is in
+            int first = Arrays.binarySearch(rowStart, row);
+            if (first < 0) {
+                first = -first - 2;
+            }
+            // If villages with no pairs left start at the same row, take the last of them
+            while (rowStart[first + 1] <= row) {
+                first += 1;
+            }
+            int second = first + 1 + (row - rowStart[first]);
+
+            if (column == 0) {
+                return graph.getName(first);
+            } else if (column == 1) {
+                return graph.getName(second);
+            }
+
+            double distance = matrix.getDistance(first, second);
+            return distance == Double.POSITIVE_INFINITY ? "No route" : RouteFinder.formatDistance(distance);
+        }
+    }
+
+    /**
+     * This is the private class for the model of the trace list
+     * It reads the events straight from the TraceRecorder and only writes the ones the JList
+     * shows out as text, so a trace of any length costs the same to show
+     */
+    private static class TraceListModel extends AbstractListModel<String> {
+        private static final long serialVersionUID = 1L;
+        private final TraceRecorder recorder;
+        private VillageGraph graph;
+        private int size;
+
+        /**
+         * The constructor that reads the events of a recorder
+         */
+        TraceListModel(TraceRecorder recorder) {
+            this.recorder = recorder;
+        }
+
+        /**
+         * The method for showing the events the recorder has now. Once the ring is full the
+         * events all move up, so every row is redrawn
+         * @param g - The graph the search runs on
+         */
+        void update(VillageGraph g) {
+            int oldSize = size;
+            graph = g;
+            size = recorder.size();
+
+            if (size < oldSize) {
+                fireIntervalRemoved(this, size, oldSize - 1);
+            } else if (size > oldSize) {
+                fireIntervalAdded(this, oldSize, size - 1);
+            }
+            if (Math.min(size, oldSize) > 0) {
+                fireContentsChanged(this, 0, Math.min(size, oldSize) - 1);
+            }
+        }
+
+        @Override
+        public int getSize() {
+            return size;
+        }
+
+        @Override
+        public String getElementAt(int index) {
+            return recorder.format(index, graph);
+        }
     }
 
     /**
@@ -356,17 +675,21 @@ public class RouteFinderWindow extends JFrame {
     }
 
     /**
-     * The method for creating the JTable with the village and distance information
+     * The method for creating the JTable with the shortest distance between every pair of villages
      */
     public void createTableDisplay() {
-        // Create the variables for the JTable rows and columns
-        Object columnData[] = { "1st Village", "2nd Village", "Distance"};
-        Object[][] rowData = routeFinder.createDistanceTable();
+        // If the map has too many villages to hold the distance between every pair of them
+        if (!DistanceMatrix.fits(routeFinder.getGraph())) {
+            JOptionPane.showMessageDialog(null,
+                    "This map has too many villages to show the distance between every pair of them.");
+            return;
+        }
 
-        // Create the table and set table's features
-        JTable table = new JTable(rowData, columnData);
+        // Create the table straight on top of the distance matrix and set table's features
+        JTable table = new JTable(new DistanceTableModel(routeFinder.getGraph(), routeFinder.getDistanceMatrix()));
         table.setEnabled(false);
-        table.setPreferredScrollableViewportSize(table.getPreferredSize());
+        table.setPreferredScrollableViewportSize(new Dimension(table.getPreferredSize().width,
+                Math.min(table.getPreferredSize().height, 400)));
         table.setFillsViewportHeight(true);
 
         // Open table in message dialog
@@ -374,80 +697,227 @@ public class RouteFinderWindow extends JFrame {
     }
 
     /**
-     * The method that calls the methods for performing the breadthFirst and depthFirst search
+     * The method that starts the breadthFirst, depthFirst, dijkstra, aStar, hierarchy or
+     * bidirectional search picked by the user. The search runs on a SwingWorker so the window
+     * stays responsive and the search can be stopped from the File Menu
      */
     public void findThePath() {
         resetSearch();
 
-        // Call this method for starting the search
-        routeFinder.startSearch(startVillage);
+        // If the same search was done before on this map, show the route that was kept
+        RouteBatch.Route cached = routeCache.get(getSearchType(), startVillage, endVillage);
+        if (cached != null) {
+            searchResults.append(toText(cached));
+            endSearch();
+            return;
+        }
+
+        // Keep the options still until the search is done. A map loaded in the meantime waits for
+        // the search, which keeps the version of the map it started on
+        setSearching(true);
+        searchWorker = new SearchWorker(getSearchType(), startVillage, endVillage);
+        searchWorker.execute();
+    }
 
-        // Append the results to the string
-        searchResults.append(toText());
-        // If the user choose a depthFirstSearch
-        if (getSearchType().equals("depthFirstSearch")) {
-            do {
-                // Call depthFirstSearch method and append results
-                routeFinder.depthFirstSearch(mappedRoute, startVillage, endVillage);
-                searchResults.append(toText());
-                // Do while the end village has not been found and not all of the nodes have been explored
-            } while (!routeFinder.solved() && routeFinder.getExplored().size() != routeFinder.getNumberOfNodes());
-            // If the user choose a breadthFirstSearch
-        } else if (getSearchType().equals("breadthFirstSearch")) {
-            do {
-                // Call breadthFirstSearch method and append results
-                routeFinder.breadthFirstSearch(mappedRoute, startVillage, endVillage);
-                searchResults.append(toText());
-                // Do while the end village has not been found and not all of the nodes have been explored
-            } while (!routeFinder.solved() && routeFinder.getExplored().size() != routeFinder.getNumberOfNodes());
+    /**
+     * The method for asking the user for the depth limit of the Depth Limited, Iterative Deepening
+     * and IDA* searches. Left empty, the limit follows the number of villages of the map
+     */
+    private void chooseDepthLimit() {
+        String current = depthLimit == DeepeningSearch.AUTO_DEPTH_LIMIT ? "" : String.valueOf(depthLimit);
+        String answer = JOptionPane.showInputDialog(this, "The most routes a Depth Limited, Iterative Deepening "
+                + "or IDA* path may have.\nLeave it empty to use the number of villages in the map.", current);
+
+        // If the dialog was closed without an answer, keep the limit
+        if (answer == null) {
+            return;
         }
 
-        // If all of the nodes have been explored but no path was found
-        if (routeFinder.getExplored().size() == routeFinder.getNumberOfNodes() && !routeFinder.solved()) {
-            searchResults.append("No path can be found between the villages.");
+        try {
+            int limit = answer.trim().isEmpty() ? DeepeningSearch.AUTO_DEPTH_LIMIT : Integer.parseInt(answer.trim());
+            if (limit < 0 && limit != DeepeningSearch.AUTO_DEPTH_LIMIT) {
+                throw new NumberFormatException();
+            }
+            depthLimit = limit;
+            // If the answer is not a number of routes
+        } catch (NumberFormatException e) {
+            JOptionPane.showMessageDialog(this, "The depth limit must be a whole number of routes, 0 or more.");
         }
     }
 
+    /**
+     * The method for turning the options off while a search is running and back on after
+     * @param searching - True if a search is starting, false if it is done
+     */
+    private void setSearching(boolean searching) {
+        this.searching = searching;
+        stopSearch.setEnabled(searching);
+        findPath.setEnabled(false);
+        setMapOptions(!searching);
+    }
+
+    /**
+     * This is the private class for the SwingWorker that runs a search
+     * It runs the search through the SearchEngine on a background thread, with the TraceRecorder
+     * of the window as the trace of its RouteFinder. No text is made while the search runs: the
+     * trace list is only told how many events there are when the progress is shown in the title
+     * of the window, and the JTextArea gets the result once the search is done. The worker pins
+     * the version of the map the window shows when it starts and searches it with a RouteFinder
+     * of its own built on the pinned graph, so neither a map loaded nor a change made to the map
+     * while it runs changes the search
+     */
+    private class SearchWorker extends SwingWorker<SearchEngine.Result, Void> implements SearchEngine.SearchListener {
+        private final String type;
+        private final String start;
+        private final String end;
+        private final CancellationToken token = new CancellationToken(SEARCH_BUDGET_MILLIS);
+        private final MapVersions.Pin pin = routeFinder.getMapVersion().pin();
+        private RouteFinder finder;
+        private SearchEngine engine;
+
+        /**
+         * The constructor that keeps the search to run and builds the RouteFinder for it
+         */
+        SearchWorker(String type, String start, String end) {
+            this.type = type;
+            this.start = start;
+            this.end = end;
+
+            finder = new RouteFinder(pin.getVersion());
+            finder.setMetricsListener(routeMetrics);
+            finder.setDepthLimit(depthLimit);
+            engine = new SearchEngine(finder);
+        }
+
+        /**
+         * The method that runs the search on the background thread
+         */
+        @Override
+        protected SearchEngine.Result doInBackground() {
+            traceRecorder.clear();
+            finder.setTrace(traceRecorder);
+
+            try {
+                return engine.run(type, start, end, token, this);
+            } finally {
+                finder.setTrace(null);
+            }
+        }
+
+        /**
+         * The method for asking the search to stop
+         */
+        void stop() {
+            token.cancel();
+        }
+
+        /**
+         * The method that shows the progress of the search in the title of the window and the
+         * events recorded so far in the trace list
+         */
+        @Override
+        public void progress(SearchEngine.Progress progress) {
+            if (!progress.isFinished()) {
+                VillageGraph graph = finder.getGraph();
+                SwingUtilities.invokeLater(() -> {
+                    setTitle("Route Finder - searching: " + progress);
+                    traceModel.update(graph);
+                });
+            }
+        }
+
+        /**
+         * The method that shows how the search ended, once it is done
+         */
+        @Override
+        protected void done() {
+            setTitle("Route Finder");
+            traceModel.update(finder.getGraph());
+            boolean replaced = pin.getVersion() != routeFinder.getMapVersion();
+
+            try {
+                SearchEngine.Result result = get();
+                searchResults.append(toText(finder));
+
+                // If the search was stopped before it was done
+                if (result.getStatus() == SearchEngine.Status.CANCELLED) {
+                    searchResults.append("The search was stopped before it was done.");
+                } else if (result.getStatus() == SearchEngine.Status.TIMED_OUT) {
+                    searchResults.append("The search was stopped after running for "
+                            + SEARCH_BUDGET_MILLIS / 1000 + " seconds.");
+                } else {
+                    // If the search ran out of villages to explore but no path was found
+                    if (result.getStatus() == SearchEngine.Status.NO_PATH) {
+                        searchResults.append("No path can be found between the villages.");
+
+                        // If the villages were known to be apart, nothing had to be explored
+                        if (!finder.reachable(start, end)) {
+                            searchResults.append(" They are in different parts of the map.");
+                        } else if (finder.isDepthLimitReached()) {
+                            searchResults.append(" No path within the depth limit of "
+                                    + finder.getDepthLimit() + " routes joins them.");
+                        }
+                    }
+
+                    // Keep the route so the same search does not have to be done again, unless it
+                    // was found on a map that was replaced while it ran
+                    if (!replaced) {
+                        routeCache.put(type, result.getRoute());
+                    }
+                }
+                searchResults.append("\n\nThe list below shows the " + traceRecorder + ".");
+                // If the search itself failed
+            } catch (InterruptedException | ExecutionException e) {
+                searchResults.append("The search could not be finished: " + e.getCause());
+            }
+
+            // Let go of the map the search ran on, which is freed now if a new one was loaded or the
+            // map was changed, along with the trace that names its villages
+            pin.close();
+            engine.shutdown();
+            engine = null;
+            finder = null;
+            searchWorker = null;
+            if (replaced) {
+                clearTrace();
+            }
+
+            setSearching(false);
+            endSearch();
+            if (replaced) {
+                searchResults.append("\n\nThe map was changed or a new map with " + routeFinder.getNumberOfNodes()
+                        + " villages in " + routeFinder.getGraph().getComponents() + " was loaded while the search ran.");
+            }
+        }
+    }
+
+    /**
+     * The method for emptying the trace list, so it no longer holds on to the graph of a map that
+     * is not shown any more
+     */
+    private void clearTrace() {
+        traceRecorder.clear();
+        traceModel.update(null);
+    }
+
     /**
      * The method for resetting some of the variables after a search has been performed
      */
     public void endSearch() {
-        // When the end village has been found, disable most of the options and set the
-        // file equal to null so the user will have to choose a new one
-        depthFirstSearch.setEnabled(false);
-        breadthFirstSearch.setEnabled(false);
-        allDistances.setEnabled(false);
+        // When the search is done the map stays loaded, so only the findPath option is disabled
+        // until a new type of search is chosen
         findPath.setEnabled(false);
-        file = null;
 
-        searchResults.append("\n\nPlease choose a new map to do another search.");
+        searchResults.append("\n\nPlease choose another type of search, or load a new map.");
     }
 
     /**
      * The method that re-enables the options the user has to pick from on the menu bar
      * @param e - The ActionEvent variable that can be used to determine what action just occured
      */
-    public void setEnabledOptions(ActionEvent e, boolean fileError) {
-        // If a file has been chosen and a search of distance option has not been chosen
-        if (file != null && e.getSource() != depthFirstSearch && e.getSource() != breadthFirstSearch
-            && e.getSource() != allDistances && !fileError) {
-            // Enable the search and distance options but keep the findPath option disabled
-            depthFirstSearch.setEnabled(true);
-            breadthFirstSearch.setEnabled(true);
-            allDistances.setEnabled(true);
-            findPath.setEnabled(false);
-
-            // Reset the JTextArea to blank
-            resetSearch();
-
-            // Set the JTextArea with a new message
-            searchResults.setText(setMainMessage());
-            searchResults.append("Please choose a type of search from the Search Types Menu\n" +
-                    "or click on the distance menu to see a table of all distances.");
+    public void setEnabledOptions(ActionEvent e) {
         // If a file has been chosen and a search type has been chosen
-        } else if (file != null
-        && (e.getSource() == depthFirstSearch || e.getSource() == breadthFirstSearch)
-        && !routeFinder.solved()) {
+        if (file != null && isSearchOption(e.getSource())) {
             // Enable the findPath option
             findPath.setEnabled(true);
 
@@ -460,6 +930,57 @@ public class RouteFinderWindow extends JFrame {
         }
     }
 
+    /**
+     * The method that enables the search and distance options once a map is loaded, keeping the
+     * findPath option disabled, and tells about the map
+     */
+    private void showLoadedMap() {
+        setMapOptions(true);
+        findPath.setEnabled(false);
+
+        // Reset the JTextArea to blank
+        resetSearch();
+
+        // Set the JTextArea with a new message
+        searchResults.setText(setMainMessage());
+        searchResults.append("The map has " + routeFinder.getNumberOfNodes() + " villages in "
+                + routeFinder.getGraph().getComponents() + ".\n\n");
+        searchResults.append("Please choose a type of search from the Search Types Menu\n" +
+                "or click on the distance menu to see a table of all distances.");
+    }
+
+    /**
+     * The method for turning the search and distance options on or off
+     * @param enabled - True to turn them on
+     */
+    private void setMapOptions(boolean enabled) {
+        depthFirstSearch.setEnabled(enabled);
+        breadthFirstSearch.setEnabled(enabled);
+        dijkstraSearch.setEnabled(enabled);
+        aStarSearch.setEnabled(enabled);
+        hierarchySearch.setEnabled(enabled);
+        bidirectionalBreadthFirstSearch.setEnabled(enabled);
+        bidirectionalDijkstraSearch.setEnabled(enabled);
+        depthLimitedSearch.setEnabled(enabled);
+        iterativeDeepeningSearch.setEnabled(enabled);
+        idaStarSearch.setEnabled(enabled);
+        parallelBreadthFirstSearch.setEnabled(enabled);
+        allDistances.setEnabled(enabled);
+    }
+
+    /**
+     * The method for checking if a menu item is one of the search types
+     * @param source - The menu item that was clicked
+     * @return - Return true if it picks a search type
+     */
+    private boolean isSearchOption(Object source) {
+        return source == depthFirstSearch || source == breadthFirstSearch || source == dijkstraSearch
+                || source == aStarSearch || source == hierarchySearch
+                || source == bidirectionalBreadthFirstSearch || source == bidirectionalDijkstraSearch
+                || source == depthLimitedSearch || source == iterativeDeepeningSearch || source == idaStarSearch
+                || source == parallelBreadthFirstSearch;
+    }
+
     /**
      * The method for clearing the JTextArea
      */
@@ -490,7 +1011,7 @@ public class RouteFinderWindow extends JFrame {
     public String setMainMessage() {
         return "This is a program for performing search algorithms " +
                 "on a user-picked village map.\n\n" +
-                "There are two different kind of searches that can be performed:\n\n" +
+                "There are eleven different kind of searches that can be performed:\n\n" +
                 "1. Depth-First Search:\n\t" +
                 "This search expands the deepest node in " +
                 "the current frontier of the search tree.\n\t" +
@@ -503,6 +1024,50 @@ public class RouteFinderWindow extends JFrame {
                 "the goal node is the next to be explored on the frontier, the search is complete.\n\t" +
                 "If a node has already been explored and is in the frontier, it will be removed from\n\t" +
                 "the frontier such as to no be explored again.\n\n" +
+                "3. Dijkstra Search:\n\t" +
+                "This search explores the node in the frontier with the shortest distance from the\n\t" +
+                "root node, then lowers the distances of its successors that can be reached more\n\t" +
+                "cheaply through it. Once the goal node has been explored, the path found is the\n\t" +
+                "shortest one in the map.\n\n" +
+                "4. A* Search:\n\t" +
+                "This search works like the Dijkstra Search, but it explores the node whose distance\n\t" +
+                "from the root node plus the estimated distance left to the goal node is shortest.\n\t" +
+                "The estimate is the straight line distance when the map has a .coords file with\n\t" +
+                "the position of every village, and a bound from landmark villages otherwise.\n\n" +
+                "5. Contraction Hierarchy Search:\n\t" +
+                "The map is preprocessed once by contracting the nodes in order of importance and\n\t" +
+                "adding shortcuts for the shortest paths they were on. The search then only goes up\n\t" +
+                "the hierarchy from both the root node and the goal node until the two meet, and\n\t" +
+                "the shortcuts on the path are unpacked into the nodes they skip.\n\n" +
+                "6. Bidirectional Breadth-First Search:\n\t" +
+                "This search runs one Breadth-First Search from the root node and one from the goal\n\t" +
+                "node, always expanding the one with the smaller frontier. Once the two searches\n\t" +
+                "meet, the two halves are joined into the path with the fewest villages.\n\n" +
+                "7. Bidirectional Dijkstra Search:\n\t" +
+                "This search runs one Dijkstra Search from the root node and one from the goal node.\n\t" +
+                "It is complete once the closest nodes left in the two frontiers are together\n\t" +
+                "no closer than the shortest path found between the searches so far.\n\n" +
+                "8. Depth Limited Search:\n\t" +
+                "This search works like the Depth-First Search, but only remembers the path from the\n\t" +
+                "root node to the node it is expanding, and goes no deeper than the depth limit picked\n\t" +
+                "in the Search Types Menu, which is the number of villages unless it is changed.\n\t" +
+                "It skips the nodes it already reached as close to the root node, but can still take\n\t" +
+                "very long on large maps with many cycles.\n\n" +
+                "9. Iterative Deepening Search:\n\t" +
+                "This search runs the Depth Limited Search with a limit of one route, then two, and\n\t" +
+                "so on, so like the Breadth-First Search it finds the path with the fewest villages.\n\n" +
+                "10. IDA* Search:\n\t" +
+                "This search limits the distance so far plus the estimate of the distance left, and\n\t" +
+                "raises the limit every time, so like the A* Search it finds the shortest path while\n\t" +
+                "only remembering the path it is on.\n\n" +
+                "11. Parallel Breadth First Search:\n\t" +
+                "This search expands a whole level of the Breadth-First Search at once, spread over\n\t" +
+                "every core. Large levels are found by checking the unexplored nodes for a node of\n\t" +
+                "the level instead. It explores the nodes in the same order and finds the same path.\n\n" +
+                "A search that takes too long can be stopped with the Stop Search option under the\n" +
+                "File Menu. The list under the results shows the villages the search put in the\n" +
+                "frontier, took out of it and expanded, in order. What the searches and map loads\n" +
+                "cost is shown through JMX under RouteFinder, where JConsole can watch it.\n\n" +
                 "To exit the program, click the Exit option under the File Menu.\n\n";
     }
 
@@ -519,62 +1084,92 @@ public class RouteFinderWindow extends JFrame {
     }
 
     /**
-     * The toText method that sets up the frontier and explored Lists to be printed
+     * The toText method that sets up a route that was kept from an earlier search to be printed
+     * @param route - The route from the cache
+     * @return - Return the route in String form
+     */
+    public String toText(RouteBatch.Route route) {
+        String str;
+
+        // If the earlier search found no path
+        if (!route.isFound()) {
+            str = "No path can be found between the villages.";
+        } else {
+            // Create a string with the path and the calculated cost
+            str = "Current Node: " + endVillage +
+                    "\nPath Found: " + route.getPath() +
+                    "\nThe cost of the found path is: " + route.getCost();
+        }
+
+        return str + "\n\nThis result was kept from an earlier search (" + routeCache + ").";
+    }
+
+    /**
+     * The toText method that sets up the end of a search to be printed. The explored and frontier
+     * Lists are cut short after TEXT_VILLAGES villages, since every step of the search can be
+     * followed in the trace list instead
      * @return - Return the Lists in String form
      */
     public String toText() {
+        return toText(routeFinder);
+    }
 
-        String str = "";
+    /**
+     * The toText method for the end of a search in a given RouteFinder, such as one on a map that
+     * was replaced while the search ran
+     * @param finder - The RouteFinder the search ran in
+     * @return - Return the Lists in String form
+     */
+    private String toText(RouteFinder finder) {
+        StringBuilder str = new StringBuilder();
 
         // Get the current explored and frontier Lists
-        List<String> explored = routeFinder.getExplored();
-        List<String> frontier = routeFinder.getFrontier();
+        List<String> explored = finder.getExplored();
+        List<String> frontier = finder.getFrontier();
 
         // If the search has not been complete yet
-        if (!routeFinder.solved()) {
+        if (!finder.solved()) {
             // If the explored List has villages in it
             if (!explored.isEmpty()) {
-                str += "Current Node: " + explored.get(explored.size()-1) + "\n";
+                str.append("Current Node: ").append(explored.get(explored.size() - 1)).append("\n");
             }
 
-            boolean firstTime = true;
-            str += "Explored: [";
-
-            // For the number of villages in the explored List
-            for (String s : explored) {
-                if (!firstTime) {
-                    str += ", ";
-                }
-
-                str += s;
-                firstTime = false;
-            }
+            str.append("Explored: ");
+            appendVillages(str, explored);
+            str.append("\nFrontier: ");
+            appendVillages(str, frontier);
+            str.append("\n\n");
+        }
 
-            firstTime = true;
+        // If the search has been completed
+        if (finder.solved()) {
+            // Create a string with the path and the calculated cost
+            str.append("Current Node: ").append(endVillage)
+                    .append("\nPath Found: ").append(Arrays.toString(finder.getPath().toArray()))
+                    .append("\nThe cost of the found path is: ").append(finder.calculatePath());
+        }
 
-            str += "]\nFrontier: [";
+        return str.toString();
+    }
 
-            // For the number of villages in the frontier List
-            for (String s : frontier) {
-                if (!firstTime) {
-                    str += ", ";
-                }
+    /**
+     * The method for adding the first TEXT_VILLAGES villages of a List to the text, and how many
+     * more there are
+     */
+    private static void appendVillages(StringBuilder str, List<String> villages) {
+        str.append("[");
 
-                str += s;
-                firstTime = false;
+        // For the villages at the start of the List
+        for (int i = 0; i < villages.size() && i < TEXT_VILLAGES; i++) {
+            if (i > 0) {
+                str.append(", ");
             }
-
-            str += "]\n\n";
+            str.append(villages.get(i));
         }
 
-        // If the search has been completed
-        if (routeFinder.solved()) {
-            // Create a string with the path and the calculated cost
-            str += "Current Node: " + endVillage +
-                    "\nPath Found: " + Arrays.toString(routeFinder.getPath().toArray()) +
-                    "\nThe cost of the found path is: " + routeFinder.calculatePath();
+        if (villages.size() > TEXT_VILLAGES) {
+            str.append(", ... ").append(villages.size() - TEXT_VILLAGES).append(" more");
         }
-
-        return str;
+        str.append("]");
     }
 }
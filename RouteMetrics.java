@@ -0,0 +1,543 @@
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The RouteMetrics class that adds up what the searches and map loads of any number of
+ * RouteFinders cost, and shows the totals through JMX. A RouteFinder only measures a search or a
+ * load when it has a MetricsListener, so a RouteFinder without one does no work for the metrics
+ * apart from counting the routes it follows.
+ *
+ * The counters are LongAdders, which spread their updates over several cells when many threads
+ * add at once, so the threads of a RouteBatch never wait on each other to report. The times go
+ * into histograms with eight buckets for every power of two of nanoseconds, which keeps every
+ * percentile within an eighth of the real time without keeping the times themselves.
+ */
+public class RouteMetrics implements MetricsListener, RouteMetricsMXBean {
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private final LongAdder searches = new LongAdder();
+    private final LongAdder found = new LongAdder();
+    private final LongAdder expanded = new LongAdder();
+    private final LongAdder relaxed = new LongAdder();
+    private final LongAdder pathVillages = new LongAdder();
+    private final LongAdder allocated = new LongAdder();
+    private final AtomicLong peakFrontier = new AtomicLong();
+    private final Map<String, LongAdder> searchesByType = new ConcurrentHashMap<>();
+    private final Histogram searchTimes = new Histogram();
+    private final Histogram loadTimes = new Histogram();
+    private volatile Load lastLoad;
+    private ObjectName name;
+
+    /**
+     * The method for adding up a search that ended
+     * @param search - What the search cost
+     */
+    @Override
+    public void searchFinished(Search search) {
+        searches.increment();
+        searchesByType.computeIfAbsent(search.getSearchType(), type -> new LongAdder()).increment();
+        expanded.add(search.getExpanded());
+        relaxed.add(search.getRelaxed());
+        peakFrontier.accumulateAndGet(search.getPeakFrontier(), Math::max);
+        searchTimes.record(search.getElapsedNanos());
+        if (search.isFound()) {
+            found.increment();
+            pathVillages.add(search.getPathVillages());
+        }
+        if (search.getAllocatedBytes() > 0) {
+            allocated.add(search.getAllocatedBytes());
+        }
+    }
+
+    /**
+     * The method for adding up a map that was loaded
+     * @param load - What the load cost
+     */
+    @Override
+    public void mapLoaded(Load load) {
+        loadTimes.record(load.getElapsedNanos());
+        lastLoad = load;
+    }
+
+    /**
+     * The method for showing the metrics through the platform MBean server under the domain
+     * RouteFinder, so they can be watched from outside the program
+     * @param id - The name to show the metrics under, like window
+     * @return - Return the name the metrics were registered with
+     */
+    public synchronized ObjectName register(String id) throws JMException {
+        unregister();
+        name = new ObjectName("RouteFinder:type=RouteMetrics,name=" + ObjectName.quote(id));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+        return name;
+    }
+
+    /**
+     * The method for taking the metrics out of the platform MBean server again
+     */
+    public synchronized void unregister() throws JMException {
+        if (name != null) {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+            name = null;
+        }
+    }
+
+    /**
+     * The method for retrieving how many bytes the current thread has allocated so far, which a
+     * RouteFinder takes before and after a search or load
+     * @return - Return the number of bytes, or -1 if the JVM cannot measure them
+     */
+    static long allocatedBytes() {
+        if (THREADS instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) THREADS).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+
+        return -1;
+    }
+
+    @Override
+    public long getSearchCount() {
+        return searches.sum();
+    }
+
+    @Override
+    public long getFoundCount() {
+        return found.sum();
+    }
+
+    @Override
+    public Map<String, Long> getSearchCountByType() {
+        Map<String, Long> counts = new TreeMap<>();
+        searchesByType.forEach((type, count) -> counts.put(type, count.sum()));
+        return counts;
+    }
+
+    @Override
+    public long getNodesExpanded() {
+        return expanded.sum();
+    }
+
+    @Override
+    public long getEdgesRelaxed() {
+        return relaxed.sum();
+    }
+
+    @Override
+    public long getMaxPeakFrontier() {
+        return peakFrontier.get();
+    }
+
+    @Override
+    public double getMeanPathVillages() {
+        long paths = found.sum();
+        return paths == 0 ? 0 : (double) pathVillages.sum() / paths;
+    }
+
+    @Override
+    public long getAllocatedBytes() {
+        return allocated.sum();
+    }
+
+    @Override
+    public double getSearchTimeMeanMillis() {
+        return searchTimes.mean() / 1e6;
+    }
+
+    @Override
+    public double getSearchTimeMedianMillis() {
+        return searchTimes.percentile(0.5) / 1e6;
+    }
+
+    @Override
+    public double getSearchTime99thPercentileMillis() {
+        return searchTimes.percentile(0.99) / 1e6;
+    }
+
+    @Override
+    public double getSearchTimeMaxMillis() {
+        return searchTimes.max() / 1e6;
+    }
+
+    @Override
+    public long getLoadCount() {
+        return loadTimes.count();
+    }
+
+    @Override
+    public double getLoadTimeMedianMillis() {
+        return loadTimes.percentile(0.5) / 1e6;
+    }
+
+    @Override
+    public double getLoadTime99thPercentileMillis() {
+        return loadTimes.percentile(0.99) / 1e6;
+    }
+
+    @Override
+    public double getLastLoadMillis() {
+        Load load = lastLoad;
+        return load == null ? 0 : load.getElapsedNanos() / 1e6;
+    }
+
+    @Override
+    public double getLastLinesPerSecond() {
+        Load load = lastLoad;
+        return load == null ? 0 : load.getLinesPerSecond();
+    }
+
+    @Override
+    public long getLastEdgeCount() {
+        Load load = lastLoad;
+        return load == null ? 0 : load.getEdges();
+    }
+
+    @Override
+    public long getLastHeapBytes() {
+        Load load = lastLoad;
+        return load == null ? 0 : load.getHeapBytes();
+    }
+
+    @Override
+    public boolean isLastLoadFromSnapshot() {
+        Load load = lastLoad;
+        return load != null && load.isFromSnapshot();
+    }
+
+    /**
+     * The method for setting every metric back to zero. A search that reports while the metrics
+     * are being reset may be counted partly
+     */
+    @Override
+    public void reset() {
+        searches.reset();
+        found.reset();
+        expanded.reset();
+        relaxed.reset();
+        pathVillages.reset();
+        allocated.reset();
+        peakFrontier.set(0);
+        searchesByType.clear();
+        searchTimes.reset();
+        loadTimes.reset();
+        lastLoad = null;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d searches (%d found), %d villages expanded, %d routes relaxed, "
+                        + "median %.3f ms, 99th percentile %.3f ms, %d loads",
+                getSearchCount(), getFoundCount(), getNodesExpanded(), getEdgesRelaxed(),
+                getSearchTimeMedianMillis(), getSearchTime99thPercentileMillis(), getLoadCount());
+    }
+
+    /**
+     * The Search class that holds what one search cost
+     */
+    public static class Search {
+
+        private final String searchType;
+        private final String startVillage;
+        private final String endVillage;
+        private final boolean found;
+        private final int expanded;
+        private final long relaxed;
+        private final int peakFrontier;
+        private final int pathVillages;
+        private final long elapsedNanos;
+        private final long allocatedBytes;
+
+        /**
+         * The Search constructor that keeps the costs of a search
+         */
+        Search(String searchType, String startVillage, String endVillage, boolean found, int expanded, long relaxed,
+               int peakFrontier, int pathVillages, long elapsedNanos, long allocatedBytes) {
+            this.searchType = searchType;
+            this.startVillage = startVillage;
+            this.endVillage = endVillage;
+            this.found = found;
+            this.expanded = expanded;
+            this.relaxed = relaxed;
+            this.peakFrontier = peakFrontier;
+            this.pathVillages = pathVillages;
+            this.elapsedNanos = elapsedNanos;
+            this.allocatedBytes = allocatedBytes;
+        }
+
+        public String getSearchType() {
+            return searchType;
+        }
+
+        public String getStartVillage() {
+            return startVillage;
+        }
+
+        public String getEndVillage() {
+            return endVillage;
+        }
+
+        public boolean isFound() {
+            return found;
+        }
+
+        /**
+         * The method for retrieving how many villages the search expanded
+         * @return - Return the number of villages in the explored List
+         */
+        public int getExpanded() {
+            return expanded;
+        }
+
+        /**
+         * The method for retrieving how many routes the search followed out of the villages it
+         * expanded
+         * @return - Return the number of routes
+         */
+        public long getRelaxed() {
+            return relaxed;
+        }
+
+        /**
+         * The method for retrieving the most villages the frontier held between two steps
+         * @return - Return the number of villages
+         */
+        public int getPeakFrontier() {
+            return peakFrontier;
+        }
+
+        /**
+         * The method for retrieving the length of the path that was found
+         * @return - Return the number of villages on the path, 0 if none was found
+         */
+        public int getPathVillages() {
+            return pathVillages;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        /**
+         * The method for retrieving how many bytes the search allocated on its thread
+         * @return - Return the number of bytes, or -1 if the JVM cannot measure them
+         */
+        public long getAllocatedBytes() {
+            return allocatedBytes;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s %s -> %s: %s, %d expanded, %d relaxed, peak frontier %d, %d villages on the path, "
+                            + "%.3f ms, %d bytes", searchType, startVillage, endVillage, found ? "found" : "not found",
+                    expanded, relaxed, peakFrontier, pathVillages, elapsedNanos / 1e6, allocatedBytes);
+        }
+    }
+
+    /**
+     * The Load class that holds what loading one map cost
+     */
+    public static class Load {
+
+        private final File file;
+        private final boolean fromSnapshot;
+        private final int lines;
+        private final int villages;
+        private final int edges;
+        private final long heapBytes;
+        private final long elapsedNanos;
+        private final long allocatedBytes;
+
+        /**
+         * The Load constructor that keeps the costs of a load
+         */
+        Load(File file, boolean fromSnapshot, int lines, int villages, int edges, long heapBytes, long elapsedNanos,
+             long allocatedBytes) {
+            this.file = file;
+            this.fromSnapshot = fromSnapshot;
+            this.lines = lines;
+            this.villages = villages;
+            this.edges = edges;
+            this.heapBytes = heapBytes;
+            this.elapsedNanos = elapsedNanos;
+            this.allocatedBytes = allocatedBytes;
+        }
+
+        public File getFile() {
+            return file;
+        }
+
+        /**
+         * The method for checking if the compiled snapshot was loaded instead of the text
+         * @return - Return true if the snapshot was loaded
+         */
+        public boolean isFromSnapshot() {
+            return fromSnapshot;
+        }
+
+        public int getLines() {
+            return lines;
+        }
+
+        public int getVillages() {
+            return villages;
+        }
+
+        /**
+         * The method for retrieving the number of routes in the graph
+         * @return - Return the number of routes, counting each direction once
+         */
+        public int getEdges() {
+            return edges;
+        }
+
+        /**
+         * The method for retrieving the estimated heap the loaded graph takes up
+         * @return - Return the number of bytes
+         */
+        public long getHeapBytes() {
+            return heapBytes;
+        }
+
+        /**
+         * The method for retrieving the time it took to read and parse the map and build its graph
+         * @return - Return the time in nanoseconds
+         */
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        /**
+         * The method for retrieving how many bytes the load allocated on its thread
+         * @return - Return the number of bytes, or -1 if the JVM cannot measure them
+         */
+        public long getAllocatedBytes() {
+            return allocatedBytes;
+        }
+
+        /**
+         * The method for working out how fast the lines of the map were loaded
+         * @return - Return the number of lines per second
+         */
+        public double getLinesPerSecond() {
+            return elapsedNanos == 0 ? 0 : lines * 1e9 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s%s: %d lines, %d villages, %d routes, %.1f ms (%.0f lines/s), %d bytes of heap",
+                    file, fromSnapshot ? " (snapshot)" : "", lines, villages, edges, elapsedNanos / 1e6,
+                    getLinesPerSecond(), heapBytes);
+        }
+    }
+
+    /**
+     * The Histogram class that counts times in buckets that grow with the time. The first eight
+     * buckets hold 0 to 7 nanoseconds, and after that every power of two is cut into eight
+     * buckets of the same width
+     */
+    private static class Histogram {
+
+        private static final int SUB_BUCKETS = 8;
+        private static final int SHIFT = 3;
+
+        private final AtomicLongArray buckets = new AtomicLongArray(64 * SUB_BUCKETS);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder total = new LongAdder();
+        private final AtomicLong max = new AtomicLong();
+
+        /**
+         * The method for counting one time
+         */
+        void record(long nanos) {
+            long value = Math.max(0, nanos);
+            buckets.incrementAndGet(bucket(value));
+            count.increment();
+            total.add(value);
+            max.accumulateAndGet(value, Math::max);
+        }
+
+        long count() {
+            return count.sum();
+        }
+
+        double mean() {
+            long n = count.sum();
+            return n == 0 ? 0 : (double) total.sum() / n;
+        }
+
+        long max() {
+            return max.get();
+        }
+
+        /**
+         * The method for finding the time that a share of the times are no longer than
+         * @return - Return the top of the bucket holding that time, never more than the longest time
+         */
+        long percentile(double share) {
+            long n = 0;
+            for (int i = 0; i < buckets.length(); i++) {
+                n += buckets.get(i);
+            }
+            if (n == 0) {
+                return 0;
+            }
+
+            // Walk up the buckets until enough of the times have been passed
+            long wanted = Math.max(1, (long) Math.ceil(share * n));
+            long seen = 0;
+            for (int i = 0; i < buckets.length(); i++) {
+                seen += buckets.get(i);
+                if (seen >= wanted) {
+                    return Math.min(max.get(), highest(i));
+                }
+            }
+
+            return max.get();
+        }
+
+        void reset() {
+            for (int i = 0; i < buckets.length(); i++) {
+                buckets.set(i, 0);
+            }
+            count.reset();
+            total.reset();
+            max.set(0);
+        }
+
+        /**
+         * The method for finding the bucket of a time
+         */
+        private static int bucket(long value) {
+            if (value < SUB_BUCKETS) {
+                return (int) value;
+            }
+
+            // The power of two picks the row and the next three bits pick the bucket in it
+            int power = 63 - Long.numberOfLeadingZeros(value);
+            int sub = (int) (value >>> (power - SHIFT)) & (SUB_BUCKETS - 1);
+            return (power - SHIFT + 1) * SUB_BUCKETS + sub;
+        }
+
+        /**
+         * The method for finding the longest time a bucket holds
+         */
+        private static long highest(int bucket) {
+            if (bucket < SUB_BUCKETS) {
+                return bucket;
+            }
+
+            int power = bucket / SUB_BUCKETS + SHIFT - 1;
+            long lowest = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << (power - SHIFT);
+            return lowest + (1L << (power - SHIFT)) - 1;
+        }
+    }
+}
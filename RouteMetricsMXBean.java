@@ -0,0 +1,90 @@
+import java.util.Map;
+
+/**
+ * The RouteMetricsMXBean interface that shows the metrics of the searches and map loads of the
+ * RouteFinders through JMX, so they can be watched in a tool like JConsole or VisualVM while the
+ * program runs. All times are in milliseconds.
+ */
+public interface RouteMetricsMXBean {
+
+    /**
+     * The method for retrieving the number of searches that ended
+     * @return - Return the number of searches
+     */
+    long getSearchCount();
+
+    /**
+     * The method for retrieving the number of searches that found a path
+     * @return - Return the number of searches
+     */
+    long getFoundCount();
+
+    /**
+     * The method for retrieving the number of searches of every search type
+     * @return - Return the number of searches by the name of the search method
+     */
+    Map<String, Long> getSearchCountByType();
+
+    long getNodesExpanded();
+
+    long getEdgesRelaxed();
+
+    /**
+     * The method for retrieving the largest frontier any search held at once
+     * @return - Return the number of villages
+     */
+    long getMaxPeakFrontier();
+
+    /**
+     * The method for retrieving the average number of villages on the paths that were found
+     * @return - Return the average number of villages
+     */
+    double getMeanPathVillages();
+
+    /**
+     * The method for retrieving the bytes the searches allocated on the threads they ran on
+     * @return - Return the number of bytes, or 0 if the JVM cannot measure them
+     */
+    long getAllocatedBytes();
+
+    double getSearchTimeMeanMillis();
+
+    double getSearchTimeMedianMillis();
+
+    double getSearchTime99thPercentileMillis();
+
+    double getSearchTimeMaxMillis();
+
+    long getLoadCount();
+
+    double getLoadTimeMedianMillis();
+
+    double getLoadTime99thPercentileMillis();
+
+    /**
+     * The method for retrieving the time the last map took to load
+     * @return - Return the time, or 0 if no map was loaded
+     */
+    double getLastLoadMillis();
+
+    double getLastLinesPerSecond();
+
+    long getLastEdgeCount();
+
+    /**
+     * The method for retrieving the estimated heap the graph of the last map takes up
+     * @return - Return the number of bytes
+     */
+    long getLastHeapBytes();
+
+    /**
+     * The method for checking if the last map was loaded from its snapshot instead of its text
+     * @return - Return true if it came from the snapshot
+     */
+    boolean isLastLoadFromSnapshot();
+
+    /**
+     * The method for setting every metric back to zero
+     */
+    void reset();
+}
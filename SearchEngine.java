@@ -0,0 +1,291 @@
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * The SearchEngine class that runs the searches of a RouteFinder without any window. A search is
+ * run step by step, and between the steps the engine checks a CancellationToken, so a search can be
+ * stopped from another thread or when its time budget runs out. A search can be run on the calling
+ * thread, such as the thread of a SwingWorker, or handed to the engine's own background thread.
+ *
+ * A SearchListener hears about every step while the RouteFinder still holds that step, and about
+ * the progress of the search. Progress is only reported once every progress interval however many
+ * steps were taken in between, and once more when the search ends, so a listener never falls
+ * behind a fast search.
+ *
+ * The RouteFinder is not safe to use from two threads, so the engine runs one search at a time and
+ * nothing else may use the RouteFinder while a search is running.
+ */
+public class SearchEngine {
+
+    public static final long DEFAULT_PROGRESS_MILLIS = 100;
+
+    private final RouteFinder routeFinder;
+    private final long progressInterval;
+    private final ExecutorService executor;
+
+    /**
+     * The SearchEngine constructor that reports progress every DEFAULT_PROGRESS_MILLIS
+     * @param routeFinder - The RouteFinder with the loaded map
+     */
+    public SearchEngine(RouteFinder routeFinder) {
+        this(routeFinder, DEFAULT_PROGRESS_MILLIS);
+    }
+
+    /**
+     * The SearchEngine constructor that reports progress at a given interval
+     * @param routeFinder - The RouteFinder with the loaded map
+     * @param progressMillis - The least number of milliseconds between two progress reports
+     */
+    public SearchEngine(RouteFinder routeFinder, long progressMillis) {
+        if (progressMillis < 0) {
+            throw new IllegalArgumentException("The progress interval cannot be negative.");
+        }
+
+        this.routeFinder = routeFinder;
+        progressInterval = progressMillis * 1_000_000;
+
+        // The background thread never keeps the program from exiting
+        executor = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "route search");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * The method for running a search on the engine's background thread
+     * @param searchType - The name of the search method, like depthFirstSearch
+     * @param start - The start village name
+     * @param end - The end village name
+     * @param token - The token that stops the search
+     * @param listener - The listener to tell about the search, or null
+     * @return - Return the result that the search will finish with
+     */
+    public Future<Result> submit(String searchType, String start, String end, CancellationToken token,
+                                 SearchListener listener) {
+        checkSearch(searchType, start, end);
+        return executor.submit(() -> run(searchType, start, end, token, listener));
+    }
+
+    /**
+     * The method for running a search on the calling thread. The search stops when the end
+     * village is found, there is nothing left to explore or the token tells it to
+     * @param searchType - The name of the search method, like depthFirstSearch
+     * @param start - The start village name
+     * @param end - The end village name
+     * @param token - The token that stops the search
+     * @param listener - The listener to tell about the search, or null
+     * @return - Return the result of the search
+     */
+    public synchronized Result run(String searchType, String start, String end, CancellationToken token,
+                                   SearchListener listener) {
+        checkSearch(searchType, start, end);
+        SearchListener l = listener == null ? new SearchListener() { } : listener;
+        long started = System.nanoTime();
+        long lastProgress = started;
+        long steps = 0;
+        Status status = null;
+
+        // Call this method for starting the search and show the start village in the frontier
+        routeFinder.startSearch(start);
+        l.stepTaken(routeFinder, steps);
+
+        do {
+            // If the search was asked to stop, stop before the next step
+            if (token.isCancelled()) {
+                status = Status.CANCELLED;
+                break;
+            } else if (token.isExpired()) {
+                status = Status.TIMED_OUT;
+                break;
+            }
+
+            routeFinder.searchStep(searchType, start, end);
+            steps += 1;
+            l.stepTaken(routeFinder, steps);
+
+            // Only report the progress once every interval
+            long now = System.nanoTime();
+            if (now - lastProgress >= progressInterval) {
+                lastProgress = now;
+                l.progress(progress(steps, now - started, false));
+            }
+        } while (routeFinder.isSearching());
+
+        if (status == null) {
+            status = routeFinder.solved() ? Status.FOUND : Status.NO_PATH;
+        }
+        long elapsed = System.nanoTime() - started;
+        routeFinder.reportSearch(searchType);
+        l.progress(progress(steps, elapsed, true));
+
+        return new Result(status, routeFinder.getRoute(), steps, elapsed);
+    }
+
+    /**
+     * The method for stopping the background thread once the searches it was given are done
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * The method for checking a search before it is started, so a bad one fails straight away
+     */
+    private void checkSearch(String searchType, String start, String end) {
+        if (!RouteFinder.SEARCH_TYPES.contains(searchType)) {
+            throw new IllegalArgumentException("There is no search called " + searchType);
+        }
+        if (routeFinder.getGraph().getId(start) < 0 || routeFinder.getGraph().getId(end) < 0) {
+            throw new IllegalArgumentException(start + " and " + end + " are not two villages of the map.");
+        }
+    }
+
+    /**
+     * The method for taking a snapshot of how far the search has come
+     */
+    private Progress progress(long steps, long elapsed, boolean finished) {
+        return new Progress(steps, routeFinder.getExpandedCount(), routeFinder.getFrontier().size(),
+                routeFinder.getNumberOfNodes(), elapsed, finished);
+    }
+
+    /**
+     * The Status enum that tells how a search ended
+     */
+    public enum Status {
+        FOUND, NO_PATH, CANCELLED, TIMED_OUT
+    }
+
+    /**
+     * The SearchListener interface that hears about a running search. Both methods are called on
+     * the thread running the search and should return quickly
+     */
+    public interface SearchListener {
+
+        /**
+         * The method called once the search is started and after every step, while the RouteFinder
+         * holds the explored villages, frontier and path of that step
+         * @param routeFinder - The RouteFinder running the search
+         * @param step - The number of steps taken, 0 when the search was just started
+         */
+        default void stepTaken(RouteFinder routeFinder, long step) {
+        }
+
+        /**
+         * The method called at most once every progress interval, and once when the search ends
+         * @param progress - How far the search has come
+         */
+        default void progress(Progress progress) {
+        }
+    }
+
+    /**
+     * The Progress class that holds how far a search has come
+     */
+    public static class Progress {
+
+        private final long steps;
+        private final int explored;
+        private final int frontier;
+        private final int villages;
+        private final long elapsedNanos;
+        private final boolean finished;
+
+        /**
+         * The Progress constructor that keeps the counts of a search
+         */
+        Progress(long steps, int explored, int frontier, int villages, long elapsedNanos, boolean finished) {
+            this.steps = steps;
+            this.explored = explored;
+            this.frontier = frontier;
+            this.villages = villages;
+            this.elapsedNanos = elapsedNanos;
+            this.finished = finished;
+        }
+
+        public long getSteps() {
+            return steps;
+        }
+
+        public int getExplored() {
+            return explored;
+        }
+
+        public int getFrontier() {
+            return frontier;
+        }
+
+        public int getVillages() {
+            return villages;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        /**
+         * The method for checking if this is the last report of the search
+         * @return - Return true if the search has ended
+         */
+        public boolean isFinished() {
+            return finished;
+        }
+
+        @Override
+        public String toString() {
+            return explored + " of " + villages + " villages explored, " + frontier + " in the frontier, "
+                    + String.format("%.1f", elapsedNanos / 1e9) + " s";
+        }
+    }
+
+    /**
+     * The Result class that holds how a search ended and the route it found
+     */
+    public static class Result {
+
+        private final Status status;
+        private final RouteBatch.Route route;
+        private final long steps;
+        private final long elapsedNanos;
+
+        /**
+         * The Result constructor that keeps the end of a search
+         */
+        Result(Status status, RouteBatch.Route route, long steps, long elapsedNanos) {
+            this.status = status;
+            this.route = route;
+            this.steps = steps;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        /**
+         * The method for retrieving the route the search found
+         * @return - Return the route, which has an empty path if the search found none or was
+         * stopped
+         */
+        public RouteBatch.Route getRoute() {
+            return route;
+        }
+
+        public long getSteps() {
+            return steps;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        /**
+         * The method for checking if the search ran to the end, so its route can be kept
+         * @return - Return true if it found a path or showed there is none
+         */
+        public boolean isComplete() {
+            return status == Status.FOUND || status == Status.NO_PATH;
+        }
+    }
+}
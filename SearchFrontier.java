@@ -0,0 +1,178 @@
+import java.util.Arrays;
+
+/**
+ * The SearchFrontier class that is the frontier of the depthFirstSearch and breadthFirstSearch. It
+ * keeps village ids in an int array used as a stack from the back and as a queue from the front,
+ * and a village may be in it more than once, the same as the frontier List always allowed.
+ *
+ * Once a village is explored it is removed from the frontier for good, but instead of searching
+ * the array for its copies they are only counted and left behind as dead entries. The searches skip
+ * the dead entries when they take the next village, and the array is only packed when its villages
+ * are read one by one to show them, so every step of a search takes time in proportion to the
+ * routes of the village it explores. The explored marks are stamped with the number of the search,
+ * so starting a new search does not have to clear them.
+ */
+public class SearchFrontier {
+
+    private int[] entries = new int[16];
+    private int head;
+    private int tail;
+    private int live;
+    private final int[] copies;
+    private final int[] copiesStamp;
+    private final int[] explored;
+    private int generation;
+
+    /**
+     * The SearchFrontier constructor that makes room for the ids 0 to villages - 1
+     * @param villages - The number of villages
+     */
+    public SearchFrontier(int villages) {
+        copies = new int[villages];
+        copiesStamp = new int[villages];
+        explored = new int[villages];
+        reset();
+    }
+
+    /**
+     * The method for emptying the frontier and forgetting which villages were explored, before a
+     * new search
+     */
+    public void reset() {
+        generation += 1;
+        head = 0;
+        tail = 0;
+        live = 0;
+    }
+
+    /**
+     * The method for adding a village to the back of the frontier. An explored village is never
+     * added again
+     * @param village - The id of the village
+     */
+    public void add(int village) {
+        if (isExplored(village)) {
+            return;
+        }
+
+        // Make room at the back, packing the array first if most of it is dead
+        if (tail == entries.length) {
+            pack();
+            if (tail * 2 > entries.length) {
+                entries = Arrays.copyOf(entries, entries.length * 2);
+            }
+        }
+
+        entries[tail] = village;
+        tail += 1;
+        live += 1;
+
+        // Count the copy so it can be removed without finding it
+        if (copiesStamp[village] != generation) {
+            copiesStamp[village] = generation;
+            copies[village] = 0;
+        }
+        copies[village] += 1;
+    }
+
+    /**
+     * The method for marking a village as explored, which removes every copy of it from the
+     * frontier
+     * @param village - The id of the village
+     */
+    public void explore(int village) {
+        if (isExplored(village)) {
+            return;
+        }
+
+        explored[village] = generation;
+        if (copiesStamp[village] == generation) {
+            live -= copies[village];
+        }
+    }
+
+    /**
+     * The method for checking if a village has been explored
+     * @param village - The id of the village
+     * @return - Return true if it has been explored in this search
+     */
+    public boolean isExplored(int village) {
+        return explored[village] == generation;
+    }
+
+    /**
+     * The method for checking if a village has been added to the frontier in this search, even if
+     * it has been explored since
+     * @param village - The id of the village
+     * @return - Return true if it has been added
+     */
+    public boolean wasAdded(int village) {
+        return copiesStamp[village] == generation;
+    }
+
+    /**
+     * The method for retrieving the village at the front of the frontier
+     * @return - Return the id of the village
+     */
+    public int first() {
+        // Skip the copies of villages that were explored since they were added
+        while (isExplored(entries[head])) {
+            head += 1;
+        }
+
+        return entries[head];
+    }
+
+    /**
+     * The method for retrieving the village at the back of the frontier
+     * @return - Return the id of the village
+     */
+    public int last() {
+        // Skip the copies of villages that were explored since they were added
+        while (isExplored(entries[tail - 1])) {
+            tail -= 1;
+        }
+
+        return entries[tail - 1];
+    }
+
+    /**
+     * The method for retrieving the number of villages in the frontier, counting every copy
+     * @return - Return the size
+     */
+    public int size() {
+        return live;
+    }
+
+    /**
+     * The method for retrieving the village at a position of the frontier
+     * @param index - The position, 0 being the front
+     * @return - Return the id of the village
+     */
+    public int get(int index) {
+        // If there are dead entries in the way, pack them out first
+        if (tail - head != live) {
+            pack();
+        }
+
+        return entries[head + index];
+    }
+
+    /**
+     * The method for moving the villages that are still in the frontier to the start of the
+     * array, in the same order
+     */
+    private void pack() {
+        int size = 0;
+
+        for (int i = head; i < tail; i++) {
+            if (!isExplored(entries[i])) {
+                entries[size] = entries[i];
+                size += 1;
+            }
+        }
+
+        head = 0;
+        tail = size;
+    }
+}
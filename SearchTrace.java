@@ -0,0 +1,54 @@
+/**
+ * The SearchTrace interface that the searches of a RouteFinder tell what they do, one event at a
+ * time. An event is only three ints, the kind of event, the village and the village it was
+ * reached from, so recording one never has to make a String or any other object. The RouteFinder
+ * only calls a trace when one is set, so a search without a trace does no work for it at all.
+ *
+ * A trace is only ever called from the thread running the search. The searches that share their
+ * work out across a fork join pool never call it from the threads of the pool: the parallel breadth
+ * first search tells it about a level once the pool is done with the level, and delta stepping
+ * records nothing, so the events of a trace are always in the order the search made them.
+ */
+public interface SearchTrace {
+
+    /**
+     * The event for a village being put in the frontier, or having its place in a heap lowered
+     */
+    int ENQUEUE = 0;
+
+    /**
+     * The event for a village being taken out of the frontier
+     */
+    int DEQUEUE = 1;
+
+    /**
+     * The event for a village having its routes followed to its children
+     */
+    int EXPAND = 2;
+
+    /**
+     * The method for recording one event of a search
+     * @param event - The kind of event, ENQUEUE, DEQUEUE or EXPAND
+     * @param village - The id of the village
+     * @param from - The id of the village it was reached from, or -1 for none
+     */
+    void record(int event, int village, int from);
+
+    /**
+     * The method for retrieving the name of a kind of event
+     * @param event - The kind of event
+     * @return - Return the name in lower case
+     */
+    static String eventName(int event) {
+        switch (event) {
+            case ENQUEUE:
+                return "enqueue";
+            case DEQUEUE:
+                return "dequeue";
+            case EXPAND:
+                return "expand";
+            default:
+                return "event " + event;
+        }
+    }
+}
@@ -0,0 +1,188 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+/**
+ * The StraightLineHeuristic class that estimates the distance between two villages by the straight
+ * line between them. The positions come from a side file next to the map with one tab separated
+ * village, x and y per line. The positions do not have to be in the same unit as the distances:
+ * the straight lines are scaled down by the smallest ratio of route distance to straight line
+ * distance in the map, so no route is ever shorter than its estimate and the A* search still finds
+ * the shortest path.
+ *
+ * That scale is the largest one that is safe for every route, but one short route over a long
+ * straight line drags it down for the whole map. When it is less than WEAK_TIGHTNESS of the median
+ * ratio, most routes are estimated at a small part of their distance and the A* search explores
+ * nearly as many villages as the Dijkstra search, so the heuristic counts as weak.
+ */
+public class StraightLineHeuristic implements Heuristic {
+
+    public static final String EXTENSION = ".coords";
+    public static final double WEAK_TIGHTNESS = 0.5;
+
+    private final double[] x;
+    private final double[] y;
+    private final double scale;
+    private final double median;
+
+    /**
+     * The StraightLineHeuristic constructor that works out the scale of the positions
+     * @param graph - The graph the positions belong to
+     * @param x - The x position of every village
+     * @param y - The y position of every village
+     */
+    public StraightLineHeuristic(VillageGraph graph, double[] x, double[] y) {
+        this.x = x;
+        this.y = y;
+
+        // Find the ratio of every route's distance to the straight line it covers
+        double[] ratios = new double[graph.getEdgeCount()];
+        int count = 0;
+        for (int v = 0; v < graph.size(); v++) {
+            for (int edge = graph.firstEdge(v); edge < graph.lastEdge(v); edge++) {
+                double line = line(v, graph.getTarget(edge));
+                if (line > 0) {
+                    ratios[count] = graph.getWeight(edge) / line;
+                    count += 1;
+                }
+            }
+        }
+
+        // The smallest ratio is the scale, and the median is what the usual route would allow
+        Arrays.sort(ratios, 0, count);
+        scale = count == 0 ? 0 : Math.max(0, ratios[0]);
+        median = count == 0 ? 0 : ratios[count / 2];
+    }
+
+    /**
+     * The StraightLineHeuristic constructor that takes a scale that is already known
+     */
+    private StraightLineHeuristic(double[] x, double[] y, double scale, double median) {
+        this.x = x;
+        this.y = y;
+        this.scale = scale;
+        this.median = median;
+    }
+
+    /**
+     * The method for retrieving the side file with the positions of the villages of a map
+     * @param map - The text map
+     * @return - Return the positions file next to it
+     */
+    public static File coordinatesFile(File map) {
+        return new File(map.getPath() + EXTENSION);
+    }
+
+    /**
+     * The method for loading the positions of the villages of a map from its side file
+     * @param map - The text map
+     * @param graph - The graph loaded from the map
+     * @return - Return the heuristic, or null if there is no side file, it cannot be read, or it
+     * does not give a position for every village
+     */
+    public static StraightLineHeuristic load(File map, VillageGraph graph) {
+        // If the map has no positions
+        if (map == null || !coordinatesFile(map).isFile()) {
+            return null;
+        }
+
+        double[] x = new double[graph.size()];
+        double[] y = new double[graph.size()];
+        boolean[] found = new boolean[graph.size()];
+
+        try (BufferedReader in = Files.newBufferedReader(coordinatesFile(map).toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                String[] values = line.split("\t");
+
+                // Skip blank lines and villages that are not in this map
+                int village = values.length < 3 ? -1 : graph.getId(values[0]);
+                if (village < 0) {
+                    continue;
+                }
+
+                x[village] = Double.parseDouble(values[1]);
+                y[village] = Double.parseDouble(values[2]);
+                found[village] = true;
+            }
+            // If the file cannot be read the search falls back to another heuristic
+        } catch (IOException | NumberFormatException e) {
+            return null;
+        }
+
+        // A village without a position would break the estimate
+        for (boolean f : found) {
+            if (!f) {
+                return null;
+            }
+        }
+
+        return new StraightLineHeuristic(graph, x, y);
+    }
+
+    /**
+     * The method for estimating the distance between two villages by the scaled straight line
+     * @param village - The id of the village the search has reached
+     * @param target - The id of the end village
+     * @return - Return the estimated distance
+     */
+    @Override
+    public double estimate(int village, int target) {
+        return scale * line(village, target);
+    }
+
+    /**
+     * The method for bringing the scale up to date after the distance of one route changed. A
+     * longer route can only make the estimates lower than they could be, but a shorter one may
+     * need a smaller scale. The median is kept, since one route barely moves it
+     * @param graph - The graph with the changed route
+     * @param first - The id of the first village of the route
+     * @param second - The id of the second village of the route
+     * @param oldDistance - The distance the route had, or infinity if it is new
+     * @param newDistance - The distance the route has now, or infinity if it was removed
+     * @return - Return this heuristic, or one with a smaller scale
+     */
+    @Override
+    public Heuristic routeChanged(VillageGraph graph, int first, int second, double oldDistance, double newDistance) {
+        double line = line(first, second);
+
+        // If the route got longer, or its ratio is no smaller than the scale
+        if (newDistance >= oldDistance || line == 0 || newDistance / line >= scale) {
+            return this;
+        }
+
+        return new StraightLineHeuristic(x, y, Math.max(0, newDistance / line), median);
+    }
+
+    /**
+     * The method for retrieving the scale the straight lines are multiplied by
+     * @return - Return the scale
+     */
+    public double getScale() {
+        return scale;
+    }
+
+    /**
+     * The method for checking if the scale is so far below the median ratio of route distance to
+     * straight line that the estimates leave the A* search little better than the Dijkstra search
+     * @return - Return true if the scale is less than WEAK_TIGHTNESS of the median ratio
+     */
+    public boolean isWeak() {
+        return scale < WEAK_TIGHTNESS * median;
+    }
+
+    /**
+     * The method for measuring the straight line between the positions of two villages
+     */
+    private double line(int first, int second) {
+        return Math.hypot(x[first] - x[second], y[first] - y[second]);
+    }
+
+    @Override
+    public String toString() {
+        return "straight line distance (scale " + scale + ", median " + median + ", " + x.length + " villages)";
+    }
+}
@@ -0,0 +1,183 @@
+/**
+ * The TraceRecorder class that keeps the last events of a search in a ring buffer. The events are
+ * held in int arrays made once, so recording an event only writes a few array slots, and once
+ * the buffer is full every new event takes the place of the oldest one. Only one event in every
+ * sampleEvery is kept, which lets a long search be followed from start to end in a small buffer.
+ *
+ * Every event keeps its number among all of the events of the search, so the events that were
+ * skipped or written over can still be seen as gaps. The recorder can be written by the thread
+ * running a search while another thread reads it.
+ */
+public class TraceRecorder implements SearchTrace {
+
+    public static final int DEFAULT_CAPACITY = 100_000;
+
+    private final int capacity;
+    private final int sampleEvery;
+    private final int[] events;
+    private final int[] villages;
+    private final int[] from;
+    private final long[] numbers;
+    private int next;
+    private int size;
+    private long count;
+
+    /**
+     * The TraceRecorder constructor that keeps every event, up to DEFAULT_CAPACITY of them
+     */
+    public TraceRecorder() {
+        this(DEFAULT_CAPACITY, 1);
+    }
+
+    /**
+     * The TraceRecorder constructor that keeps one event in every sampleEvery
+     * @param capacity - The most events to keep
+     * @param sampleEvery - Keep the first event and then every sampleEvery-th one after it
+     */
+    public TraceRecorder(int capacity, int sampleEvery) {
+        if (capacity < 1 || sampleEvery < 1) {
+            throw new IllegalArgumentException("A trace must keep at least one event, and at least one event in every sample.");
+        }
+
+        this.capacity = capacity;
+        this.sampleEvery = sampleEvery;
+        events = new int[capacity];
+        villages = new int[capacity];
+        from = new int[capacity];
+        numbers = new long[capacity];
+    }
+
+    /**
+     * The method for recording one event of a search, if it is one of the sampled ones
+     * @param event - The kind of event, ENQUEUE, DEQUEUE or EXPAND
+     * @param village - The id of the village
+     * @param from - The id of the village it was reached from, or -1 for none
+     */
+    @Override
+    public synchronized void record(int event, int village, int from) {
+        long number = count;
+        count += 1;
+
+        // Skip the events between the samples
+        if (number % sampleEvery != 0) {
+            return;
+        }
+
+        events[next] = event;
+        villages[next] = village;
+        this.from[next] = from;
+        numbers[next] = number;
+
+        // Move on around the ring, writing over the oldest event once it is full
+        next = next + 1 == capacity ? 0 : next + 1;
+        if (size < capacity) {
+            size += 1;
+        }
+    }
+
+    /**
+     * The method for forgetting every event, before a new search
+     */
+    public synchronized void clear() {
+        next = 0;
+        size = 0;
+        count = 0;
+    }
+
+    /**
+     * The method for retrieving the number of events kept
+     * @return - Return the size
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * The method for retrieving the number of events the search has had, kept or not
+     * @return - Return the count
+     */
+    public synchronized long getEventCount() {
+        return count;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getSampleEvery() {
+        return sampleEvery;
+    }
+
+    /**
+     * The method for finding where an event is in the ring
+     * @param index - The position among the kept events, 0 being the oldest
+     */
+    private int slot(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("There is no event " + index + " in a trace of " + size);
+        }
+
+        int slot = next - size + index;
+        return slot < 0 ? slot + capacity : slot;
+    }
+
+    /**
+     * The method for retrieving the kind of a kept event
+     * @param index - The position among the kept events, 0 being the oldest
+     * @return - Return ENQUEUE, DEQUEUE or EXPAND
+     */
+    public synchronized int getEvent(int index) {
+        return events[slot(index)];
+    }
+
+    /**
+     * The method for retrieving the village of a kept event
+     * @param index - The position among the kept events, 0 being the oldest
+     * @return - Return the id of the village
+     */
+    public synchronized int getVillage(int index) {
+        return villages[slot(index)];
+    }
+
+    /**
+     * The method for retrieving the village a kept event's village was reached from
+     * @param index - The position among the kept events, 0 being the oldest
+     * @return - Return the id of the village, or -1 for none
+     */
+    public synchronized int getFrom(int index) {
+        return from[slot(index)];
+    }
+
+    /**
+     * The method for retrieving the number of a kept event among all of the events of the search
+     * @param index - The position among the kept events, 0 being the oldest
+     * @return - Return the number, 0 being the first event of the search
+     */
+    public synchronized long getNumber(int index) {
+        return numbers[slot(index)];
+    }
+
+    /**
+     * The method for writing a kept event out with the names of its villages. It is only called
+     * for the events that are shown, so no text is made while the search runs
+     * @param index - The position among the kept events, 0 being the oldest
+     * @param graph - The graph the search ran on
+     * @return - Return the event as a line of text, or an empty String if it is no longer kept
+     */
+    public synchronized String format(int index, VillageGraph graph) {
+        // The search may have moved on since the index was handed out
+        if (index < 0 || index >= size) {
+            return "";
+        }
+
+        int slot = slot(index);
+        String line = "#" + numbers[slot] + " " + SearchTrace.eventName(events[slot]) + " " + graph.getName(villages[slot]);
+        return from[slot] < 0 ? line : line + " from " + graph.getName(from[slot]);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "trace: " + size + " of " + count + " events kept (capacity " + capacity + ", 1 in "
+                + sampleEvery + " sampled)";
+    }
+}
@@ -0,0 +1,933 @@
+import java.util.*;
+
+/**
+ * The VillageGraph class that holds a loaded village map in compressed sparse row form. Every
+ * village name is interned to a dense int id once while the map is loaded, and the routes leaving
+ * village v are stored in targets[offsets[v]] to targets[offsets[v + 1] - 1] with their distances
+ * at the same positions in weights. The routes of each village are ordered by the name of the
+ * village they lead to, from last to first, which is the order the TreeMaps of the RouteFinder
+ * used to hand them out in.
+ *
+ * A graph can also keep all of this outside of the heap in an OffHeapGraphStorage, for maps too
+ * large to fit on it. Every method reads from the storage when there is one and from the arrays
+ * when there is not, so the searches run on either without knowing which it is. A graph outside
+ * of the heap cannot be changed, the methods that copy a graph with a change throw for it.
+ */
+public class VillageGraph {
+
+    private final String[] names;
+    private final HashMap<String,Integer> ids;
+    private final int[] nameRank;
+    private final int[] offsets;
+    private final int[] targets;
+    private final double[] weights;
+    private final int[] routeFrom;
+    private final int[] routeTo;
+    private final double[] routeDistance;
+    private final OffHeapGraphStorage storage;
+    private volatile ComponentIndex components;
+
+    /**
+     * The VillageGraph constructor that is used by the Builder once all of the arrays are filled
+     */
+    private VillageGraph(String[] names, HashMap<String,Integer> ids, int[] nameRank, int[] offsets,
+                         int[] targets, double[] weights, int[] routeFrom, int[] routeTo,
+                         double[] routeDistance) {
+        this.names = names;
+        this.ids = ids;
+        this.nameRank = nameRank;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.weights = weights;
+        this.routeFrom = routeFrom;
+        this.routeTo = routeTo;
+        this.routeDistance = routeDistance;
+        this.storage = null;
+    }
+
+    /**
+     * The VillageGraph constructor that reads everything from storage outside of the heap
+     */
+    private VillageGraph(OffHeapGraphStorage storage) {
+        this.names = null;
+        this.ids = null;
+        this.nameRank = null;
+        this.offsets = null;
+        this.targets = null;
+        this.weights = null;
+        this.routeFrom = null;
+        this.routeTo = null;
+        this.routeDistance = null;
+        this.storage = storage;
+    }
+
+    /**
+     * The method for creating a graph on storage outside of the heap, such as a MapSnapshot
+     * that was mapped rather than read
+     * @param storage - The storage
+     * @return - Return the new graph
+     */
+    static VillageGraph fromStorage(OffHeapGraphStorage storage) {
+        return new VillageGraph(storage);
+    }
+
+    /**
+     * The method for creating a graph straight from arrays that are already in compressed sparse
+     * row form, such as the ones read back from a MapSnapshot. Only the name lookup is rebuilt
+     * @return - Return the new graph
+     */
+    static VillageGraph fromArrays(String[] names, int[] nameRank, int[] offsets, int[] targets,
+                                   double[] weights, int[] routeFrom, int[] routeTo, double[] routeDistance) {
+        HashMap<String,Integer> ids = new HashMap<>(names.length * 2);
+        for (int i = 0; i < names.length; i++) {
+            ids.put(names[i], i);
+        }
+
+        return new VillageGraph(names, ids, nameRank, offsets, targets, weights, routeFrom, routeTo, routeDistance);
+    }
+
+    /**
+     * The method for creating a graph out of a TreeMap in the format the RouteFinder used to keep.
+     * A pair of villages listed both ways with the same distance becomes one route line, like a
+     * line of the map file, and a route listed only one way or with two distances is kept one way
+     * only and is not a route line
+     * @param m - The TreeMap of every village and the distances to the villages next to it
+     * @return - Return the new graph
+     */
+    public static VillageGraph fromTreeMap(TreeMap<String,TreeMap<String,Double>> m) {
+        Builder builder = new Builder();
+
+        // Intern every village first so villages without routes are kept as well
+        for (String village : m.keySet()) {
+            builder.intern(village);
+        }
+
+        // Add every route in both directions it was listed in
+        for (Map.Entry<String,TreeMap<String,Double>> village : m.entrySet()) {
+            int from = builder.intern(village.getKey());
+            for (Map.Entry<String,Double> entry : village.getValue().entrySet()) {
+                int to = builder.intern(entry.getKey());
+                TreeMap<String,Double> back = m.get(entry.getKey());
+                Double backDistance = back == null ? null : back.get(village.getKey());
+
+                // If the route goes both ways it is added once, from the village listed first
+                if (entry.getValue().equals(backDistance)) {
+                    if (from <= to) {
+                        builder.addRoute(from, to, entry.getValue());
+                    }
+                } else {
+                    builder.addDirectedRoute(from, to, entry.getValue());
+                }
+            }
+        }
+
+        return builder.build();
+    }
+
+    /**
+     * The method for retrieving the number of villages
+     * @return - Return the number of villages
+     */
+    public int size() {
+        return storage != null ? storage.size() : names.length;
+    }
+
+    /**
+     * The method for retrieving the name of a village
+     * @param id - The id of the village
+     * @return - Return the name of the village
+     */
+    public String getName(int id) {
+        return storage != null ? storage.getName(id) : names[id];
+    }
+
+    /**
+     * The method for retrieving the id of a village
+     * @param name - The name of the village
+     * @return - Return the id of the village or -1 if it is not in the map
+     */
+    public int getId(String name) {
+        if (storage != null) {
+            return storage.getId(name);
+        }
+
+        Integer id = ids.get(name);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * The method for retrieving the names of all of the villages in the order they were found
+     * @return - Return a new List with the names
+     */
+    public List<String> getNames() {
+        return new ArrayList<>(Arrays.asList(nameArray()));
+    }
+
+    /**
+     * The method for retrieving the position of the first route leaving a village
+     * @param id - The id of the village
+     * @return - Return the position of the first route
+     */
+    public int firstEdge(int id) {
+        return storage != null ? storage.getOffset(id) : offsets[id];
+    }
+
+    /**
+     * The method for retrieving the position just after the last route leaving a village
+     * @param id - The id of the village
+     * @return - Return the position after the last route
+     */
+    public int lastEdge(int id) {
+        return storage != null ? storage.getOffset(id + 1) : offsets[id + 1];
+    }
+
+    /**
+     * The method for retrieving the village a route leads to
+     * @param edge - The position of the route
+     * @return - Return the id of the village at the end of the route
+     */
+    public int getTarget(int edge) {
+        return storage != null ? storage.getTarget(edge) : targets[edge];
+    }
+
+    /**
+     * The method for retrieving the distance of a route
+     * @param edge - The position of the route
+     * @return - Return the distance
+     */
+    public double getWeight(int edge) {
+        return storage != null ? storage.getWeight(edge) : weights[edge];
+    }
+
+    /**
+     * The method for retrieving the number of routes stored, counting each direction once
+     * @return - Return the number of directed routes
+     */
+    public int getEdgeCount() {
+        return storage != null ? storage.getEdgeCount() : targets.length;
+    }
+
+    /**
+     * The method for checking if any route has a distance that is negative or not a number, which
+     * the searches that settle every village once cannot follow
+     * @return - Return true if there is such a route
+     */
+    public boolean hasNegativeRoute() {
+        for (int edge = 0; edge < getEdgeCount(); edge++) {
+            if (!(getWeight(edge) >= 0)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * The method for retrieving which connected part of the map every village is in. It is built
+     * the first time it is asked for, and carried over to the graphs made by withRoute and
+     * withVillage. A graph with a route or village taken away builds it again
+     * @return - Return the index
+     */
+    public ComponentIndex getComponents() {
+        ComponentIndex index = components;
+
+        // Two threads may both build it, but they build the same index
+        if (index == null) {
+            index = ComponentIndex.build(this);
+            components = index;
+        }
+
+        return index;
+    }
+
+    /**
+     * The method for estimating how much of the heap the graph takes up, counting its arrays, the
+     * village names and the lookup from names to ids with the object sizes of a 64 bit JVM with
+     * compressed references. A graph outside of the heap only counts the objects pointing to it
+     * @return - Return the estimated number of bytes
+     */
+    public long getMemoryFootprint() {
+        // Every buffer is an object of about 64 bytes pointing outside of the heap
+        if (storage != null) {
+            return 32 + 48 + 64L * 12;
+        }
+
+        // Every array has a 16 byte header
+        long bytes = 16L * 9 + 4L * (names.length + nameRank.length + offsets.length + targets.length
+                + routeFrom.length + routeTo.length) + 8L * (weights.length + routeDistance.length);
+
+        // Every name is a String with its own array, and has an entry and an Integer in the lookup
+        for (String name : names) {
+            bytes += 24 + 16 + ((name.length() + 7) & ~7) + 32 + 16;
+        }
+
+        return bytes + 48 + 4L * Integer.highestOneBit(Math.max(1, ids.size() * 2));
+    }
+
+    /**
+     * The method for finding the route between two villages. The routes of a village are kept in
+     * name order so this is a binary search
+     * @param from - The id of the first village
+     * @param to - The id of the second village
+     * @return - Return the position of the route or -1 if the villages are not connected
+     */
+    public int findEdge(int from, int to) {
+        int low = firstEdge(from);
+        int high = lastEdge(from) - 1;
+        int rank = getRank(to);
+
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int middleRank = getRank(getTarget(middle));
+
+            if (middleRank < rank) {
+                low = middle + 1;
+            } else if (middleRank > rank) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * The method for retrieving the number of route lines the map was loaded from
+     * @return - Return the number of lines
+     */
+    public int getRouteCount() {
+        return storage != null ? storage.getRouteCount() : routeFrom.length;
+    }
+
+    /**
+     * The method for retrieving the first village of a route line
+     * @param route - The number of the line
+     * @return - Return the id of the first village
+     */
+    public int getRouteFrom(int route) {
+        return storage != null ? storage.getRouteFrom(route) : routeFrom[route];
+    }
+
+    /**
+     * The method for retrieving the second village of a route line
+     * @param route - The number of the line
+     * @return - Return the id of the second village
+     */
+    public int getRouteTo(int route) {
+        return storage != null ? storage.getRouteTo(route) : routeTo[route];
+    }
+
+    /**
+     * The method for retrieving the distance of a route line
+     * @param route - The number of the line
+     * @return - Return the distance
+     */
+    public double getRouteDistance(int route) {
+        return storage != null ? storage.getRouteDistance(route) : routeDistance[route];
+    }
+
+    /**
+     * The method for creating a copy of the graph with the route between two villages set to a
+     * distance, in both directions. If the villages already had a route only its distance
+     * changes, and otherwise the route is put in its place among the routes of each village and
+     * added as a new route line. Only the arrays that change are copied, the others are shared
+     * with this graph, which is left as it was
+     * @param first - The id of the first village
+     * @param second - The id of the second village
+     * @param d - The distance between them
+     * @return - Return the new graph
+     */
+    public VillageGraph withRoute(int first, int second, double d) {
+        // The graph outside of the heap is read straight out of its snapshot and is never changed
+        if (storage != null) {
+            throw new IllegalStateException("A map kept outside of the heap cannot be changed. Load it onto the heap to change it.");
+        }
+
+        int low = Math.min(first, second);
+        int high = Math.max(first, second);
+        boolean lowMissing = findEdge(low, high) < 0;
+        boolean highMissing = low != high && findEdge(high, low) < 0;
+
+        int[] newOffsets = offsets;
+        int[] newTargets = targets;
+        double[] newWeights;
+
+        // If both directions are already there only the distances change
+        if (!lowMissing && !highMissing) {
+            newWeights = weights.clone();
+        } else {
+            int added = (lowMissing ? 1 : 0) + (highMissing ? 1 : 0);
+            newOffsets = new int[offsets.length];
+            newTargets = new int[targets.length + added];
+            newWeights = new double[targets.length + added];
+
+            // Copy the routes up to each place a route goes in, in order of the villages
+            int read = 0;
+            int write = 0;
+            for (int end = 0; end < 2; end++) {
+                if (end == 0 ? !lowMissing : !highMissing) {
+                    continue;
+                }
+                int v = end == 0 ? low : high;
+                int other = end == 0 ? high : low;
+                int place = lowerBound(v, nameRank[other]);
+
+                System.arraycopy(targets, read, newTargets, write, place - read);
+                System.arraycopy(weights, read, newWeights, write, place - read);
+                write += place - read;
+                read = place;
+                newTargets[write] = other;
+                write += 1;
+            }
+            System.arraycopy(targets, read, newTargets, write, targets.length - read);
+            System.arraycopy(weights, read, newWeights, write, targets.length - read);
+
+            // Every village after one that got a route starts that much later
+            for (int v = 0; v < offsets.length; v++) {
+                newOffsets[v] = offsets[v] + (lowMissing && v > low ? 1 : 0) + (highMissing && v > high ? 1 : 0);
+            }
+        }
+
+        // Change the distance of the first route line for the pair, or add a line for it
+        int[] newRouteFrom = routeFrom;
+        int[] newRouteTo = routeTo;
+        double[] newRouteDistance;
+        int line = findRouteLine(first, second);
+        if (line >= 0) {
+            newRouteDistance = routeDistance.clone();
+            newRouteDistance[line] = d;
+        } else {
+            newRouteFrom = Arrays.copyOf(routeFrom, routeFrom.length + 1);
+            newRouteTo = Arrays.copyOf(routeTo, routeTo.length + 1);
+            newRouteDistance = Arrays.copyOf(routeDistance, routeDistance.length + 1);
+            newRouteFrom[routeFrom.length] = first;
+            newRouteTo[routeTo.length] = second;
+            newRouteDistance[routeDistance.length] = d;
+        }
+
+        VillageGraph graph = new VillageGraph(names, ids, nameRank, newOffsets, newTargets, newWeights,
+                newRouteFrom, newRouteTo, newRouteDistance);
+
+        // Set the distance of both directions in the new arrays before anyone can see them
+        newWeights[graph.findEdge(first, second)] = d;
+        newWeights[graph.findEdge(second, first)] = d;
+
+        // A new route can only join two parts of the map, so the index is kept up to date
+        ComponentIndex index = components;
+        if (index != null) {
+            graph.components = index.withRoute(first, second);
+        }
+
+        return graph;
+    }
+
+    /**
+     * The method for creating a copy of the graph without the route between two villages, in
+     * either direction, and without any of the route lines listing them
+     * @param first - The id of the first village
+     * @param second - The id of the second village
+     * @return - Return the new graph, or this graph if the villages had no route
+     */
+    public VillageGraph withoutRoute(int first, int second) {
+        // The graph outside of the heap is read straight out of its snapshot and is never changed
+        if (storage != null) {
+            throw new IllegalStateException("A map kept outside of the heap cannot be changed. Load it onto the heap to change it.");
+        }
+
+        int low = Math.min(first, second);
+        int high = Math.max(first, second);
+        int lowEdge = findEdge(low, high);
+        int highEdge = low == high ? -1 : findEdge(high, low);
+
+        // If there is nothing to take out
+        if (lowEdge < 0 && highEdge < 0) {
+            return this;
+        }
+
+        int removed = (lowEdge >= 0 ? 1 : 0) + (highEdge >= 0 ? 1 : 0);
+        int[] newOffsets = new int[offsets.length];
+        int[] newTargets = new int[targets.length - removed];
+        double[] newWeights = new double[targets.length - removed];
+
+        // Copy the routes around the ones taken out, which are in order of the villages
+        int read = 0;
+        int write = 0;
+        for (int edge : new int[] {lowEdge, highEdge}) {
+            if (edge < 0) {
+                continue;
+            }
+            System.arraycopy(targets, read, newTargets, write, edge - read);
+            System.arraycopy(weights, read, newWeights, write, edge - read);
+            write += edge - read;
+            read = edge + 1;
+        }
+        System.arraycopy(targets, read, newTargets, write, targets.length - read);
+        System.arraycopy(weights, read, newWeights, write, targets.length - read);
+
+        // Every village after one that lost a route starts that much earlier
+        for (int v = 0; v < offsets.length; v++) {
+            newOffsets[v] = offsets[v] - (lowEdge >= 0 && v > low ? 1 : 0) - (highEdge >= 0 && v > high ? 1 : 0);
+        }
+
+        // Drop every route line for the pair
+        int lines = 0;
+        for (int line = 0; line < routeFrom.length; line++) {
+            if (!isRouteLine(line, first, second)) {
+                lines += 1;
+            }
+        }
+        int[] newRouteFrom = new int[lines];
+        int[] newRouteTo = new int[lines];
+        double[] newRouteDistance = new double[lines];
+        lines = 0;
+        for (int line = 0; line < routeFrom.length; line++) {
+            if (!isRouteLine(line, first, second)) {
+                newRouteFrom[lines] = routeFrom[line];
+                newRouteTo[lines] = routeTo[line];
+                newRouteDistance[lines] = routeDistance[line];
+                lines += 1;
+            }
+        }
+
+        return new VillageGraph(names, ids, nameRank, newOffsets, newTargets, newWeights,
+                newRouteFrom, newRouteTo, newRouteDistance);
+    }
+
+    /**
+     * The method for creating a copy of the graph with a new village that has no routes yet. It
+     * gets the next free id, so the ids of the other villages stay the same
+     * @param name - The name of the village
+     * @return - Return the new graph
+     */
+    public VillageGraph withVillage(String name) {
+        // The graph outside of the heap is read straight out of its snapshot and is never changed
+        if (storage != null) {
+            throw new IllegalStateException("A map kept outside of the heap cannot be changed. Load it onto the heap to change it.");
+        }
+
+        int n = names.length;
+        String[] newNames = Arrays.copyOf(names, n + 1);
+        newNames[n] = name;
+        HashMap<String,Integer> newIds = new HashMap<>(ids);
+        newIds.put(name, n);
+
+        // The villages with a name after the new one in name order move one rank down
+        int[] newRank = new int[n + 1];
+        int rank = 0;
+        for (int v = 0; v < n; v++) {
+            if (names[v].compareTo(name) > 0) {
+                newRank[v] = nameRank[v];
+                rank += 1;
+            } else {
+                newRank[v] = nameRank[v] + 1;
+            }
+        }
+        newRank[n] = rank;
+
+        int[] newOffsets = Arrays.copyOf(offsets, n + 2);
+        newOffsets[n + 1] = offsets[n];
+
+        VillageGraph graph = new VillageGraph(newNames, newIds, newRank, newOffsets, targets, weights, routeFrom,
+                routeTo, routeDistance);
+
+        // The new village is a part of the map of its own
+        ComponentIndex index = components;
+        if (index != null) {
+            graph.components = index.withVillage();
+        }
+
+        return graph;
+    }
+
+    /**
+     * The method for creating a copy of the graph without a village and any of its routes. The
+     * villages after it move down one id
+     * @param village - The id of the village
+     * @return - Return the new graph
+     */
+    public VillageGraph withoutVillage(int village) {
+        // The graph outside of the heap is read straight out of its snapshot and is never changed
+        if (storage != null) {
+            throw new IllegalStateException("A map kept outside of the heap cannot be changed. Load it onto the heap to change it.");
+        }
+
+        int n = names.length;
+        String[] newNames = new String[n - 1];
+        int[] newRank = new int[n - 1];
+        HashMap<String,Integer> newIds = new HashMap<>(n * 2);
+        int[] newOffsets = new int[n];
+        int[] newTargets = new int[targets.length];
+        double[] newWeights = new double[targets.length];
+        int size = 0;
+
+        // Copy every other village with its routes, leaving out the ones leading to the village
+        for (int v = 0; v < n; v++) {
+            if (v == village) {
+                continue;
+            }
+            int id = v < village ? v : v - 1;
+            newNames[id] = names[v];
+            newIds.put(names[v], id);
+            newRank[id] = nameRank[v] > nameRank[village] ? nameRank[v] - 1 : nameRank[v];
+
+            for (int edge = offsets[v]; edge < offsets[v + 1]; edge++) {
+                if (targets[edge] != village) {
+                    newTargets[size] = targets[edge] < village ? targets[edge] : targets[edge] - 1;
+                    newWeights[size] = weights[edge];
+                    size += 1;
+                }
+            }
+            newOffsets[id + 1] = size;
+        }
+
+        // Copy the route lines that do not touch the village
+        int lines = 0;
+        int[] newRouteFrom = new int[routeFrom.length];
+        int[] newRouteTo = new int[routeFrom.length];
+        double[] newRouteDistance = new double[routeFrom.length];
+        for (int line = 0; line < routeFrom.length; line++) {
+            if (routeFrom[line] != village && routeTo[line] != village) {
+                newRouteFrom[lines] = routeFrom[line] < village ? routeFrom[line] : routeFrom[line] - 1;
+                newRouteTo[lines] = routeTo[line] < village ? routeTo[line] : routeTo[line] - 1;
+                newRouteDistance[lines] = routeDistance[line];
+                lines += 1;
+            }
+        }
+
+        return new VillageGraph(newNames, newIds, newRank, newOffsets, Arrays.copyOf(newTargets, size),
+                Arrays.copyOf(newWeights, size), Arrays.copyOf(newRouteFrom, lines),
+                Arrays.copyOf(newRouteTo, lines), Arrays.copyOf(newRouteDistance, lines));
+    }
+
+    /**
+     * The method for finding where a route to a village of a given rank goes among the routes of
+     * a village, which is the first route whose target has the same or a later rank
+     */
+    private int lowerBound(int from, int rank) {
+        int low = offsets[from];
+        int high = offsets[from + 1];
+
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (nameRank[targets[middle]] < rank) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        return low;
+    }
+
+    /**
+     * The method for finding the first route line listing two villages, in either order
+     * @param first - The id of the first village
+     * @param second - The id of the second village
+     * @return - Return the number of the line, or -1 if there is none
+     */
+    public int findRouteLine(int first, int second) {
+        for (int line = 0; line < getRouteCount(); line++) {
+            if (isRouteLine(line, first, second)) {
+                return line;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * The method for checking if a route line lists two villages, in either order
+     */
+    private boolean isRouteLine(int line, int first, int second) {
+        return (getRouteFrom(line) == first && getRouteTo(line) == second)
+                || (getRouteFrom(line) == second && getRouteTo(line) == first);
+    }
+
+    /**
+     * The methods for retrieving the arrays behind the graph so it can be written out as a
+     * MapSnapshot. The arrays are shared, not copied, and must not be changed. A graph outside
+     * of the heap copies them out of its storage
+     */
+    String[] nameArray() {
+        return storage != null ? storage.nameArray() : names;
+    }
+
+    int[] nameRankArray() {
+        return storage != null ? storage.nameRankArray() : nameRank;
+    }
+
+    int[] offsetArray() {
+        return storage != null ? storage.offsetArray() : offsets;
+    }
+
+    int[] targetArray() {
+        return storage != null ? storage.targetArray() : targets;
+    }
+
+    double[] weightArray() {
+        return storage != null ? storage.weightArray() : weights;
+    }
+
+    int[] routeFromArray() {
+        return storage != null ? storage.routeFromArray() : routeFrom;
+    }
+
+    int[] routeToArray() {
+        return storage != null ? storage.routeToArray() : routeTo;
+    }
+
+    double[] routeDistanceArray() {
+        return storage != null ? storage.routeDistanceArray() : routeDistance;
+    }
+
+    /**
+     * The method for retrieving the rank of a village by its name, from last to first
+     */
+    private int getRank(int id) {
+        return storage != null ? storage.getRank(id) : nameRank[id];
+    }
+
+    /**
+     * The method for checking if the graph is kept outside of the heap
+     * @return - Return true if the graph reads from an OffHeapGraphStorage
+     */
+    public boolean isOffHeap() {
+        return storage != null;
+    }
+
+    /**
+     * The method for retrieving how many bytes the graph keeps outside of the heap
+     * @return - Return the number of bytes, 0 for a graph on the heap
+     */
+    public long getOffHeapBytes() {
+        return storage != null ? storage.getBytes() : 0;
+    }
+
+    /**
+     * The method for creating a copy of the graph on the heap
+     * @return - Return the copy, or this graph if it is already on the heap
+     */
+    public VillageGraph toHeap() {
+        if (storage == null) {
+            return this;
+        }
+
+        VillageGraph graph = fromArrays(nameArray(), nameRankArray(), offsetArray(), targetArray(), weightArray(),
+                routeFromArray(), routeToArray(), routeDistanceArray());
+        graph.components = components;
+        return graph;
+    }
+
+    /**
+     * The method for creating a copy of the graph in direct buffers outside of the heap
+     * @return - Return the copy, or this graph if it is already outside of the heap
+     */
+    public VillageGraph toOffHeap() {
+        if (storage != null) {
+            return this;
+        }
+
+        VillageGraph graph = new VillageGraph(OffHeapGraphStorage.copyOf(names, nameRank, offsets, targets, weights,
+                routeFrom, routeTo, routeDistance));
+        graph.components = components;
+        return graph;
+    }
+
+    /**
+     * The method for creating the TreeMap view of the graph that older callers of the RouteFinder
+     * expect. It is a copy, so it is only built when someone actually asks for it
+     * @return - Return the TreeMap with every village and the distances to its neighbours
+     */
+    public TreeMap<String,TreeMap<String,Double>> toTreeMap() {
+        TreeMap<String,TreeMap<String,Double>> m = new TreeMap<>();
+
+        // For every village add its routes in a reverse ordered TreeMap
+        String[] villageNames = nameArray();
+        for (int v = 0; v < villageNames.length; v++) {
+            TreeMap<String,Double> routes = new TreeMap<>(Collections.reverseOrder());
+            for (int e = firstEdge(v); e < lastEdge(v); e++) {
+                routes.put(villageNames[getTarget(e)], getWeight(e));
+            }
+            m.put(villageNames[v], routes);
+        }
+
+        return m;
+    }
+
+    /**
+     * The Builder class that interns the village names and collects the routes while a map is
+     * read, then packs them into the arrays of a VillageGraph
+     */
+    public static class Builder {
+
+        private final ArrayList<String> names = new ArrayList<>();
+        private final HashMap<String,Integer> ids = new HashMap<>();
+        private int[] from = new int[16];
+        private int[] to = new int[16];
+        private double[] distance = new double[16];
+        private boolean[] directed = new boolean[16];
+        private int routes;
+        private int lines;
+
+        /**
+         * The method for retrieving the id of a village, giving it the next free id the first
+         * time it is seen
+         * @param name - The name of the village
+         * @return - Return the id of the village
+         */
+        public int intern(String name) {
+            Integer id = ids.get(name);
+
+            // If the village has not been seen before
+            if (id == null) {
+                id = names.size();
+                ids.put(name, id);
+                names.add(name);
+            }
+
+            return id;
+        }
+
+        /**
+         * The method for retrieving the number of villages interned so far
+         * @return - Return the number of villages
+         */
+        public int size() {
+            return names.size();
+        }
+
+        /**
+         * The method for retrieving the names interned so far in the order they were found
+         * @return - Return the List of names
+         */
+        public List<String> getNames() {
+            return names;
+        }
+
+        /**
+         * The method for adding a route line from the map file. The route can be travelled in
+         * both directions and the first line listing a pair of villages gives their distance
+         * @param first - The id of the first village
+         * @param second - The id of the second village
+         * @param d - The distance between them
+         */
+        public void addRoute(int first, int second, double d) {
+            add(first, second, d, false);
+            lines += 1;
+        }
+
+        /**
+         * The method for adding a route that can only be travelled from the first village to the
+         * second. It is not counted as a line of the map file
+         * @param first - The id of the village the route starts at
+         * @param second - The id of the village the route leads to
+         * @param d - The distance between them
+         */
+        public void addDirectedRoute(int first, int second, double d) {
+            add(first, second, d, true);
+        }
+
+        /**
+         * The method for storing a route in the growing arrays
+         */
+        private void add(int first, int second, double d, boolean oneWay) {
+            // If the arrays are full double their size
+            if (routes == from.length) {
+                int capacity = routes * 2;
+                from = Arrays.copyOf(from, capacity);
+                to = Arrays.copyOf(to, capacity);
+                distance = Arrays.copyOf(distance, capacity);
+                directed = Arrays.copyOf(directed, capacity);
+            }
+
+            from[routes] = first;
+            to[routes] = second;
+            distance[routes] = d;
+            directed[routes] = oneWay;
+            routes += 1;
+        }
+
+        /**
+         * The method for packing the interned villages and the routes into a VillageGraph
+         * @return - Return the finished graph
+         */
+        public VillageGraph build() {
+            int n = names.size();
+            String[] nameArray = names.toArray(new String[0]);
+
+            // Rank every village by its name from last to first so routes can be sorted by number
+            Integer[] order = new Integer[n];
+            for (int i = 0; i < n; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> nameArray[b].compareTo(nameArray[a]));
+            int[] nameRank = new int[n];
+            for (int i = 0; i < n; i++) {
+                nameRank[order[i]] = i;
+            }
+
+            // Count how many routes leave every village
+            int[] offsets = new int[n + 1];
+            for (int r = 0; r < routes; r++) {
+                offsets[from[r] + 1] += 1;
+                if (!directed[r] && from[r] != to[r]) {
+                    offsets[to[r] + 1] += 1;
+                }
+            }
+            for (int v = 0; v < n; v++) {
+                offsets[v + 1] += offsets[v];
+            }
+
+            // Place every route as a key of the target's rank and the route's line number so
+            // sorting a village's keys orders its routes by name with the earliest line first
+            long[] keys = new long[offsets[n]];
+            int[] next = Arrays.copyOf(offsets, n);
+            for (int r = 0; r < routes; r++) {
+                keys[next[from[r]]++] = ((long) nameRank[to[r]] << 32) | r;
+                if (!directed[r] && from[r] != to[r]) {
+                    keys[next[to[r]]++] = ((long) nameRank[from[r]] << 32) | r;
+                }
+            }
+
+            // Sort the routes of every village and keep only the first line for each neighbour
+            int[] packedOffsets = new int[n + 1];
+            int[] targets = new int[keys.length];
+            double[] weights = new double[keys.length];
+            int size = 0;
+            for (int v = 0; v < n; v++) {
+                Arrays.sort(keys, offsets[v], offsets[v + 1]);
+                int lastTarget = -1;
+                for (int k = offsets[v]; k < offsets[v + 1]; k++) {
+                    int r = (int) keys[k];
+                    int target = from[r] == v ? to[r] : from[r];
+                    if (target != lastTarget) {
+                        targets[size] = target;
+                        weights[size] = distance[r];
+                        size += 1;
+                        lastTarget = target;
+                    }
+                }
+                packedOffsets[v + 1] = size;
+            }
+
+            // Keep the route lines of the file for the distance table
+            int[] routeFrom = new int[lines];
+            int[] routeTo = new int[lines];
+            double[] routeDistance = new double[lines];
+            int line = 0;
+            for (int r = 0; r < routes; r++) {
+                if (!directed[r]) {
+                    routeFrom[line] = from[r];
+                    routeTo[line] = to[r];
+                    routeDistance[line] = distance[r];
+                    line += 1;
+                }
+            }
+
+            return new VillageGraph(nameArray, new HashMap<>(ids), nameRank, packedOffsets,
+                    Arrays.copyOf(targets, size), Arrays.copyOf(weights, size),
+                    routeFrom, routeTo, routeDistance);
+        }
+    }
+}
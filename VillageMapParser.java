@@ -0,0 +1,448 @@
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.InputMismatchException;
+
+/**
+ * The VillageMapParser class that reads a village map file straight out of a memory mapping. The
+ * bytes are scanned for tabs and newlines directly, distances are turned into numbers without
+ * building a String first, and a village name only becomes a String the first time its bytes are
+ * seen. The file has the same format the RouteFinder always read: the number of villages on the
+ * first line, then one tab separated first village, second village and distance per line.
+ */
+public class VillageMapParser {
+
+    private static final long WINDOW_SIZE = 1L << 30;
+    private static final int MAX_FAST_DIGITS = 15;
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private final VillageGraph.Builder builder = new VillageGraph.Builder();
+    private int villageCount;
+    private int lineCount;
+
+    // The open addressing table that maps the bytes of a name to its id
+    private int[] table = new int[1 << 10];
+    private int[] nameStart = new int[64];
+    private int[] nameLength = new int[64];
+    private int[] nameHash = new int[64];
+    private int[] nameId = new int[64];
+    private byte[] namePool = new byte[1 << 12];
+    private int poolSize;
+    private int names;
+
+    /**
+     * The VillageMapParser constructor that prepares an empty name table
+     */
+    public VillageMapParser() {
+        Arrays.fill(table, -1);
+    }
+
+    /**
+     * The method for parsing a whole map file
+     * @param channel - The open channel of the file
+     * @return - Return the builder holding the villages and routes of the file
+     * @throws IOException - If the file cannot be mapped
+     * @throws InputMismatchException - If the file is not in the format of a village map
+     */
+    public VillageGraph.Builder parse(FileChannel channel) throws IOException {
+        long size = channel.size();
+        long position = 0;
+        boolean header = true;
+
+        // Map the file one window at a time so files larger than a single mapping can be read
+        while (position < size) {
+            long length = Math.min(WINDOW_SIZE, size - position);
+            boolean last = position + length == size;
+            MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+            int index = 0;
+
+            // If this is the start of the file read the number of villages first
+            if (header) {
+                index = parseHeader(window, last);
+                header = false;
+            }
+
+            // Parse every complete line in the window
+            int limit = window.limit();
+            while (index < limit) {
+                int end = findLineEnd(window, index, limit);
+
+                // If the line runs past the end of the window map it again from its start
+                if (end == limit && !last) {
+                    break;
+                }
+
+                parseLine(window, index, end);
+                index = skipLineBreak(window, end, limit);
+            }
+
+            // If not even a single line fit in the window the line is far too long to be a route
+            if (index == 0 && !last) {
+                throw new InputMismatchException("A line of the file is longer than " + WINDOW_SIZE + " bytes");
+            }
+
+            position += index;
+        }
+
+        // If the file was empty there is no header at all
+        if (header) {
+            throw new InputMismatchException("The file does not contain the number of villages");
+        }
+
+        return builder;
+    }
+
+    /**
+     * The method for retrieving the number of villages the header of the file listed
+     * @return - Return the number of villages
+     */
+    public int getVillageCount() {
+        return villageCount;
+    }
+
+    /**
+     * The method for retrieving the number of route lines in the file
+     * @return - Return the number of lines
+     */
+    public int getLineCount() {
+        return lineCount;
+    }
+
+    /**
+     * The method for reading the number of villages from the start of the file. Like a Scanner it
+     * skips any whitespace in front of the number and ignores the rest of the line after it
+     * @param buffer - The first window of the file
+     * @param last - Whether the window reaches the end of the file
+     * @return - Return the position of the first route line
+     */
+    private int parseHeader(MappedByteBuffer buffer, boolean last) {
+        int limit = buffer.limit();
+        int index = 0;
+
+        // Skip the whitespace in front of the number
+        while (index < limit && isWhitespace(buffer.get(index))) {
+            index += 1;
+        }
+
+        // Find the end of the number
+        int start = index;
+        while (index < limit && !isWhitespace(buffer.get(index))) {
+            index += 1;
+        }
+
+        // If there is no number at all
+        if (start == index) {
+            throw new InputMismatchException("The file does not contain the number of villages");
+        }
+
+        villageCount = parseCount(buffer, start, index);
+
+        // Skip the rest of the header line
+        int end = findLineEnd(buffer, index, limit);
+        if (end == limit && !last) {
+            throw new InputMismatchException("The header line of the file is too long");
+        }
+
+        return skipLineBreak(buffer, end, limit);
+    }
+
+    /**
+     * The method for turning the header bytes into the number of villages
+     * @param buffer - The window holding the header
+     * @param start - The position of the first byte of the number
+     * @param end - The position after the last byte of the number
+     * @return - Return the number of villages
+     */
+    private int parseCount(MappedByteBuffer buffer, int start, int end) {
+        long count = 0;
+        int index = start;
+        boolean negative = buffer.get(index) == '-';
+
+        // Skip the sign
+        if (negative || buffer.get(index) == '+') {
+            index += 1;
+        }
+
+        // If there are no digits after the sign
+        if (index == end) {
+            throw new InputMismatchException("The number of villages is not a number: " + text(buffer, start, end));
+        }
+
+        // Add up the digits
+        for (; index < end; index++) {
+            int digit = buffer.get(index) - '0';
+            if (digit < 0 || digit > 9 || count > Integer.MAX_VALUE) {
+                throw new InputMismatchException("The number of villages is not a number: " + text(buffer, start, end));
+            }
+            count = count * 10 + digit;
+        }
+
+        // If the number does not fit in an int
+        if (count > Integer.MAX_VALUE + (negative ? 1L : 0L)) {
+            throw new InputMismatchException("The number of villages is not a number: " + text(buffer, start, end));
+        }
+
+        return (int) (negative ? -count : count);
+    }
+
+    /**
+     * The method for parsing one route line
+     * @param buffer - The window holding the line
+     * @param start - The position of the first byte of the line
+     * @param end - The position of the line break after the line
+     */
+    private void parseLine(MappedByteBuffer buffer, int start, int end) {
+        // Skip blank lines instead of treating them as a broken route
+        if (start == end) {
+            return;
+        }
+
+        // Find the two tabs that separate the values
+        int firstTab = findTab(buffer, start, end);
+        int secondTab = firstTab < 0 ? -1 : findTab(buffer, firstTab + 1, end);
+
+        // If the line does not have all three values
+        if (secondTab < 0) {
+            throw new InputMismatchException("The line does not contain two villages and a distance: "
+                    + text(buffer, start, end));
+        }
+
+        // Any extra values on the line are ignored
+        int thirdTab = findTab(buffer, secondTab + 1, end);
+        int distanceEnd = thirdTab < 0 ? end : thirdTab;
+
+        // The searches need distances they can add up and never go back on, as setRoute does
+        double distance = parseDistance(buffer, secondTab + 1, distanceEnd);
+        if (!(distance >= 0) || distance == Double.POSITIVE_INFINITY) {
+            throw new InputMismatchException("The distance is not a number that is 0 or more: "
+                    + text(buffer, secondTab + 1, distanceEnd));
+        }
+
+        int first = intern(buffer, start, firstTab);
+        int second = intern(buffer, firstTab + 1, secondTab);
+        builder.addRoute(first, second, distance);
+        lineCount += 1;
+    }
+
+    /**
+     * The method for turning the bytes of a distance into a number. Plain decimal numbers with up
+     * to fifteen digits are built directly from the digits, which gives exactly the double that
+     * Double.parseDouble would; anything else is handed to Double.parseDouble
+     * @param buffer - The window holding the distance
+     * @param start - The position of the first byte of the distance
+     * @param end - The position after the last byte of the distance
+     * @return - Return the distance
+     */
+    private double parseDistance(MappedByteBuffer buffer, int start, int end) {
+        int index = start;
+        boolean negative = false;
+        long mantissa = 0;
+        int digits = 0;
+        int fraction = -1;
+
+        // Read the sign
+        if (index < end && (buffer.get(index) == '-' || buffer.get(index) == '+')) {
+            negative = buffer.get(index) == '-';
+            index += 1;
+        }
+
+        // Read the digits and the decimal point
+        for (; index < end; index++) {
+            byte b = buffer.get(index);
+            if (b >= '0' && b <= '9') {
+                mantissa = mantissa * 10 + (b - '0');
+                digits += 1;
+                if (fraction >= 0) {
+                    fraction += 1;
+                }
+            } else if (b == '.' && fraction < 0) {
+                fraction = 0;
+            } else {
+                break;
+            }
+        }
+
+        // If the distance was a plain number short enough to be exact
+        if (index == end && digits > 0 && digits <= MAX_FAST_DIGITS) {
+            double value = fraction > 0 ? mantissa / POWERS_OF_TEN[fraction] : mantissa;
+            return negative ? -value : value;
+        }
+
+        // Otherwise let Double.parseDouble handle exponents and the other number formats
+        String value = text(buffer, start, end);
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw new InputMismatchException("The distance is not a number: " + value);
+        }
+    }
+
+    /**
+     * The method for retrieving the id of the village whose name is in the given bytes. The name
+     * is only decoded into a String the first time these bytes are seen
+     * @param buffer - The window holding the name
+     * @param start - The position of the first byte of the name
+     * @param end - The position after the last byte of the name
+     * @return - Return the id of the village
+     */
+    private int intern(MappedByteBuffer buffer, int start, int end) {
+        int length = end - start;
+        int hash = 1;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + buffer.get(i);
+        }
+
+        // Look for the name in the table
+        int mask = table.length - 1;
+        int slot = mix(hash) & mask;
+        while (table[slot] >= 0) {
+            int name = table[slot];
+            if (nameHash[name] == hash && nameLength[name] == length && sameBytes(buffer, start, name)) {
+                return nameId[name];
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        // The name is new, so keep its bytes and intern its String with the builder
+        int id = builder.intern(text(buffer, start, end));
+        addName(buffer, start, length, hash, id);
+
+        return id;
+    }
+
+    /**
+     * The method for adding the bytes of a new name to the table
+     */
+    private void addName(MappedByteBuffer buffer, int start, int length, int hash, int id) {
+        // If the arrays describing the names are full double their size
+        if (names == nameStart.length) {
+            int capacity = names * 2;
+            nameStart = Arrays.copyOf(nameStart, capacity);
+            nameLength = Arrays.copyOf(nameLength, capacity);
+            nameHash = Arrays.copyOf(nameHash, capacity);
+            nameId = Arrays.copyOf(nameId, capacity);
+        }
+
+        // If the pool of name bytes is full grow it
+        if (poolSize + length > namePool.length) {
+            namePool = Arrays.copyOf(namePool, Math.max(namePool.length * 2, poolSize + length));
+        }
+
+        buffer.get(start, namePool, poolSize, length);
+        nameStart[names] = poolSize;
+        nameLength[names] = length;
+        nameHash[names] = hash;
+        nameId[names] = id;
+        poolSize += length;
+        names += 1;
+
+        // If the table is more than half full rebuild it twice as large
+        if (names * 2 > table.length) {
+            table = new int[table.length * 2];
+            Arrays.fill(table, -1);
+            for (int name = 0; name < names; name++) {
+                place(name);
+            }
+        } else {
+            place(names - 1);
+        }
+    }
+
+    /**
+     * The method for putting a name in the first free slot for its hash
+     * @param name - The number of the name
+     */
+    private void place(int name) {
+        int mask = table.length - 1;
+        int slot = mix(nameHash[name]) & mask;
+        while (table[slot] >= 0) {
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = name;
+    }
+
+    /**
+     * The method for comparing bytes in the file with the bytes of a known name
+     */
+    private boolean sameBytes(MappedByteBuffer buffer, int start, int name) {
+        int offset = nameStart[name];
+        for (int i = 0; i < nameLength[name]; i++) {
+            if (buffer.get(start + i) != namePool[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The method for spreading the bits of a hash so nearby names do not share slots
+     */
+    private static int mix(int hash) {
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * The method for finding the next tab on a line
+     * @return - Return the position of the tab or -1 if there is none before the end
+     */
+    private static int findTab(MappedByteBuffer buffer, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (buffer.get(i) == '\t') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * The method for finding the end of a line
+     * @return - Return the position of the line break, or the limit if the line has none
+     */
+    private static int findLineEnd(MappedByteBuffer buffer, int start, int limit) {
+        for (int i = start; i < limit; i++) {
+            byte b = buffer.get(i);
+            if (b == '\n' || b == '\r') {
+                return i;
+            }
+        }
+        return limit;
+    }
+
+    /**
+     * The method for stepping over a \n, \r or \r\n line break
+     * @return - Return the position of the start of the next line
+     */
+    private static int skipLineBreak(MappedByteBuffer buffer, int end, int limit) {
+        if (end < limit && buffer.get(end) == '\r') {
+            end += 1;
+            if (end < limit && buffer.get(end) == '\n') {
+                end += 1;
+            }
+        } else if (end < limit) {
+            end += 1;
+        }
+        return end;
+    }
+
+    /**
+     * The method for deciding whether a byte is whitespace the way a Scanner would
+     */
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\n' || b == '\r' || b == '\f' || b == 0x0B;
+    }
+
+    /**
+     * The method for decoding bytes of the file into a String
+     */
+    private static String text(MappedByteBuffer buffer, int start, int end) {
+        byte[] bytes = new byte[end - start];
+        buffer.get(start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}